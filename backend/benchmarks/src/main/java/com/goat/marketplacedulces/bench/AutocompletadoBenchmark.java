@@ -0,0 +1,80 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.service.Autocompletado;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocompletado al ritmo de las pulsaciones: sugerencias para prefijos de 1 a 6 letras sobre
+ * catálogos sintéticos, y coste de reconstruir el índice cuando cambia el catálogo.
+ * Al preparar cada tamaño imprime los bytes por producto de las estructuras del índice.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar AutocompletadoBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutocompletadoBenchmark {
+
+    private static final String[] MARCAS = {"Pocky", "Ramune", "Mochi", "KitKat", "Hello Panda", "Pepero",
+            "Jarritos", "Pulparindo", "Lotte", "Meiji", "Glico", "Bon Bon Bum", "Chocoramo", "Oreo"};
+    private static final String[] SABORES = {"Fresa", "Melón", "Matcha", "Tamarindo", "Chocolate", "Mango",
+            "Limón", "Yuzu", "Sandía", "Café", "Vainilla", "Maracuyá", "Durazno", "Sakura"};
+    private static final String[] FORMATOS = {"", "Mini", "Edición limitada", "Pack x6", "Familiar", "Picante"};
+
+    @Param({"1000", "100000"})
+    public int productos;
+
+    private List<Producto> catalogo;
+    private Autocompletado indice;
+    private String[] consultas;
+    private int siguiente;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(7);
+        catalogo = new ArrayList<>(productos);
+        for (int i = 0; i < productos; i++) {
+            Producto p = new Producto();
+            p.setId((long) i + 1);
+            p.setNombre(MARCAS[rnd.nextInt(MARCAS.length)] + " " + SABORES[rnd.nextInt(SABORES.length)]
+                    + " " + FORMATOS[rnd.nextInt(FORMATOS.length)] + " " + i);
+            p.setStock(rnd.nextInt(200));
+            catalogo.add(p);
+        }
+        indice = Autocompletado.de(catalogo);
+        indice.sugerir("p", 8, catalogo); // construye el árbol de ranking para contarlo en la memoria
+
+        // Lo que teclea alguien buscando: "p", "po", "poc", ... con y sin tildes
+        List<String> q = new ArrayList<>();
+        for (String palabra : new String[]{"pocky", "ramune mel", "melon", "matcha", "tamarindo", "sakura", "limón"}) {
+            for (int n = 1; n <= Math.min(6, palabra.length()); n++) q.add(palabra.substring(0, n));
+        }
+        consultas = q.toArray(String[]::new);
+
+        System.out.printf("%n[autocompletado] %d productos: %.1f bytes/producto%n",
+                productos, (double) indice.memoriaAproximada() / productos);
+    }
+
+    @Benchmark
+    public List<Producto> sugerir() {
+        String q = consultas[siguiente++ % consultas.length];
+        return indice.sugerir(q, 8, catalogo);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Autocompletado reconstruir() {
+        return Autocompletado.de(catalogo);
+    }
+}
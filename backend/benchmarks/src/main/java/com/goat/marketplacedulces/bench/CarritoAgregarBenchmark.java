@@ -0,0 +1,110 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.model.Carrito;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.CarritoRepository;
+import com.goat.marketplacedulces.repository.ConsultasCompartidas;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import com.goat.marketplacedulces.service.CarritoBuffer;
+import com.goat.marketplacedulces.service.CarritoService;
+import com.goat.marketplacedulces.service.CatalogoCache;
+import com.goat.marketplacedulces.service.EscriturasRecientes;
+import com.goat.marketplacedulces.service.Tendencias;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "+1" al carrito con varios usuarios a la vez contra un repositorio en memoria (sin latencia de BD):
+ * mide lo que añade el servicio por encima de la consulta. {@code directo} es un upsert por llamada;
+ * {@code write-behind} suma en la copia en memoria y escribe agrupado en segundo plano.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar CarritoAgregarBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CarritoAgregarBenchmark {
+
+    private static final int PRODUCTOS = 40;
+
+    @Param({"directo", "write-behind"})
+    public String modo;
+
+    private CarritoService service;
+    private CarritoBuffer buffer;
+    private Tendencias tendencias;
+
+    @State(Scope.Thread)
+    public static class Usuario {
+        private static final AtomicInteger SIGUIENTE = new AtomicInteger();
+        final String username = "bench" + SIGUIENTE.incrementAndGet();
+        long producto;
+    }
+
+    @Setup
+    public void setup() {
+        List<Producto> catalogo = new ArrayList<>();
+        for (long id = 1; id <= PRODUCTOS; id++) {
+            Producto p = new Producto();
+            p.setId(id);
+            p.setNombre("Dulce " + id);
+            p.setPrecio(1000);
+            p.setStock(100);
+            catalogo.add(p);
+        }
+        ProductoRepository productos = Stubs.repositorio(ProductoRepository.class,
+                Map.of("findAll", args -> Flux.fromIterable(catalogo)));
+        CatalogoCache catalogoCache = Stubs.catalogo(productos);
+        catalogoCache.snapshot().block();
+
+        // La tabla carrito: (username, producto_id) -> línea; agregarOSumar hace el upsert
+        Map<String, Carrito> tabla = new ConcurrentHashMap<>();
+        AtomicLong secuencia = new AtomicLong();
+        CarritoRepository repo = Stubs.repositorio(CarritoRepository.class, Map.of(
+                "agregarOSumar", args -> Mono.fromSupplier(() -> tabla.compute(args[0] + "/" + args[1], (k, c) -> {
+                    if (c == null) return new Carrito(secuencia.incrementAndGet(), (String) args[0], (Long) args[1], (Integer) args[2]);
+                    return new Carrito(c.getId(), c.getUsername(), c.getProductoId(), c.getCantidad() + (Integer) args[2]);
+                })),
+                "findByUsername", args -> Flux.empty(),
+                "reservarIds", args -> Flux.range(0, (Integer) args[0]).map(i -> secuencia.incrementAndGet()),
+                "escribirLineas", args -> Mono.just(((Long[]) args[0]).length),
+                "borrarLineas", args -> Mono.just(0)));
+
+        EscriturasRecientes escrituras = new EscriturasRecientes(Duration.ofSeconds(5), 100_000,
+                new ConsultasCompartidas(new SimpleMeterRegistry(), true));
+        buffer = new CarritoBuffer(repo, catalogoCache, escrituras, modo.equals("write-behind"),
+                Duration.ofMillis(200), Duration.ofSeconds(1), Duration.ofMinutes(10), 50_000);
+        // agregar no abre transacción: el TransactionalOperator no se usa
+        tendencias = Stubs.tendencias();
+        service = new CarritoService(repo, buffer, escrituras, tendencias, null, new SimpleMeterRegistry(), 500);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.destroy();
+        tendencias.destroy();
+    }
+
+    @Benchmark
+    public Carrito agregar(Usuario u) {
+        u.producto = u.producto % PRODUCTOS + 1;
+        return service.agregar(u.username, u.producto, 1).block();
+    }
+}
@@ -0,0 +1,37 @@
+package com.goat.marketplacedulces.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks de los caminos calientes con el profiler de GC: además del tiempo
+ * reporta {@code gc.alloc.rate.norm} (bytes asignados por operación), que es lo que hay que
+ * vigilar en cada optimización. Deja los resultados en {@code jmh-gc.json}.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.goat.marketplacedulces.bench.ConPerfilGc [regex ...]
+ * </pre>
+ */
+public final class ConPerfilGc {
+
+    private static final String[] POR_DEFECTO = {
+            "JwtBenchmark", "JwtAuthFilterBenchmark", "ProductoServiceBenchmark", "CarritoAgregarBenchmark"};
+
+    private ConPerfilGc() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder opciones = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-gc.json");
+        for (String patron : args.length > 0 ? args : POR_DEFECTO) {
+            opciones.include(patron);
+        }
+        new Runner(opciones.build()).run();
+    }
+}
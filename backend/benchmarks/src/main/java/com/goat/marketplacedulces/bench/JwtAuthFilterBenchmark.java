@@ -0,0 +1,100 @@
+package com.goat.marketplacedulces.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.config.JwtAuthFilter;
+import com.goat.marketplacedulces.model.Usuario;
+import com.goat.marketplacedulces.repository.ConsultasCompartidas;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import com.goat.marketplacedulces.service.JwtService;
+import com.goat.marketplacedulces.service.RevocacionService;
+import com.goat.marketplacedulces.service.UsuarioDetailsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.server.adapter.DefaultServerWebExchange;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Una petición autenticada atravesando JwtAuthFilter hasta un "controlador" que lee el
+ * SecurityContext. En modo lookup el usuario sale de un repositorio stub (sin latencia de BD:
+ * mide solo la sobrecarga del propio camino). Cada operación crea su exchange, como cada petición,
+ * pero codecs, sesiones y respuesta se comparten: crearlos por petición, como hace
+ * MockServerWebExchange, cuesta más que el propio filtro.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar JwtAuthFilterBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    @Param({"stateless", "lookup"})
+    public String modo;
+
+    private JwtAuthFilter filtro;
+    private MockServerHttpRequest conToken;
+    private MockServerHttpRequest sinToken;
+    private final ServerCodecConfigurer codecs = ServerCodecConfigurer.create();
+    private final DefaultWebSessionManager sesiones = new DefaultWebSessionManager();
+    private final AcceptHeaderLocaleContextResolver locales = new AcceptHeaderLocaleContextResolver();
+    // Nadie escribe la respuesta; el constructor de la de prueba crea una excepción, mejor una sola
+    private final MockServerHttpResponse respuesta = new MockServerHttpResponse();
+
+    // El controlador: solo necesita la Authentication que dejó el filtro
+    private final WebFilterChain controlador = exchange -> ReactiveSecurityContextHolder.getContext()
+            .map(ctx -> ctx.getAuthentication().getName())
+            .then();
+
+    @Setup
+    public void setup() {
+        Usuario u = new Usuario();
+        u.setUsername("cliente");
+        u.setPassword("$2a$10$abcdefghijklmnopqrstuuR8fR1S0eX1b3WwQ4K0yqkP7l8o9dU2");
+        u.setRol("USUARIO");
+        u.setEnabled(true);
+        UsuarioRepository usuarios = Stubs.repositorio(UsuarioRepository.class,
+                Map.of("findByUsername", args -> Mono.just(u)));
+
+        JwtService jwt = new JwtService(10_000);
+        filtro = new JwtAuthFilter(jwt, new UsuarioDetailsService(usuarios,
+                new ConsultasCompartidas(new SimpleMeterRegistry(), true)),
+                // Sin cargar() ni revocar(): no escucha ni avisa a otros nodos
+                new RevocacionService(jwt, usuarios, null, new ObjectMapper(), 10_000, Duration.ofMinutes(1)),
+                new SimpleMeterRegistry(), modo);
+        conToken = MockServerHttpRequest.get("/carrito")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwt.generateToken("cliente", "USUARIO"))
+                .build();
+        sinToken = MockServerHttpRequest.get("/productos").build();
+    }
+
+    private ServerWebExchange exchange(MockServerHttpRequest request) {
+        return new DefaultServerWebExchange(request, respuesta, sesiones, codecs, locales);
+    }
+
+    @Benchmark
+    public Object autenticado() {
+        return filtro.filter(exchange(conToken), controlador).block();
+    }
+
+    @Benchmark
+    public Object anonimo() {
+        return filtro.filter(exchange(sinToken), e -> Mono.empty()).block();
+    }
+}
@@ -0,0 +1,45 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emitir y leer tokens. {@code cache=0} desactiva la cache de claims verificados: cada lectura
+ * decodifica base64, parsea el JSON y comprueba el HMAC, como la primera vez que llega un token.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar JwtBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    @Param({"0", "10000"})
+    public int cache;
+
+    private JwtService jwt;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwt = new JwtService(cache);
+        token = jwt.generateToken("cliente", "USUARIO");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwt.generateToken("cliente", "USUARIO");
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwt.extractUsername(token);
+    }
+}
@@ -0,0 +1,102 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.config.LimitadorTasa;
+import com.goat.marketplacedulces.config.LimiteTasaFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.server.adapter.DefaultServerWebExchange;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lo que añade el límite por cliente a cada petición. {@code intentar*} es el GCRA solo (un CAS sobre el
+ * AtomicLong del cliente): con 4 hilos sobre el mismo usuario mide la contención del CAS, con clientes
+ * distintos el caso normal. {@code filtro} es la petición entera por LimiteTasaFilter (resolución del
+ * grupo de rutas, SecurityContext, cubeta) frente a {@code sinFiltro}, el mismo exchange sin limitar.
+ * La tasa es tan alta que nunca se rechaza: se mide el camino que recorre toda petición admitida.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar LimiteTasaBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LimiteTasaBenchmark {
+
+    private static final int CLIENTES = 10_000;
+
+    private LimitadorTasa limitador;
+    private LimitadorTasa.Grupo grupo;
+    private LimiteTasaFilter filtro;
+    private String[] clientes;
+    private MockServerHttpRequest request;
+    private final ServerCodecConfigurer codecs = ServerCodecConfigurer.create();
+    private final DefaultWebSessionManager sesiones = new DefaultWebSessionManager();
+    private final AcceptHeaderLocaleContextResolver locales = new AcceptHeaderLocaleContextResolver();
+    private final MockServerHttpResponse respuesta = new MockServerHttpResponse();
+    private final WebFilterChain controlador = exchange -> Mono.empty();
+    private final UsernamePasswordAuthenticationToken usuario = new UsernamePasswordAuthenticationToken(
+            "cliente", null, List.of(new SimpleGrantedAuthority("ROLE_USUARIO")));
+
+    @Setup
+    public void setup() {
+        // Un token por nanosegundo y ~2 s de ráfaga: ni un hilo desalojado entre nanoTime() y el CAS llega
+        // a agotarla (el MockServerHttpResponse compartido no admite un 429)
+        double sinTope = 1e9;
+        int rafaga = Integer.MAX_VALUE;
+        limitador = new LimitadorTasa(new SimpleMeterRegistry(), true, 100_000,
+                sinTope, rafaga, sinTope, rafaga, sinTope, rafaga);
+        grupo = limitador.grupo(PathContainer.parsePath("/carrito/agregar"));
+        filtro = new LimiteTasaFilter(limitador, true);
+        clientes = new String[CLIENTES];
+        for (int i = 0; i < CLIENTES; i++) clientes[i] = "u:cliente" + i;
+        request = MockServerHttpRequest.post("/carrito/agregar").build();
+    }
+
+    private ServerWebExchange exchange() {
+        return new DefaultServerWebExchange(request, respuesta, sesiones, codecs, locales);
+    }
+
+    @Benchmark
+    public long intentarMismoCliente() {
+        return limitador.intentar(grupo, "u:cliente", System.nanoTime());
+    }
+
+    @Benchmark
+    public long intentarClientesDistintos() {
+        return limitador.intentar(grupo, clientes[ThreadLocalRandom.current().nextInt(CLIENTES)], System.nanoTime());
+    }
+
+    @Benchmark
+    public Object filtro() {
+        return filtro.filter(exchange(), controlador)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(usuario))
+                .block();
+    }
+
+    @Benchmark
+    public Object sinFiltro() {
+        return controlador.filter(exchange())
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(usuario))
+                .block();
+    }
+}
@@ -0,0 +1,91 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import com.goat.marketplacedulces.service.CatalogoCache;
+import com.goat.marketplacedulces.service.CatalogoSnapshot;
+import com.goat.marketplacedulces.service.FiltroProductos;
+import com.goat.marketplacedulces.service.ProductoService;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listado y filtrado del catálogo desde el snapshot en memoria, de 40 productos (el seed) a 100k.
+ * {@code listar} es el camino producto a producto; GET /productos sirve el JSON ya serializado
+ * del snapshot ({@code catalogo}), que no depende del tamaño.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ProductoServiceBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductoServiceBenchmark {
+
+    private static final String[] TIPOS = {"Chocolate", "Caramelo", "Galleta", "Gomita", "Bebida", "Snack"};
+    private static final String[] PAISES = {"Japón", "Corea", "México", "Colombia", "EEUU", "Tailandia", "Perú"};
+
+    @Param({"40", "1000", "100000"})
+    public int productos;
+
+    private ProductoService service;
+    private FiltroProductos filtro;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(11);
+        List<Producto> catalogo = new ArrayList<>(productos);
+        for (int i = 0; i < productos; i++) {
+            Producto p = new Producto();
+            p.setId((long) i + 1);
+            p.setNombre("Dulce " + i);
+            p.setTipo(TIPOS[rnd.nextInt(TIPOS.length)]);
+            p.setPaisOrigen(PAISES[rnd.nextInt(PAISES.length)]);
+            p.setPrecio(500 + rnd.nextInt(20_000));
+            p.setStock(rnd.nextInt(10) == 0 ? 0 : rnd.nextInt(200));
+            catalogo.add(p);
+        }
+        ProductoRepository repo = Stubs.repositorio(ProductoRepository.class,
+                Map.of("findAll", args -> Flux.fromIterable(catalogo)));
+        CatalogoCache cache = Stubs.catalogo(repo);
+        service = new ProductoService(repo, cache, Stubs.sinDifusion(cache), Stubs.eventos(), Stubs.tendencias());
+        service.catalogo().block(); // carga el snapshot fuera de la medida
+        // Un filtro típico de la tienda: tipo + país + rango de precio, con stock
+        filtro = new FiltroProductos("Chocolate", "Japón", 1000, 8000, true);
+    }
+
+    @Benchmark
+    public CatalogoSnapshot catalogo() {
+        return service.catalogo().block();
+    }
+
+    @Benchmark
+    public List<Producto> listar() {
+        return service.listar().collectList().block();
+    }
+
+    @Benchmark
+    public Object buscarPorPrecio() {
+        return service.buscar(filtro, "precio", null, 0, 100).block();
+    }
+
+    @Benchmark
+    public Object buscarSinFiltro() {
+        return service.buscar(FiltroProductos.TODOS, "nombre", null, 0, 100).block();
+    }
+
+    @Benchmark
+    public Object facetas() {
+        return service.facetas(filtro).block();
+    }
+}
@@ -0,0 +1,77 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.dto.StockProducto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import com.goat.marketplacedulces.service.CatalogoCache;
+import com.goat.marketplacedulces.service.ReservaStockService;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Venta flash: muchos hilos comprando 1 unidad del mismo producto.
+ * La "BD" es un stub que serializa los UPDATE de la fila con un lock y lo retiene
+ * {@code latenciaFilaMicros} (statement + commit), como haría Postgres con el row lock.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ReservaStockBenchmark -t 64
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(32)
+public class ReservaStockBenchmark {
+
+    @Param({"directo", "reservas"})
+    public String modo;
+
+    @Param({"100"})
+    public int latenciaFilaMicros;
+
+    private ReservaStockService reservas;
+
+    @Setup
+    public void setup() {
+        Object filaBloqueada = new Object();
+        long retencion = TimeUnit.MICROSECONDS.toNanos(latenciaFilaMicros);
+        // Stock "infinito": medimos contención, no agotamiento
+        Map<String, Stubs.Metodo> metodos = Map.of(
+                "descontarStock", args -> Mono.fromCallable(() -> {
+                    synchronized (filaBloqueada) {
+                        LockSupport.parkNanos(retencion);
+                    }
+                    return new StockProducto((Long) args[0], 1_000_000, (Integer) args[1]);
+                }),
+                "reservarLote", args -> Mono.fromCallable(() -> {
+                    synchronized (filaBloqueada) {
+                        LockSupport.parkNanos(retencion);
+                    }
+                    return new StockProducto((Long) args[0], 1_000_000, (Integer) args[1]);
+                }),
+                "devolverStock", args -> Flux.empty());
+        ProductoRepository repo = Stubs.repositorio(ProductoRepository.class, metodos);
+        CatalogoCache catalogo = Stubs.catalogo(repo);
+
+        boolean habilitado = modo.equals("reservas");
+        reservas = new ReservaStockService(repo, catalogo, Stubs.sinDifusion(catalogo), habilitado, 20, Duration.ofMinutes(5), Duration.ofSeconds(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        reservas.destroy();
+    }
+
+    @Benchmark
+    public Boolean comprarUnaUnidad() {
+        return reservas.reservar(1L, 1).block();
+    }
+}
@@ -0,0 +1,59 @@
+package com.goat.marketplacedulces.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import com.goat.marketplacedulces.service.CatalogoCache;
+import com.goat.marketplacedulces.service.CatalogoDifusion;
+import com.goat.marketplacedulces.service.CatalogoEventos;
+import com.goat.marketplacedulces.service.Tendencias;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+
+/** Repositorios de mentira: solo responden los métodos que usa cada benchmark. */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    @FunctionalInterface
+    interface Metodo {
+        Object invocar(Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T repositorio(Class<T> tipo, Map<String, Metodo> metodos) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Metodo m = metodos.get(method.getName());
+            if (m != null) return m.invocar(args);
+            if (method.getName().equals("toString")) return tipo.getSimpleName() + "Stub";
+            if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+            if (method.getName().equals("equals")) return proxy == args[0];
+            throw new UnsupportedOperationException(tipo.getSimpleName() + "." + method.getName());
+        };
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, handler);
+    }
+
+    static CatalogoEventos eventos() {
+        return new CatalogoEventos(new ObjectMapper(), new SimpleMeterRegistry(), 256, Duration.ofSeconds(20));
+    }
+
+    /** Catálogo en memoria sobre el repositorio dado, sin clientes SSE conectados. */
+    static CatalogoCache catalogo(ProductoRepository repo) {
+        return new CatalogoCache(repo, new ObjectMapper(), eventos());
+    }
+
+    /** Ranking de tendencias con la configuración de application.yml, refrescándose cada segundo. */
+    static Tendencias tendencias() {
+        return new Tendencias(new SimpleMeterRegistry(), true, Duration.ofHours(1), 12, Duration.ofMinutes(15),
+                2048, 100, 4096, Duration.ofSeconds(1));
+    }
+
+    /** Un solo nodo: sin LISTEN/NOTIFY. */
+    static CatalogoDifusion sinDifusion(CatalogoCache catalogo) {
+        return new CatalogoDifusion(null, catalogo, new ObjectMapper(), false);
+    }
+}
@@ -0,0 +1,61 @@
+package com.goat.marketplacedulces.bench;
+
+import com.goat.marketplacedulces.service.Tendencias;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lo que añade el ranking de tendencias a cada "añadir al carrito" ({@code registrar}, 4 hilos sobre
+ * 10.000 productos con unos pocos muy repetidos) y lo que cuesta leer el top-10. Con {@code -prof gc}
+ * registrar debe quedar en 0 B/op: todo son incrementos sobre arrays ya reservados.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TendenciasBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TendenciasBenchmark {
+
+    private static final int PRODUCTOS = 10_000;
+
+    private Tendencias tendencias;
+
+    @State(Scope.Thread)
+    public static class Hilo {
+        final SplittableRandom rnd = new SplittableRandom();
+
+        // La mitad de los añadidos va a 20 productos de moda
+        long producto() {
+            return rnd.nextBoolean() ? 1 + rnd.nextInt(20) : 1 + rnd.nextInt(PRODUCTOS);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        tendencias = Stubs.tendencias();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tendencias.destroy();
+    }
+
+    @Benchmark
+    public void registrar(Hilo hilo) {
+        tendencias.registrar(hilo.producto());
+    }
+
+    @Benchmark
+    public List<Tendencias.Entrada> top10() {
+        return tendencias.top(10);
+    }
+}
@@ -0,0 +1,25 @@
+package com.goat.marketplacedulces.carga;
+
+/** Endpoints que recorre la prueba. Cada uno lleva su propio histograma en el informe. */
+enum Accion {
+    REGISTER("POST /auth/register"),
+    LOGIN("POST /auth/login"),
+    PRODUCTOS("GET /productos"),
+    BUSCAR("GET /productos/buscar"),
+    AGREGAR("POST /carrito/agregar"),
+    CARRITO("GET /carrito");
+
+    final String endpoint;
+
+    Accion(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    static Accion de(String nombre) {
+        try {
+            return valueOf(nombre.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Acción desconocida en --mezcla: " + nombre);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.goat.marketplacedulces.carga;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Cliente HTTP no bloqueante con un pool de conexiones keep-alive, como un balanceador delante
+ * del backend. Sin límite de peticiones en cola: el límite lo pone el modelo de carga.
+ */
+final class Cliente implements AutoCloseable {
+
+    record Respuesta(int estado, String cuerpo) {
+    }
+
+    private final ConnectionProvider conexiones;
+    private final HttpClient http;
+
+    Cliente(String url, int maxConexiones) {
+        this.conexiones = ConnectionProvider.builder("carga")
+                .maxConnections(maxConexiones)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofSeconds(60))
+                .build();
+        this.http = HttpClient.create(conexiones)
+                .baseUrl(url)
+                .responseTimeout(Duration.ofSeconds(30));
+    }
+
+    Mono<Respuesta> get(String uri, String token) {
+        return enviar(HttpMethod.GET, uri, token, null, false);
+    }
+
+    /** GET leyendo el cuerpo (solo para la preparación: durante la carga se descarta). */
+    Mono<Respuesta> getConCuerpo(String uri, String token) {
+        return enviar(HttpMethod.GET, uri, token, null, true);
+    }
+
+    Mono<Respuesta> post(String uri, String token, String json, boolean leerCuerpo) {
+        return enviar(HttpMethod.POST, uri, token, json, leerCuerpo);
+    }
+
+    private Mono<Respuesta> enviar(HttpMethod metodo, String uri, String token, String json, boolean leerCuerpo) {
+        HttpClient c = http.headers(h -> {
+            if (token != null) h.set(HttpHeaderNames.AUTHORIZATION, "Bearer " + token);
+            if (json != null) h.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        });
+        return c.request(metodo)
+                .uri(uri)
+                .send(json == null ? ByteBufFlux.fromString(Mono.empty()) : ByteBufFlux.fromString(Mono.just(json)))
+                .responseSingle((res, cuerpo) -> leerCuerpo
+                        ? cuerpo.asString().defaultIfEmpty("").map(b -> new Respuesta(res.status().code(), b))
+                        // El cuerpo hay que consumirlo igualmente para devolver la conexión al pool
+                        : cuerpo.then(Mono.just(new Respuesta(res.status().code(), ""))));
+    }
+
+    @Override
+    public void close() {
+        conexiones.dispose();
+    }
+}
@@ -0,0 +1,132 @@
+package com.goat.marketplacedulces.carga;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opciones de la prueba, en formato {@code --clave=valor}. Ver {@link PruebaCarga#USO}.
+ */
+record Config(String url,
+              Path jar,
+              Path esquema,
+              List<String> argsApp,
+              boolean abierto,
+              boolean poisson,
+              int usuarios,
+              double tasa,
+              int maxEnVuelo,
+              Duration duracion,
+              Duration calentamiento,
+              Map<Accion, Integer> mezcla,
+              int calientes,
+              int rafaga,
+              long semilla,
+              Path salida) {
+
+    private static final Set<String> CLAVES = Set.of("url", "jar", "esquema", "app-args", "modelo", "llegadas",
+            "usuarios", "tasa", "max-en-vuelo", "duracion", "calentamiento", "mezcla", "calientes", "rafaga",
+            "semilla", "salida");
+
+    static Config de(String[] args) {
+        Map<String, String> o = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) throw new IllegalArgumentException("Argumento no válido: " + a);
+            String clave = a.substring(2, a.indexOf('='));
+            if (!CLAVES.contains(clave)) throw new IllegalArgumentException("Opción desconocida: --" + clave);
+            o.put(clave, a.substring(a.indexOf('=') + 1));
+        }
+
+        String modelo = o.getOrDefault("modelo", "cerrado");
+        if (!modelo.equals("abierto") && !modelo.equals("cerrado")) {
+            throw new IllegalArgumentException("--modelo debe ser abierto o cerrado");
+        }
+        String llegadas = o.getOrDefault("llegadas", "poisson");
+        if (!llegadas.equals("poisson") && !llegadas.equals("constante")) {
+            throw new IllegalArgumentException("--llegadas debe ser poisson o constante");
+        }
+        String argsApp = o.getOrDefault("app-args", "").trim();
+
+        Config c = new Config(
+                o.get("url"),
+                o.containsKey("jar") ? Path.of(o.get("jar")) : jarPorDefecto(),
+                Path.of(o.getOrDefault("esquema", "../../db/init/schema.sql")),
+                argsApp.isEmpty() ? List.of() : Arrays.asList(argsApp.split("\\s+")),
+                modelo.equals("abierto"),
+                llegadas.equals("poisson"),
+                Integer.parseInt(o.getOrDefault("usuarios", "50")),
+                Double.parseDouble(o.getOrDefault("tasa", "200")),
+                Integer.parseInt(o.getOrDefault("max-en-vuelo", "2000")),
+                duracion(o.getOrDefault("duracion", "60s")),
+                duracion(o.getOrDefault("calentamiento", "10s")),
+                mezcla(o.getOrDefault("mezcla", "productos=30,buscar=25,agregar=25,carrito=15,login=3,register=2")),
+                Integer.parseInt(o.getOrDefault("calientes", "5")),
+                Integer.parseInt(o.getOrDefault("rafaga", "4")),
+                o.containsKey("semilla") ? Long.parseLong(o.get("semilla")) : ThreadLocalRandom.current().nextLong(),
+                Path.of(o.getOrDefault("salida", "resultados-carga.json")));
+
+        if (c.usuarios <= 0 || c.tasa <= 0 || c.maxEnVuelo <= 0 || c.calientes <= 0 || c.rafaga <= 0) {
+            throw new IllegalArgumentException("usuarios, tasa, max-en-vuelo, calientes y rafaga deben ser > 0");
+        }
+        return c;
+    }
+
+    // El jar ejecutable que deja "mvn package spring-boot:repackage" en backend/target
+    private static Path jarPorDefecto() {
+        Path target = Path.of("../target");
+        if (Files.isDirectory(target)) {
+            try (var ficheros = Files.list(target)) {
+                var exec = ficheros.filter(p -> p.getFileName().toString().endsWith("-exec.jar")).findFirst();
+                if (exec.isPresent()) return exec.get();
+            } catch (java.io.IOException ignored) {
+                // se informa abajo, al no encontrarlo
+            }
+        }
+        return target.resolve("marketplace-dulces-exec.jar");
+    }
+
+    // 500ms, 30s, 2m o ISO-8601 (PT30S)
+    static Duration duracion(String s) {
+        s = s.trim();
+        if (s.startsWith("P") || s.startsWith("p")) return Duration.parse(s);
+        if (s.endsWith("ms")) return Duration.ofMillis(Long.parseLong(s.substring(0, s.length() - 2)));
+        long n = Long.parseLong(s.substring(0, s.length() - 1));
+        return switch (s.charAt(s.length() - 1)) {
+            case 's' -> Duration.ofSeconds(n);
+            case 'm' -> Duration.ofMinutes(n);
+            case 'h' -> Duration.ofHours(n);
+            default -> throw new IllegalArgumentException("Duración no válida: " + s);
+        };
+    }
+
+    // "productos=30,buscar=25,..." -> pesos relativos; lo que no aparece no se ejecuta
+    static Map<Accion, Integer> mezcla(String s) {
+        Map<Accion, Integer> pesos = new EnumMap<>(Accion.class);
+        for (String parte : s.split(",")) {
+            String[] kv = parte.split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("--mezcla no válida: " + s);
+            int peso = Integer.parseInt(kv[1].trim());
+            if (peso < 0) throw new IllegalArgumentException("Peso negativo en --mezcla: " + parte);
+            if (peso > 0) pesos.put(Accion.de(kv[0]), peso);
+        }
+        if (pesos.isEmpty()) throw new IllegalArgumentException("--mezcla sin ninguna acción");
+        return pesos;
+    }
+
+    /** Tabla acumulada para elegir una acción con {@code nextInt(total)}. */
+    Accion[] tablaMezcla() {
+        List<Accion> tabla = new ArrayList<>();
+        mezcla.forEach((a, peso) -> {
+            for (int i = 0; i < peso; i++) tabla.add(a);
+        });
+        return tabla.toArray(Accion[]::new);
+    }
+}
@@ -0,0 +1,140 @@
+package com.goat.marketplacedulces.carga;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend contra el que se lanza la carga. Sin {@code --url} levanta un Postgres embebido (binarios
+ * nativos, sin Docker) con el esquema de db/init y el jar ejecutable del backend como proceso aparte,
+ * cada uno en un puerto libre; al cerrar se paran los dos.
+ */
+final class Entorno implements AutoCloseable {
+
+    private static final Duration ARRANQUE = Duration.ofMinutes(2);
+
+    private final String url;
+    private final EmbeddedPostgres postgres;
+    private final Process backend;
+
+    private Entorno(String url, EmbeddedPostgres postgres, Process backend) {
+        this.url = url;
+        this.postgres = postgres;
+        this.backend = backend;
+    }
+
+    static Entorno externo(String url) {
+        return new Entorno(url.endsWith("/") ? url.substring(0, url.length() - 1) : url, null, null);
+    }
+
+    static Entorno arrancar(Config cfg) throws Exception {
+        if (!Files.isRegularFile(cfg.jar())) {
+            throw new IllegalStateException("No existe " + cfg.jar().toAbsolutePath()
+                    + ": ejecuta antes 'mvn -DskipTests package spring-boot:repackage' en backend, o pasa --jar / --url");
+        }
+        EmbeddedPostgres pg = postgres(cfg.esquema());
+        Process proceso = null;
+        try {
+            int puerto = puertoLibre();
+            Path log = Path.of("target", "backend-carga.log");
+            Files.createDirectories(log.getParent());
+
+            List<String> comando = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-jar", cfg.jar().toAbsolutePath().toString(),
+                    "--server.port=" + puerto,
+                    "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + pg.getPort() + "/dulcesdb",
+                    "--spring.r2dbc.username=postgres"));
+            // Toda la carga sale de una IP y hace cientos de logins: el límite por cliente la frenaría
+            // (se puede activar pasando --app.limite.* propios)
+            if (cfg.argsApp().stream().noneMatch(a -> a.startsWith("--app.limite."))) {
+                comando.add("--app.limite.habilitado=false");
+            }
+            comando.addAll(cfg.argsApp());
+            proceso = new ProcessBuilder(comando)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+            System.out.printf("Backend %s en el puerto %d (log en %s)%n", cfg.jar().getFileName(), puerto, log);
+
+            String url = "http://localhost:" + puerto;
+            esperarSalud(url, proceso, log);
+            return new Entorno(url, pg, proceso);
+        } catch (Exception e) {
+            if (proceso != null) proceso.destroyForcibly();
+            pg.close();
+            throw e;
+        }
+    }
+
+    /** Postgres embebido con la BD dulcesdb creada a partir del esquema. */
+    static EmbeddedPostgres postgres(Path esquema) throws Exception {
+        String sql = Files.readString(esquema);
+        EmbeddedPostgres pg = EmbeddedPostgres.builder().start();
+        try {
+            try (Connection c = pg.getPostgresDatabase().getConnection(); Statement s = c.createStatement()) {
+                s.execute("CREATE DATABASE dulcesdb");
+            }
+            try (Connection c = pg.getDatabase("postgres", "dulcesdb").getConnection(); Statement s = c.createStatement()) {
+                s.execute(sql);
+            }
+        } catch (Exception e) {
+            pg.close();
+            throw e;
+        }
+        System.out.printf("Postgres embebido en el puerto %d%n", pg.getPort());
+        return pg;
+    }
+
+    static int puertoLibre() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static void esperarSalud(String url, Process proceso, Path log) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest salud = HttpRequest.newBuilder(URI.create(url + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2)).build();
+        long limite = System.nanoTime() + ARRANQUE.toNanos();
+        while (System.nanoTime() < limite) {
+            if (!proceso.isAlive()) {
+                throw new IllegalStateException("El backend terminó al arrancar (código " + proceso.exitValue()
+                        + "), ver " + log.toAbsolutePath());
+            }
+            try {
+                if (http.send(salud, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException todaviaNo) {
+                // aún no escucha
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("El backend no respondió en " + ARRANQUE.toSeconds() + "s, ver " + log.toAbsolutePath());
+    }
+
+    String url() {
+        return url;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (backend != null) {
+            backend.destroy(); // SIGTERM: apagado ordenado (vacía el write-behind del carrito)
+            if (!backend.waitFor(20, TimeUnit.SECONDS)) backend.destroyForcibly();
+        }
+        if (postgres != null) postgres.close();
+    }
+}
@@ -0,0 +1,257 @@
+package com.goat.marketplacedulces.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * El recorrido de un cliente de la tienda: login, catálogo, búsquedas, ráfagas de "añadir al carrito"
+ * sobre unos pocos productos de moda y consultas del carrito, en la proporción de {@code --mezcla}.
+ *
+ * <p>Dos modelos de carga:
+ * <ul>
+ *   <li><b>cerrado</b>: {@code --usuarios} clientes que lanzan una petición detrás de otra. Mide el máximo
+ *       que aguanta el backend con esa concurrencia, pero si el backend se frena los clientes también, y las
+ *       latencias salen optimistas.</li>
+ *   <li><b>abierto</b>: llegadas a {@code --tasa} peticiones/s (Poisson o constantes) independientes de lo que
+ *       tarde el backend, como el tráfico real. La latencia se mide desde el instante en que la petición
+ *       <i>debía</i> salir, no desde que salió: si el generador o el backend se atascan, la espera cuenta
+ *       (corrección de la "omisión coordinada").</li>
+ * </ul>
+ */
+final class Escenario {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String CLAVE = "carga-Dulces-123";
+    private static final String[] ORDENES = {"id", "precio", "-precio", "nombre"};
+    // Proporción de "añadir al carrito" que va a los productos de moda
+    private static final int PCT_CALIENTES = 80;
+
+    private final Config cfg;
+    private final Cliente cliente;
+    private final Medidas medidas;
+    private final Accion[] mezcla;
+    private final String prefijo;
+    private final String[] usuarios;
+    private final AtomicReferenceArray<String> tokens;
+    private final long[] productos;
+    private final long[] calientes;
+    private final String[] tipos;
+    private final String[] paises;
+    private final int precioMaximo;
+    private final AtomicLong registrados = new AtomicLong();
+    private final AtomicInteger enVuelo = new AtomicInteger();
+    private volatile long retrasoMaxGenerador;
+
+    private Escenario(Config cfg, Cliente cliente, Medidas medidas, String prefijo, String[] usuarios,
+                      AtomicReferenceArray<String> tokens, long[] productos, long[] calientes,
+                      String[] tipos, String[] paises, int precioMaximo) {
+        this.cfg = cfg;
+        this.cliente = cliente;
+        this.medidas = medidas;
+        this.mezcla = cfg.tablaMezcla();
+        this.prefijo = prefijo;
+        this.usuarios = usuarios;
+        this.tokens = tokens;
+        this.productos = productos;
+        this.calientes = calientes;
+        this.tipos = tipos;
+        this.paises = paises;
+        this.precioMaximo = precioMaximo;
+    }
+
+    /** Registra y autentica a los usuarios de la prueba y lee el catálogo. No cuenta en las medidas. */
+    static Escenario preparar(Config cfg, Cliente cliente, Medidas medidas) {
+        // Prefijo propio por ejecución: se puede repetir contra la misma BD sin chocar con usuarios anteriores
+        String prefijo = "carga" + Long.toString(System.currentTimeMillis(), 36);
+        String[] usuarios = new String[cfg.usuarios()];
+        for (int i = 0; i < usuarios.length; i++) usuarios[i] = prefijo + "-" + i;
+        AtomicReferenceArray<String> tokens = new AtomicReferenceArray<>(usuarios.length);
+
+        // bcrypt es caro a propósito: pocas a la vez para no saturar el pool de hashing ya de entrada
+        Flux.range(0, usuarios.length)
+                .flatMap(i -> cliente.post("/auth/register", null, credenciales(usuarios[i]), false)
+                        .flatMap(r -> exigir(r, "registro de " + usuarios[i]))
+                        .then(cliente.post("/auth/login", null, credenciales(usuarios[i]), true))
+                        .flatMap(r -> exigir(r, "login de " + usuarios[i]))
+                        .doOnNext(r -> tokens.set(i, token(r.cuerpo()))), 16)
+                .blockLast(Duration.ofMinutes(5));
+
+        Cliente.Respuesta catalogo = cliente.getConCuerpo("/productos", tokens.get(0))
+                .flatMap(r -> exigir(r, "GET /productos"))
+                .block(Duration.ofSeconds(30));
+        List<Long> ids = new ArrayList<>();
+        TreeSet<String> tipos = new TreeSet<>();
+        TreeSet<String> paises = new TreeSet<>();
+        int precioMaximo = 0;
+        try {
+            for (JsonNode p : JSON.readTree(catalogo.cuerpo())) {
+                ids.add(p.path("id").asLong());
+                if (p.hasNonNull("tipo")) tipos.add(p.get("tipo").asText());
+                if (p.hasNonNull("paisOrigen")) paises.add(p.get("paisOrigen").asText());
+                precioMaximo = Math.max(precioMaximo, p.path("precio").asInt());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Respuesta de /productos no válida", e);
+        }
+        if (ids.isEmpty()) throw new IllegalStateException("El catálogo está vacío: no hay nada que añadir al carrito");
+
+        List<Long> barajados = new ArrayList<>(ids);
+        Collections.shuffle(barajados, new Random(cfg.semilla()));
+        long[] calientes = barajados.subList(0, Math.min(cfg.calientes(), barajados.size()))
+                .stream().mapToLong(Long::longValue).toArray();
+
+        System.out.printf("Preparado: %d usuarios, %d productos (de moda: %s)%n",
+                usuarios.length, ids.size(), java.util.Arrays.toString(calientes));
+        return new Escenario(cfg, cliente, medidas, prefijo, usuarios, tokens,
+                ids.stream().mapToLong(Long::longValue).toArray(), calientes,
+                tipos.toArray(String[]::new), paises.toArray(String[]::new), Math.max(1, precioMaximo));
+    }
+
+    private static Mono<Cliente.Respuesta> exigir(Cliente.Respuesta r, String que) {
+        if (r.estado() / 100 == 2) return Mono.just(r);
+        return Mono.error(new IllegalStateException(que + " respondió " + r.estado() + " " + r.cuerpo()));
+    }
+
+    private static String credenciales(String username) {
+        ObjectNode body = JSON.createObjectNode().put("username", username).put("password", CLAVE);
+        return body.toString();
+    }
+
+    private static String token(String cuerpo) {
+        try {
+            return JSON.readTree(cuerpo).path("token").asText(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Ejecuta calentamiento + medición según el modelo y espera a que terminen las peticiones en vuelo. */
+    void ejecutar() {
+        long inicio = System.nanoTime();
+        long desde = inicio + cfg.calentamiento().toNanos();
+        long fin = desde + cfg.duracion().toNanos();
+        medidas.medirDesde(desde);
+        if (cfg.abierto()) abierto(inicio, fin);
+        else cerrado(fin);
+    }
+
+    private void cerrado(long fin) {
+        // Cada usuario virtual encadena peticiones: la siguiente sale cuando vuelve la anterior
+        Flux.range(0, usuarios.length)
+                .flatMap(u -> Mono.defer(() -> accion(elegir(ThreadLocalRandom.current().nextInt(mezcla.length)),
+                                        u, System.nanoTime()))
+                                .repeat(() -> System.nanoTime() < fin),
+                        usuarios.length)
+                .blockLast(cfg.duracion().plus(cfg.calentamiento()).plusMinutes(1));
+    }
+
+    private void abierto(long inicio, long fin) {
+        SplittableRandom rnd = new SplittableRandom(cfg.semilla());
+        double intervalo = 1e9 / cfg.tasa();
+        double t = inicio;
+        while (true) {
+            // Poisson: intervalos exponenciales, con rachas y huecos como el tráfico real
+            t += cfg.poisson() ? -Math.log(1 - rnd.nextDouble()) * intervalo : intervalo;
+            long previsto = (long) t;
+            if (previsto >= fin) break;
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) LockSupport.parkNanos(espera);
+            else retrasoMaxGenerador = Math.max(retrasoMaxGenerador, -espera);
+
+            if (enVuelo.get() >= cfg.maxEnVuelo()) {
+                // El backend no da abasto: la llegada se pierde (y se cuenta) en vez de acumular memoria sin fin
+                medidas.descartar(previsto);
+                continue;
+            }
+            enVuelo.incrementAndGet();
+            accion(elegir(rnd.nextInt(mezcla.length)), rnd.nextInt(usuarios.length), previsto)
+                    .doFinally(s -> enVuelo.decrementAndGet())
+                    .subscribe();
+        }
+        long limite = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+        while (enVuelo.get() > 0 && System.nanoTime() < limite) LockSupport.parkNanos(10_000_000);
+    }
+
+    private Accion elegir(int i) {
+        return mezcla[i];
+    }
+
+    long retrasoMaxGeneradorNanos() {
+        return retrasoMaxGenerador;
+    }
+
+    private Mono<Void> accion(Accion a, int u, long inicio) {
+        String token = tokens.get(u);
+        return switch (a) {
+            case REGISTER -> medir(a, inicio,
+                    cliente.post("/auth/register", null, credenciales(prefijo + "-n" + registrados.incrementAndGet()), false));
+            case LOGIN -> medir(a, inicio, cliente.post("/auth/login", null, credenciales(usuarios[u]), true)
+                    .doOnNext(r -> {
+                        if (r.estado() == 200) tokens.set(u, token(r.cuerpo()));
+                    }));
+            case PRODUCTOS -> medir(a, inicio, cliente.get("/productos", token));
+            case BUSCAR -> medir(a, inicio, cliente.get(busqueda(), token));
+            case AGREGAR -> rafaga(u, token, inicio);
+            case CARRITO -> medir(a, inicio, cliente.get("/carrito", token));
+        };
+    }
+
+    // Alguien que añade varias unidades seguidas: 1..rafaga POST consecutivos, casi siempre a productos de moda.
+    // La primera se mide desde su instante previsto; las siguientes salen en cuanto vuelve la anterior.
+    private Mono<Void> rafaga(int u, String token, long inicio) {
+        int n = 1 + ThreadLocalRandom.current().nextInt(cfg.rafaga());
+        return Flux.range(0, n)
+                .concatMap(i -> Mono.defer(() -> medir(Accion.AGREGAR, i == 0 ? inicio : System.nanoTime(),
+                        cliente.post("/carrito/agregar?productoId=" + productoParaCarrito() + "&cantidad=1",
+                                token, null, false))))
+                .then();
+    }
+
+    private long productoParaCarrito() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return rnd.nextInt(100) < PCT_CALIENTES
+                ? calientes[rnd.nextInt(calientes.length)]
+                : productos[rnd.nextInt(productos.length)];
+    }
+
+    // Combinaciones de filtros como las de la barra lateral de la tienda
+    private String busqueda() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        StringBuilder q = new StringBuilder("/productos/buscar?limite=20&orden=").append(ORDENES[rnd.nextInt(ORDENES.length)]);
+        if (tipos.length > 0 && rnd.nextBoolean()) q.append("&tipo=").append(codificar(tipos[rnd.nextInt(tipos.length)]));
+        if (paises.length > 0 && rnd.nextInt(10) < 3) q.append("&pais=").append(codificar(paises[rnd.nextInt(paises.length)]));
+        if (rnd.nextBoolean()) q.append("&precioMax=").append(1 + rnd.nextInt(precioMaximo));
+        if (rnd.nextInt(4) == 0) q.append("&enStock=true");
+        return q.toString();
+    }
+
+    private static String codificar(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private Mono<Void> medir(Accion a, long inicio, Mono<Cliente.Respuesta> peticion) {
+        return peticion
+                .map(Cliente.Respuesta::estado)
+                .onErrorReturn(Medidas.SIN_RESPUESTA)
+                .doOnNext(estado -> medidas.registrar(a, inicio, estado))
+                .then();
+    }
+}
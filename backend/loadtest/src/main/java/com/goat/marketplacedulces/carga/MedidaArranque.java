@@ -0,0 +1,234 @@
+package com.goat.marketplacedulces.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * Tiempo de arranque del backend: desde que se lanza el proceso hasta el primer {@code /actuator/health}
+ * con 200 (con la BD conectada), que es cuando el balanceador le empieza a mandar tráfico. Compara el jar
+ * ejecutable de siempre con el arranque AOT y con AOT + el archivo CDS del perfil {@code aot}, contra un
+ * Postgres embebido, y escribe el resultado en JSON. Desde backend/loadtest:
+ * <pre>
+ * mvn -f ../pom.xml -Paot -DskipTests package spring-boot:repackage
+ * mvn compile exec:java -Dexec.mainClass=com.goat.marketplacedulces.carga.MedidaArranque -Dexec.args="--repeticiones=10"
+ * </pre>
+ */
+public final class MedidaArranque {
+
+    static final String USO = """
+            Opciones (--clave=valor):
+              --target=../target          build del backend (jar -exec, jar normal, lib/ y app.jsa del perfil aot)
+              --esquema=ruta              SQL inicial de la BD embebida (por defecto ../../db/init/schema.sql)
+              --variantes=jar,aot,aot-cds las que no estén construidas se saltan
+              --repeticiones=5            arranques por variante (se descarta uno previo de calentamiento del disco)
+              --salida=resultados-arranque.json
+            """;
+
+    private static final Set<String> CLAVES = Set.of("target", "esquema", "variantes", "repeticiones", "salida");
+    private static final String MAIN = "com.goat.marketplacedulces.MarketplaceDulcesApplication";
+    private static final String INICIALIZADOR_AOT =
+            "com/goat/marketplacedulces/MarketplaceDulcesApplication__ApplicationContextInitializer.class";
+    private static final Duration ARRANQUE = Duration.ofMinutes(2);
+
+    private record Variante(String nombre, List<String> jvm) {
+    }
+
+    private record Resumen(String nombre, List<Double> ms) {
+        double percentil(double p) {
+            List<Double> orden = ms.stream().sorted().toList();
+            return orden.get((int) Math.min(orden.size() - 1, Math.ceil(p / 100 * orden.size()) - 1));
+        }
+
+        double min() {
+            return ms.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        }
+
+        double max() {
+            return ms.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        }
+    }
+
+    private MedidaArranque() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> o = new HashMap<>();
+        for (String a : args) {
+            String clave = a.startsWith("--") && a.contains("=") ? a.substring(2, a.indexOf('=')) : null;
+            if (clave == null || !CLAVES.contains(clave)) {
+                System.err.println("Argumento no válido: " + a);
+                System.err.println(USO);
+                System.exit(2);
+                return;
+            }
+            o.put(clave, a.substring(a.indexOf('=') + 1));
+        }
+        Path target = Path.of(o.getOrDefault("target", "../target"));
+        int repeticiones = Integer.parseInt(o.getOrDefault("repeticiones", "5"));
+        List<String> pedidas = Arrays.asList(o.getOrDefault("variantes", "jar,aot,aot-cds").split(","));
+        Path salida = Path.of(o.getOrDefault("salida", "resultados-arranque.json"));
+
+        List<Variante> variantes = variantes(target, pedidas);
+        if (variantes.isEmpty()) {
+            System.err.println("Nada que medir en " + target.toAbsolutePath()
+                    + ": ejecuta antes 'mvn -Paot -DskipTests package spring-boot:repackage' en backend");
+            System.exit(1);
+            return;
+        }
+
+        List<Resumen> resumenes = new ArrayList<>();
+        try (EmbeddedPostgres pg = Entorno.postgres(Path.of(o.getOrDefault("esquema", "../../db/init/schema.sql")))) {
+            for (Variante v : variantes) {
+                medir(v, pg, 1); // caché de páginas del SO y JIT del propio medidor
+                List<Double> ms = new ArrayList<>();
+                for (int i = 0; i < repeticiones; i++) ms.add(medir(v, pg, i + 1));
+                resumenes.add(new Resumen(v.nombre(), ms));
+                System.out.printf("%-8s %s ms%n", v.nombre(), ms);
+            }
+        }
+        imprimir(resumenes);
+        escribir(salida, repeticiones, resumenes);
+    }
+
+    private static List<Variante> variantes(Path target, List<String> pedidas) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Variante> variantes = new ArrayList<>();
+        Path exec = null, jar = null;
+        if (Files.isDirectory(target)) {
+            try (var ficheros = Files.list(target)) {
+                for (Path p : (Iterable<Path>) ficheros::iterator) {
+                    String n = p.getFileName().toString();
+                    if (n.endsWith("-exec.jar")) exec = p;
+                    else if (n.endsWith(".jar")) jar = p;
+                }
+            }
+        }
+        Path lib = target.resolve("lib"), cds = target.resolve("app.jsa");
+        boolean aot = jar != null && Files.isDirectory(lib) && tieneAot(jar);
+
+        for (String nombre : pedidas) {
+            switch (nombre.trim()) {
+                case "jar" -> {
+                    if (exec != null) variantes.add(new Variante("jar", List.of(java, "-jar", exec.toAbsolutePath().toString())));
+                    else System.out.println("jar: no hay *-exec.jar, se salta");
+                }
+                case "aot" -> {
+                    if (aot) variantes.add(new Variante("aot", aotCon(java, List.of(), jar, lib)));
+                    else System.out.println("aot: falta el build con -Paot, se salta");
+                }
+                case "aot-cds" -> {
+                    if (aot && Files.isRegularFile(cds)) {
+                        // -Xshare:on: si el archivo no vale para esta JVM o classpath, que falle en vez de medir sin él
+                        variantes.add(new Variante("aot-cds", aotCon(java, List.of(
+                                "-XX:SharedArchiveFile=" + cds.toAbsolutePath(), "-Xshare:on"), jar, lib)));
+                    } else {
+                        System.out.println("aot-cds: falta " + cds + " (mvn -Paot package), se salta");
+                    }
+                }
+                default -> throw new IllegalArgumentException("Variante desconocida: " + nombre);
+            }
+        }
+        return variantes;
+    }
+
+    // Mismo classpath (rutas incluidas) que el entrenamiento del perfil aot: CDS lo comprueba al arrancar
+    private static List<String> aotCon(String java, List<String> opciones, Path jar, Path lib) {
+        List<String> comando = new ArrayList<>(List.of(java));
+        comando.addAll(opciones);
+        comando.addAll(List.of("-Dspring.aot.enabled=true",
+                "-cp", jar.toAbsolutePath().normalize() + ":" + lib.toAbsolutePath().normalize() + "/*", MAIN));
+        return comando;
+    }
+
+    private static boolean tieneAot(Path jar) throws IOException {
+        try (JarFile j = new JarFile(jar.toFile())) {
+            return j.getEntry(INICIALIZADOR_AOT) != null;
+        }
+    }
+
+    private static double medir(Variante v, EmbeddedPostgres pg, int vez) throws Exception {
+        int puerto = Entorno.puertoLibre();
+        Path log = Path.of("target", "arranque-" + v.nombre() + ".log");
+        Files.createDirectories(log.getParent());
+        List<String> comando = new ArrayList<>(v.jvm());
+        comando.addAll(List.of(
+                "--server.port=" + puerto,
+                "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + pg.getPort() + "/dulcesdb",
+                "--spring.r2dbc.username=postgres"));
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest salud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2)).build();
+        long inicio = System.nanoTime();
+        Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            long limite = inicio + ARRANQUE.toNanos();
+            while (System.nanoTime() < limite) {
+                if (!proceso.isAlive()) {
+                    throw new IllegalStateException(v.nombre() + ": el backend terminó al arrancar (código "
+                            + proceso.exitValue() + "), ver " + log.toAbsolutePath());
+                }
+                try {
+                    if (http.send(salud, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - inicio) / 1e6;
+                    }
+                } catch (IOException todaviaNo) {
+                    // aún no escucha
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(v.nombre() + " (vez " + vez + "): sin salud en " + ARRANQUE.toSeconds() + "s");
+        } finally {
+            proceso.destroy();
+            if (!proceso.waitFor(20, TimeUnit.SECONDS)) proceso.destroyForcibly();
+        }
+    }
+
+    private static void imprimir(List<Resumen> resumenes) {
+        double base = resumenes.get(0).percentil(50);
+        System.out.printf("%n%-8s %8s %8s %8s %10s%n", "variante", "p50", "min", "max", "vs " + resumenes.get(0).nombre());
+        for (Resumen r : resumenes) {
+            System.out.printf("%-8s %8.0f %8.0f %8.0f %9.0f%%%n",
+                    r.nombre(), r.percentil(50), r.min(), r.max(), 100 * (r.percentil(50) - base) / base);
+        }
+    }
+
+    private static void escribir(Path salida, int repeticiones, List<Resumen> resumenes) throws IOException {
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode raiz = json.createObjectNode();
+        raiz.put("fecha", Instant.now().toString());
+        raiz.put("java", System.getProperty("java.runtime.version"));
+        raiz.put("cpus", Runtime.getRuntime().availableProcessors());
+        raiz.put("repeticiones", repeticiones);
+        ObjectNode variantes = raiz.putObject("hastaSaludMs");
+        for (Resumen r : resumenes) {
+            ObjectNode v = variantes.putObject(r.nombre());
+            v.put("p50", r.percentil(50));
+            v.put("min", r.min());
+            v.put("max", r.max());
+            v.putPOJO("muestras", r.ms());
+        }
+        json.writeValue(salida.toFile(), raiz);
+        System.out.printf("Resultados en %s%n", salida.toAbsolutePath());
+    }
+}
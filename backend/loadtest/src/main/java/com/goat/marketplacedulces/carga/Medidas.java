@@ -0,0 +1,94 @@
+package com.goat.marketplacedulces.carga;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias y códigos de respuesta por endpoint. Lo que empieza durante el calentamiento no se registra.
+ *
+ * <p>Los histogramas son HdrHistogram en microsegundos (hasta 5 minutos, 3 cifras significativas):
+ * registrar no reserva memoria y es seguro desde cualquier hilo, así que el propio generador
+ * no distorsiona las colas altas (p99.9).
+ */
+final class Medidas {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    // Código 0: la petición no llegó a tener respuesta (conexión rechazada, timeout)
+    static final int SIN_RESPUESTA = 0;
+
+    private final Map<Accion, Endpoint> endpoints = new EnumMap<>(Accion.class);
+    private final LongAdder descartadas = new LongAdder();
+    private volatile long desde = Long.MAX_VALUE;
+
+    Medidas() {
+        for (Accion a : Accion.values()) endpoints.put(a, new Endpoint());
+    }
+
+    /**
+     * Solo cuentan las peticiones previstas a partir de {@code nanos} (lo anterior es calentamiento).
+     * Las que empezaron antes y acaban después tampoco: son las que arrastran la cola del calentamiento.
+     */
+    void medirDesde(long nanos) {
+        desde = nanos;
+    }
+
+    /** {@code inicio} es el instante previsto de la petición, no el de envío (ver Escenario). */
+    void registrar(Accion accion, long inicio, int estado) {
+        if (inicio < desde) return;
+        Endpoint e = endpoints.get(accion);
+        long micros = Math.min(MAX_MICROS, Math.max(0, (System.nanoTime() - inicio) / 1_000));
+        e.latencias.recordValue(micros);
+        e.estados.computeIfAbsent(estado, k -> new LongAdder()).increment();
+        if (estado == SIN_RESPUESTA || estado >= 400) e.errores.increment();
+    }
+
+    /** Llegada del modelo abierto que no se lanzó porque ya había demasiadas en vuelo. */
+    void descartar(long previsto) {
+        if (previsto >= desde) descartadas.increment();
+    }
+
+    long descartadas() {
+        return descartadas.sum();
+    }
+
+    Resumen resumen(Accion accion) {
+        Endpoint e = endpoints.get(accion);
+        Histogram h = e.latencias.getIntervalHistogram();
+        Map<Integer, Long> estados = new TreeMap<>();
+        e.estados.forEach((k, v) -> estados.put(k, v.sum()));
+        return new Resumen(accion, h, e.errores.sum(), estados);
+    }
+
+    private static final class Endpoint {
+        final Recorder latencias = new Recorder(1, MAX_MICROS, 3);
+        final LongAdder errores = new LongAdder();
+        final Map<Integer, LongAdder> estados = new ConcurrentHashMap<>();
+    }
+
+    record Resumen(Accion accion, Histogram latencias, long errores, Map<Integer, Long> estados) {
+
+        long peticiones() {
+            return latencias.getTotalCount();
+        }
+
+        double percentilMs(double p) {
+            return latencias.getTotalCount() == 0 ? 0 : latencias.getValueAtPercentile(p) / 1000.0;
+        }
+
+        double maxMs() {
+            return latencias.getTotalCount() == 0 ? 0 : latencias.getMaxValue() / 1000.0;
+        }
+
+        double mediaMs() {
+            return latencias.getTotalCount() == 0 ? 0 : latencias.getMean() / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.goat.marketplacedulces.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prueba de carga de extremo a extremo del recorrido login → catálogo → carrito.
+ *
+ * <p>Imprime una tabla por endpoint y escribe el mismo resultado en JSON ({@code --salida}) para comparar
+ * ejecuciones o alimentar una gráfica. Ejemplos (desde backend/loadtest):
+ * <pre>
+ * mvn compile exec:java -Dexec.args="--modelo=cerrado --usuarios=64 --duracion=60s"
+ * mvn compile exec:java -Dexec.args="--modelo=abierto --tasa=500 --duracion=2m --salida=abierto-500.json"
+ * mvn compile exec:java -Dexec.args="--url=http://localhost:8080 --modelo=abierto --tasa=200"
+ * mvn compile exec:java -Dexec.args="--app-args=--app.carrito.write-behind.habilitado=true --modelo=abierto --tasa=800"
+ * </pre>
+ */
+public final class PruebaCarga {
+
+    static final String USO = """
+            Opciones (--clave=valor):
+              --url=http://host:puerto   backend ya levantado; sin ella se arranca Postgres embebido + el jar del backend
+              --jar=ruta                 jar ejecutable (por defecto ../target/*-exec.jar)
+              --esquema=ruta             SQL inicial de la BD embebida (por defecto ../../db/init/schema.sql)
+              --app-args="a b"           argumentos extra para el backend arrancado (p.ej. --app.auth.modo=lookup)
+              --modelo=cerrado|abierto   usuarios en bucle / llegadas a ritmo fijo (por defecto cerrado)
+              --usuarios=50              usuarios de la prueba (y concurrencia del modelo cerrado)
+              --tasa=200                 peticiones/s del modelo abierto
+              --llegadas=poisson|constante
+              --max-en-vuelo=2000        modelo abierto: por encima se descartan llegadas (y se cuentan)
+              --duracion=60s --calentamiento=10s
+              --mezcla=productos=30,buscar=25,agregar=25,carrito=15,login=3,register=2
+              --calientes=5              productos de moda que reciben el 80% de los "añadir al carrito"
+              --rafaga=4                 máximo de POST /carrito/agregar seguidos por ráfaga
+              --semilla=N                reproducir la misma secuencia de llegadas
+              --salida=resultados-carga.json
+            """;
+
+    private PruebaCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config cfg;
+        try {
+            cfg = Config.de(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USO);
+            System.exit(2);
+            return;
+        }
+
+        Medidas medidas = new Medidas();
+        try (Entorno entorno = cfg.url() != null ? Entorno.externo(cfg.url()) : Entorno.arrancar(cfg);
+             Cliente cliente = new Cliente(entorno.url(), Math.max(cfg.usuarios(), Math.min(cfg.maxEnVuelo(), 1000)))) {
+            Escenario escenario = Escenario.preparar(cfg, cliente, medidas);
+            System.out.printf("Carga %s contra %s: %s de calentamiento + %s medidos%n",
+                    cfg.abierto() ? "abierta a " + cfg.tasa() + " pet/s" : "cerrada con " + cfg.usuarios() + " usuarios",
+                    entorno.url(), cfg.calentamiento(), cfg.duracion());
+            escenario.ejecutar();
+
+            List<Medidas.Resumen> resumenes = new ArrayList<>();
+            for (Accion a : Accion.values()) {
+                if (cfg.mezcla().containsKey(a)) resumenes.add(medidas.resumen(a));
+            }
+            imprimir(cfg, resumenes, medidas.descartadas());
+            escribir(cfg, entorno.url(), resumenes, medidas.descartadas(), escenario.retrasoMaxGeneradorNanos());
+        }
+    }
+
+    private static void imprimir(Config cfg, List<Medidas.Resumen> resumenes, long descartadas) {
+        double segundos = cfg.duracion().toMillis() / 1000.0;
+        System.out.printf("%n%-22s %10s %8s %9s %8s %8s %8s %8s %8s%n",
+                "endpoint", "peticiones", "errores", "pet/s", "p50", "p95", "p99", "p99.9", "max (ms)");
+        long total = 0, errores = 0;
+        for (Medidas.Resumen r : resumenes) {
+            total += r.peticiones();
+            errores += r.errores();
+            System.out.printf("%-22s %10d %8d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    r.accion().endpoint, r.peticiones(), r.errores(), r.peticiones() / segundos,
+                    r.percentilMs(50), r.percentilMs(95), r.percentilMs(99), r.percentilMs(99.9), r.maxMs());
+        }
+        System.out.printf("%-22s %10d %8d %9.1f%n", "total", total, errores, total / segundos);
+        if (descartadas > 0) {
+            System.out.printf("%d llegadas descartadas por superar --max-en-vuelo: el backend no sostiene la tasa%n", descartadas);
+        }
+    }
+
+    private static void escribir(Config cfg, String url, List<Medidas.Resumen> resumenes,
+                                 long descartadas, long retrasoGenerador) throws Exception {
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        double segundos = cfg.duracion().toMillis() / 1000.0;
+
+        ObjectNode raiz = json.createObjectNode();
+        raiz.put("fecha", Instant.now().toString());
+        raiz.put("url", url);
+        ObjectNode config = raiz.putObject("config");
+        config.put("modelo", cfg.abierto() ? "abierto" : "cerrado");
+        if (cfg.abierto()) {
+            config.put("tasa", cfg.tasa());
+            config.put("llegadas", cfg.poisson() ? "poisson" : "constante");
+            config.put("maxEnVuelo", cfg.maxEnVuelo());
+        }
+        config.put("usuarios", cfg.usuarios());
+        config.put("duracionS", segundos);
+        config.put("calentamientoS", cfg.calentamiento().toMillis() / 1000.0);
+        config.put("calientes", cfg.calientes());
+        config.put("rafaga", cfg.rafaga());
+        config.put("semilla", cfg.semilla());
+        config.putPOJO("appArgs", cfg.argsApp());
+        ObjectNode mezcla = config.putObject("mezcla");
+        cfg.mezcla().forEach((a, peso) -> mezcla.put(a.name().toLowerCase(), peso));
+
+        long total = 0, errores = 0;
+        ObjectNode endpoints = raiz.putObject("endpoints");
+        for (Medidas.Resumen r : resumenes) {
+            total += r.peticiones();
+            errores += r.errores();
+            ObjectNode e = endpoints.putObject(r.accion().endpoint);
+            e.put("peticiones", r.peticiones());
+            e.put("errores", r.errores());
+            e.put("rps", r.peticiones() / segundos);
+            ObjectNode estados = e.putObject("porEstado");
+            r.estados().forEach((estado, n) -> estados.put(String.valueOf(estado), n));
+            ObjectNode lat = e.putObject("latenciaMs");
+            lat.put("p50", r.percentilMs(50));
+            lat.put("p95", r.percentilMs(95));
+            lat.put("p99", r.percentilMs(99));
+            lat.put("p999", r.percentilMs(99.9));
+            lat.put("max", r.maxMs());
+            lat.put("media", r.mediaMs());
+        }
+        ObjectNode totales = raiz.putObject("totales");
+        totales.put("peticiones", total);
+        totales.put("errores", errores);
+        totales.put("rps", total / segundos);
+        totales.put("descartadas", descartadas);
+        // Si el generador va muy por detrás de lo previsto, la máquina que genera carga es el cuello de botella
+        totales.put("retrasoMaxGeneradorMs", retrasoGenerador / 1e6);
+
+        Path salida = cfg.salida();
+        json.writeValue(salida.toFile(), raiz);
+        System.out.printf("Resultados en %s%n", salida.toAbsolutePath());
+    }
+}
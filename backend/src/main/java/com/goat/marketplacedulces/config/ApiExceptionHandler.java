@@ -17,6 +17,7 @@ public class ApiExceptionHandler {
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<Map<String, Object>> onResponseStatus(ResponseStatusException ex) {
         return ResponseEntity.status(ex.getStatusCode())
+                .headers(ex.getHeaders()) // p.ej. Retry-After en los 503
                 .body(Map.of("message", ex.getReason()));
     }
 
@@ -0,0 +1,256 @@
+package com.goat.marketplacedulces.config;
+
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ConnectionMetadata;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.TransactionDefinition;
+import io.r2dbc.spi.ValidationDepth;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Apunta cada sentencia ejecutada en la {@link ConsultasPeticion} de la petición que la lanzó,
+ * leyéndola del contexto de Reactor de quien se suscribe a {@code execute()}. El tiempo va desde
+ * que se ejecuta hasta que se han leído todos los resultados.
+ * Fuera de una petición (tareas en segundo plano, write-behind) no hay nada que apuntar.
+ */
+class ConnectionFactoryContada implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory delegado;
+
+    ConnectionFactoryContada(ConnectionFactory delegado) {
+        this.delegado = delegado;
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.from(delegado.create()).map(Conexion::new);
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegado.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegado;
+    }
+
+    // Ver ConnectionFactoryMedida#dispose
+    @Override
+    public void dispose() {
+        if (delegado instanceof Disposable d) d.dispose();
+    }
+
+    private static Publisher<? extends Result> contar(String sql, Publisher<? extends Result> ejecucion) {
+        Flux<Result> resultados = Flux.from(ejecucion);
+        return Flux.deferContextual(ctx -> {
+            Optional<ConsultasPeticion> consultas = ctx.getOrEmpty(ConsultasPeticion.CLAVE);
+            if (consultas.isEmpty()) return resultados;
+            long inicio = System.nanoTime();
+            return resultados
+                    .doFinally(s -> consultas.get().registrar(sql, System.nanoTime() - inicio));
+        });
+    }
+
+    private record Conexion(Connection delegado) implements Connection, Wrapped<Connection> {
+
+        @Override
+        public Statement createStatement(String sql) {
+            return new Sentencia(delegado.createStatement(sql), sql);
+        }
+
+        @Override
+        public Batch createBatch() {
+            return new Lote(delegado.createBatch());
+        }
+
+        @Override
+        public Connection unwrap() {
+            return delegado;
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction() {
+            return delegado.beginTransaction();
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction(TransactionDefinition definition) {
+            return delegado.beginTransaction(definition);
+        }
+
+        @Override
+        public Publisher<Void> close() {
+            return delegado.close();
+        }
+
+        @Override
+        public Publisher<Void> commitTransaction() {
+            return delegado.commitTransaction();
+        }
+
+        @Override
+        public Publisher<Void> createSavepoint(String name) {
+            return delegado.createSavepoint(name);
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return delegado.isAutoCommit();
+        }
+
+        @Override
+        public ConnectionMetadata getMetadata() {
+            return delegado.getMetadata();
+        }
+
+        @Override
+        public IsolationLevel getTransactionIsolationLevel() {
+            return delegado.getTransactionIsolationLevel();
+        }
+
+        @Override
+        public Publisher<Void> releaseSavepoint(String name) {
+            return delegado.releaseSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransaction() {
+            return delegado.rollbackTransaction();
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransactionToSavepoint(String name) {
+            return delegado.rollbackTransactionToSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> setAutoCommit(boolean autoCommit) {
+            return delegado.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Publisher<Void> setLockWaitTimeout(Duration timeout) {
+            return delegado.setLockWaitTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setStatementTimeout(Duration timeout) {
+            return delegado.setStatementTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setTransactionIsolationLevel(IsolationLevel isolationLevel) {
+            return delegado.setTransactionIsolationLevel(isolationLevel);
+        }
+
+        @Override
+        public Publisher<Boolean> validate(ValidationDepth depth) {
+            return delegado.validate(depth);
+        }
+    }
+
+    private static final class Sentencia implements Statement, Wrapped<Statement> {
+
+        private final Statement delegado;
+        private final String sql;
+
+        Sentencia(Statement delegado, String sql) {
+            this.delegado = delegado;
+            this.sql = sql;
+        }
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            return contar(sql, delegado.execute());
+        }
+
+        @Override
+        public Statement add() {
+            delegado.add();
+            return this;
+        }
+
+        @Override
+        public Statement bind(int index, Object value) {
+            delegado.bind(index, value);
+            return this;
+        }
+
+        @Override
+        public Statement bind(String name, Object value) {
+            delegado.bind(name, value);
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(int index, Class<?> type) {
+            delegado.bindNull(index, type);
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(String name, Class<?> type) {
+            delegado.bindNull(name, type);
+            return this;
+        }
+
+        @Override
+        public Statement returnGeneratedValues(String... columns) {
+            delegado.returnGeneratedValues(columns);
+            return this;
+        }
+
+        @Override
+        public Statement fetchSize(int rows) {
+            delegado.fetchSize(rows);
+            return this;
+        }
+
+        @Override
+        public Statement unwrap() {
+            return delegado;
+        }
+    }
+
+    private static final class Lote implements Batch, Wrapped<Batch> {
+
+        private final Batch delegado;
+        private final StringBuilder sql = new StringBuilder();
+
+        Lote(Batch delegado) {
+            this.delegado = delegado;
+        }
+
+        @Override
+        public Batch add(String sql) {
+            delegado.add(sql);
+            if (!this.sql.isEmpty()) this.sql.append("; ");
+            this.sql.append(sql);
+            return this;
+        }
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            return contar(sql.toString(), delegado.execute());
+        }
+
+        @Override
+        public Batch unwrap() {
+            return delegado;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.goat.marketplacedulces.config;
+
+import com.goat.marketplacedulces.repository.Replica;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Manda a la réplica las conexiones pedidas desde una lectura marcada con {@link Replica#leer}
+ * y el resto a la primaria. Si la réplica no da conexión, esa lectura y las de los siguientes
+ * {@code reintento} van a la primaria; pasado ese tiempo se vuelve a probar.
+ *
+ * <p>Las transacciones no pasan por aquí más que al abrirse (y sin marca, así que en la primaria):
+ * dentro de ellas Spring reutiliza su conexión aunque la lectura esté marcada.
+ */
+@Slf4j
+class ConnectionFactoryEnrutada implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory primaria;
+    private final ConnectionFactory replica;
+    private final long reintentoNanos;
+    private volatile boolean caida;
+    private volatile long caidaHasta;
+
+    ConnectionFactoryEnrutada(ConnectionFactory primaria, ConnectionFactory replica, Duration reintento) {
+        this.primaria = primaria;
+        this.replica = replica;
+        this.reintentoNanos = reintento.toNanos();
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.deferContextual(ctx -> {
+            if (!ctx.getOrDefault(Replica.LECTURA, false) || replicaCaida()) {
+                return Mono.from(primaria.create());
+            }
+            return Mono.<Connection>from(replica.create())
+                    .doOnNext(c -> caida = false)
+                    .onErrorResume(e -> {
+                        if (!caida) log.warn("Réplica sin conexión, se lee de la primaria: {}", e.toString());
+                        caida = true;
+                        caidaHasta = System.nanoTime() + reintentoNanos;
+                        return Mono.from(primaria.create());
+                    });
+        });
+    }
+
+    boolean replicaCaida() {
+        return caida && System.nanoTime() - caidaHasta < 0;
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return primaria.getMetadata();
+    }
+
+    // La primaria es el pool que declaró Spring Boot: así sigue publicando sus métricas
+    @Override
+    public ConnectionFactory unwrap() {
+        return primaria;
+    }
+
+    @Override
+    public void dispose() {
+        if (replica instanceof Disposable d) d.dispose();
+        if (primaria instanceof Disposable d) d.dispose();
+    }
+}
@@ -0,0 +1,71 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide cuánto se tarda en conseguir una conexión del pool ({@code r2dbc.pool.acquire}).
+ * Con el pool libre es casi cero; cuando crece es que las peticiones esperan conexión.
+ * Implementa {@link Wrapped} para que Spring Boot siga encontrando el pool de debajo
+ * y publicando sus gauges ({@code r2dbc.pool.acquired}, {@code pending}, ...).
+ */
+class ConnectionFactoryMedida implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory delegado;
+    private final Timer obtenida, fallida, cancelada;
+
+    ConnectionFactoryMedida(ConnectionFactory delegado, MeterRegistry registry, String nombre) {
+        this.delegado = delegado;
+        this.obtenida = timer(registry, nombre, "ok");
+        this.fallida = timer(registry, nombre, "error");
+        this.cancelada = timer(registry, nombre, "cancelada");
+    }
+
+    private static Timer timer(MeterRegistry registry, String nombre, String resultado) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .tag("name", nombre)
+                .tag("resultado", resultado)
+                .description("Tiempo hasta obtener una conexión del pool")
+                .register(registry);
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            long inicio = System.nanoTime();
+            return Mono.<Connection>from(delegado.create())
+                    .doOnNext(c -> registrar(obtenida, inicio))
+                    .doOnError(e -> registrar(fallida, inicio))
+                    .doOnCancel(() -> registrar(cancelada, inicio));
+        });
+    }
+
+    private static void registrar(Timer timer, long inicio) {
+        timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegado.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegado;
+    }
+
+    // Spring Boot declara el pool con destroyMethod = "dispose" y ahora lo llama sobre el envoltorio
+    @Override
+    public void dispose() {
+        if (delegado instanceof Disposable d) d.dispose();
+    }
+}
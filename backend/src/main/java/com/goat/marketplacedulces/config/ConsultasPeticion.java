@@ -0,0 +1,42 @@
+package com.goat.marketplacedulces.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sentencias SQL lanzadas durante una petición HTTP y el tiempo que pasaron en la BD.
+ * Viaja en el contexto de Reactor (lo pone {@link ConsultasPorPeticionFilter}); las sentencias
+ * se apuntan solas al ejecutarse desde {@link ConnectionFactoryContada}.
+ */
+final class ConsultasPeticion {
+
+    static final Class<ConsultasPeticion> CLAVE = ConsultasPeticion.class;
+
+    private int total;
+    private long nanos;
+    // Veces que se repite cada SQL: la que más se repite suele ser el N+1
+    private final Map<String, Integer> porSql = new HashMap<>();
+
+    // Una petición puede lanzar sentencias en paralelo (flatMap, zip)
+    synchronized void registrar(String sql, long duracionNanos) {
+        total++;
+        nanos += duracionNanos;
+        porSql.merge(sql, 1, Integer::sum);
+    }
+
+    synchronized int total() {
+        return total;
+    }
+
+    synchronized long nanos() {
+        return nanos;
+    }
+
+    synchronized Map.Entry<String, Integer> masRepetida() {
+        Map.Entry<String, Integer> max = null;
+        for (Map.Entry<String, Integer> e : porSql.entrySet()) {
+            if (max == null || e.getValue() > max.getValue()) max = e;
+        }
+        return max == null ? null : Map.entry(max.getKey(), max.getValue());
+    }
+}
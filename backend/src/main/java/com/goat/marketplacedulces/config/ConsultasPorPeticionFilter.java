@@ -0,0 +1,96 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cuenta las sentencias SQL y el tiempo en BD de cada petición (incluida la carga del usuario en
+ * JwtAuthFilter, por eso va antes que la cadena de seguridad).
+ *
+ * <ul>
+ *   <li>Métricas {@code http.server.db.consultas} y {@code http.server.db.tiempo} por método y ruta.</li>
+ *   <li>Con {@code app.consultas.cabecera=true} (perfil dev) las cabeceras X-Db-Queries y X-Db-Time-Ms;
+ *       solo cuentan lo ejecutado antes de empezar a escribir la respuesta.</li>
+ *   <li>Un warning con la sentencia más repetida cuando se supera {@code app.consultas.presupuesto}.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConsultasPorPeticionFilter implements WebFilter {
+
+    private final MeterRegistry registry;
+    private final boolean habilitado;
+    private final boolean cabecera;
+    private final int presupuesto;
+
+    public ConsultasPorPeticionFilter(MeterRegistry registry,
+                                      @Value("${app.consultas.habilitado:true}") boolean habilitado,
+                                      @Value("${app.consultas.cabecera:false}") boolean cabecera,
+                                      @Value("${app.consultas.presupuesto:8}") int presupuesto) {
+        this.registry = registry;
+        this.habilitado = habilitado;
+        this.cabecera = cabecera;
+        this.presupuesto = presupuesto;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!habilitado) return chain.filter(exchange);
+
+        ConsultasPeticion consultas = new ConsultasPeticion();
+        if (cabecera) {
+            exchange.getResponse().beforeCommit(() -> {
+                HttpHeaders h = exchange.getResponse().getHeaders();
+                h.set("X-Db-Queries", Integer.toString(consultas.total()));
+                h.set("X-Db-Time-Ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(consultas.nanos())));
+                return Mono.empty();
+            });
+        }
+        return chain.filter(exchange)
+                .contextWrite(ctx -> ctx.put(ConsultasPeticion.CLAVE, consultas))
+                .doFinally(s -> registrar(exchange, consultas));
+    }
+
+    private void registrar(ServerWebExchange exchange, ConsultasPeticion consultas) {
+        String metodo = exchange.getRequest().getMethod().name();
+        // Solo rutas ya resueltas: la URL tal cual dispararía la cardinalidad (/carrito/123, ...)
+        PathPattern patron = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String ruta = patron != null ? patron.getPatternString() : "UNKNOWN";
+        int total = consultas.total();
+
+        DistributionSummary.builder("http.server.db.consultas")
+                .tag("method", metodo).tag("uri", ruta)
+                .description("Sentencias SQL por petición")
+                .register(registry)
+                .record(total);
+        Timer.builder("http.server.db.tiempo")
+                .tag("method", metodo).tag("uri", ruta)
+                .description("Tiempo en la BD por petición (suma de sentencias; en paralelo puede superar al de la petición)")
+                .register(registry)
+                .record(consultas.nanos(), TimeUnit.NANOSECONDS);
+
+        if (total > presupuesto) {
+            Map.Entry<String, Integer> repetida = consultas.masRepetida();
+            log.warn("{} {} hizo {} consultas ({} ms en BD), presupuesto {}. Más repetida ({}x): {}",
+                    metodo, ruta, total, TimeUnit.NANOSECONDS.toMillis(consultas.nanos()), presupuesto,
+                    repetida.getValue(), repetida.getKey());
+        }
+    }
+}
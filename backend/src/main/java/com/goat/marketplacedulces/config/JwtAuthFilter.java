@@ -1,10 +1,15 @@
 package com.goat.marketplacedulces.config;
 
 import com.goat.marketplacedulces.service.JwtService;
+import com.goat.marketplacedulces.service.RevocacionService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException; // <-- importante
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.stereotype.Component;
@@ -13,47 +18,133 @@ import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
-@RequiredArgsConstructor
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
 @Component
 public class JwtAuthFilter implements WebFilter {
 
+    private static final String PROCESADO = JwtAuthFilter.class.getName() + ".procesado";
+
     private final JwtService jwtService;
     private final ReactiveUserDetailsService userDetailsService;
+    private final RevocacionService revocacion;
+
+    // app.auth.modo=stateless -> Authentication desde los claims del token, sin tocar la BD.
+    // app.auth.modo=lookup    -> carga el usuario de la BD en cada petición (comportamiento original).
+    private final boolean stateless;
+
+    // auth.jwt.filtro: tiempo desde que entra la petición hasta pasarla al siguiente filtro
+    // (sin contar el resto de la cadena), por resultado
+    private final Timer anonimo, invalido, autenticado, rechazado;
+
+    public JwtAuthFilter(JwtService jwtService,
+                         ReactiveUserDetailsService userDetailsService,
+                         RevocacionService revocacion,
+                         MeterRegistry registry,
+                         @Value("${app.auth.modo:stateless}") String modo) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.revocacion = revocacion;
+        this.stateless = !"lookup".equalsIgnoreCase(modo);
+        this.anonimo = timer(registry, "anonimo");
+        this.invalido = timer(registry, "invalido");
+        this.autenticado = timer(registry, "autenticado");
+        this.rechazado = timer(registry, "rechazado");
+    }
+
+    private Timer timer(MeterRegistry registry, String resultado) {
+        return Timer.builder("auth.jwt.filtro")
+                .tag("modo", stateless ? "stateless" : "lookup")
+                .tag("resultado", resultado)
+                .description("Tiempo de JwtAuthFilter antes de pasar la petición al siguiente filtro")
+                .register(registry);
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        // Al ser @Component, WebFlux también lo registra como filtro global, detrás de la cadena
+        // de seguridad: ahí ya no sirve de nada volver a verificar el token.
+        if (exchange.getAttributes().putIfAbsent(PROCESADO, Boolean.TRUE) != null) {
+            return chain.filter(exchange);
+        }
+        long inicio = System.nanoTime();
+
         String authHeader = exchange.getRequest()
                 .getHeaders()
                 .getFirst(HttpHeaders.AUTHORIZATION);
 
         // Sin header o sin "Bearer " -> seguir anónimo
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return chain.filter(exchange);
+            return seguir(exchange, chain, anonimo, inicio);
         }
 
         String token = authHeader.substring(7);
 
         // Token inválido/expirado -> seguir anónimo
-        final String username;
+        final Claims claims;
         try {
-            username = jwtService.extractUsername(token);
+            claims = jwtService.extractClaims(token);
         } catch (JwtException | IllegalArgumentException ex) {
-            return chain.filter(exchange);
+            return seguir(exchange, chain, invalido, inicio);
         }
 
+        String username = claims.getSubject();
         if (username == null || username.isBlank()) {
-            return chain.filter(exchange);
+            return seguir(exchange, chain, invalido, inicio);
+        }
+
+        if (stateless) {
+            return filterStateless(exchange, chain, claims, username, inicio);
         }
 
         // Cargar el usuario de forma reactiva y poblar el SecurityContext.
-        // Si no existe o hay error, continuamos anónimos.
+        // Si no existe, está deshabilitado o hay error, continuamos anónimos.
+        // Los fallbacks van sobre la carga del usuario, no sobre la cadena: chain.filter() completa
+        // vacío, y un switchIfEmpty detrás la volvía a ejecutar entera como anónimo.
         return userDetailsService.findByUsername(username)
-                .flatMap(ud -> {
-                    var auth = new UsernamePasswordAuthenticationToken(ud, null, ud.getAuthorities());
-                    return chain.filter(exchange)
-                            .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
-                })
-                .onErrorResume(ex -> chain.filter(exchange)) // p.ej. UsernameNotFoundException
-                .switchIfEmpty(chain.filter(exchange));       // usuario no encontrado (Mono.empty)
+                .filter(ud -> ud.isEnabled())
+                .map(ud -> Optional.of(new UsernamePasswordAuthenticationToken(ud, null, ud.getAuthorities())))
+                .onErrorResume(ex -> Mono.empty()) // p.ej. UsernameNotFoundException
+                .defaultIfEmpty(Optional.empty())  // usuario no encontrado o deshabilitado
+                .flatMap(auth -> auth.isEmpty()
+                        ? seguir(exchange, chain, rechazado, inicio)
+                        : seguir(exchange, chain, autenticado, inicio)
+                                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth.get())));
+    }
+
+    // Cero I/O: todo sale del token ya verificado más la lista de revocación en memoria (salvo si se llenó).
+    private Mono<Void> filterStateless(ServerWebExchange exchange, WebFilterChain chain,
+                                       Claims claims, String username, long inicio) {
+        // Tokens anteriores al claim "enabled" solo se emitían a usuarios habilitados.
+        Boolean enabled = claims.get("enabled", Boolean.class);
+        if (Boolean.FALSE.equals(enabled) || revocacion.estaRevocado(username, claims.getIssuedAt())) {
+            return seguir(exchange, chain, rechazado, inicio);
+        }
+        if (revocacion.incompleta()) {
+            // Lista de revocación llena: la de este usuario pudo no caber, la BD decide
+            return revocacion.deshabilitadoEnBd(username)
+                    .flatMap(deshabilitado -> deshabilitado
+                            ? seguir(exchange, chain, rechazado, inicio)
+                            : autenticar(exchange, chain, claims, username, inicio));
+        }
+        return autenticar(exchange, chain, claims, username, inicio);
+    }
+
+    private Mono<Void> autenticar(ServerWebExchange exchange, WebFilterChain chain,
+                                  Claims claims, String username, long inicio) {
+        Object role = claims.get("role");
+        var authorities = role != null
+                ? List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                : List.<SimpleGrantedAuthority>of();
+        var auth = new UsernamePasswordAuthenticationToken(username, null, authorities);
+        return seguir(exchange, chain, autenticado, inicio)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+    }
+
+    private static Mono<Void> seguir(ServerWebExchange exchange, WebFilterChain chain, Timer timer, long inicio) {
+        timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        return chain.filter(exchange);
     }
 }
@@ -0,0 +1,121 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Límite de peticiones por cliente (usuario autenticado o IP) y grupo de rutas, para que un cliente en
+ * bucle no agote el pool de R2DBC ni el de BCrypt del resto. Lo aplica {@link LimiteTasaFilter}.
+ *
+ * <p>Cada cliente es un token bucket de {@code por-segundo} tokens por segundo y capacidad {@code rafaga},
+ * implementado como GCRA: en vez de contar tokens se guarda un único instante (el "TAT", cuándo volvería
+ * a estar llena la cubeta) en un AtomicLong, y admitir una petición es un CAS que lo adelanta un intervalo.
+ * Sin bloqueos ni hilos de recarga.
+ *
+ * <p>Una cubeta cuyo TAT ya pasó está llena, igual que una nueva: esas son las que se descartan cuando el
+ * mapa de un grupo llega a {@code max-clientes}, sin que cambie el comportamiento para nadie.
+ */
+@Component
+public class LimitadorTasa {
+
+    /** Grupo de rutas con su propio límite y sus propias cubetas. */
+    public static final class Grupo {
+        private final String nombre;
+        private final List<PathPattern> rutas;
+        private final long intervalo;   // nanos entre tokens
+        private final long tolerancia;  // nanos de adelanto admitidos: (rafaga - 1) intervalos
+        private final Map<String, AtomicLong> cubetas = new ConcurrentHashMap<>();
+        private final Counter rechazos;
+
+        Grupo(String nombre, List<String> rutas, double porSegundo, int rafaga, MeterRegistry registry) {
+            this.nombre = nombre;
+            this.rutas = rutas.stream().map(PathPatternParser.defaultInstance::parse).toList();
+            this.intervalo = (long) (1_000_000_000L / porSegundo);
+            this.tolerancia = intervalo * (Math.max(1, rafaga) - 1);
+            this.rechazos = Counter.builder("http.server.limite.rechazos").tag("grupo", nombre)
+                    .description("Peticiones rechazadas con 429 por superar el límite del cliente")
+                    .register(registry);
+            Gauge.builder("http.server.limite.clientes", cubetas, Map::size).tag("grupo", nombre)
+                    .description("Clientes con cubeta en memoria")
+                    .register(registry);
+        }
+
+        public String nombre() {
+            return nombre;
+        }
+    }
+
+    private final boolean habilitado;
+    private final int maxClientes;
+    private final List<Grupo> grupos;
+    private final List<PathPattern> excluidas = List.of(PathPatternParser.defaultInstance.parse("/actuator/**"));
+
+    public LimitadorTasa(MeterRegistry registry,
+                         @Value("${app.limite.habilitado:true}") boolean habilitado,
+                         @Value("${app.limite.max-clientes:100000}") int maxClientes,
+                         @Value("${app.limite.auth.por-segundo:2}") double authPorSegundo,
+                         @Value("${app.limite.auth.rafaga:10}") int authRafaga,
+                         @Value("${app.limite.carrito.por-segundo:20}") double carritoPorSegundo,
+                         @Value("${app.limite.carrito.rafaga:40}") int carritoRafaga,
+                         @Value("${app.limite.general.por-segundo:50}") double generalPorSegundo,
+                         @Value("${app.limite.general.rafaga:100}") int generalRafaga) {
+        this.habilitado = habilitado;
+        this.maxClientes = maxClientes;
+        // En orden: gana el primer grupo con una ruta que encaje
+        this.grupos = List.of(
+                new Grupo("auth", List.of("/auth/**"), authPorSegundo, authRafaga, registry),
+                new Grupo("carrito", List.of("/carrito/**", "/pedidos/**"), carritoPorSegundo, carritoRafaga, registry),
+                new Grupo("general", List.of("/**"), generalPorSegundo, generalRafaga, registry));
+    }
+
+    /** Grupo que limita esa ruta, o null si no se limita. */
+    public Grupo grupo(PathContainer ruta) {
+        if (!habilitado) return null;
+        for (PathPattern p : excluidas) {
+            if (p.matches(ruta)) return null;
+        }
+        for (Grupo g : grupos) {
+            for (PathPattern p : g.rutas) {
+                if (p.matches(ruta)) return g;
+            }
+        }
+        return null;
+    }
+
+    /** 0 si se admite la petición; si no, los nanos que faltan para que se admitiera. */
+    public long intentar(Grupo grupo, String cliente, long ahora) {
+        AtomicLong tat = grupo.cubetas.get(cliente);
+        if (tat == null) {
+            if (grupo.cubetas.size() >= maxClientes) purgar(grupo, ahora);
+            tat = grupo.cubetas.computeIfAbsent(cliente, k -> new AtomicLong(ahora));
+        }
+        while (true) {
+            long actual = tat.get();
+            long siguiente = Math.max(actual, ahora) + grupo.intervalo;
+            long exceso = siguiente - ahora - grupo.intervalo - grupo.tolerancia;
+            if (exceso > 0) {
+                grupo.rechazos.increment();
+                return exceso;
+            }
+            if (tat.compareAndSet(actual, siguiente)) return 0;
+        }
+    }
+
+    // Las cubetas llenas (TAT en el pasado) equivalen a no tener cubeta. Si aun así no baja del máximo
+    // (muchísimos clientes activos a la vez) se vacía el grupo: como mucho regala una ráfaga a cada uno.
+    private void purgar(Grupo grupo, long ahora) {
+        grupo.cubetas.values().removeIf(tat -> tat.get() - ahora <= 0);
+        if (grupo.cubetas.size() >= maxClientes) grupo.cubetas.clear();
+    }
+}
@@ -0,0 +1,66 @@
+package com.goat.marketplacedulces.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Aplica {@link LimitadorTasa} dentro de la cadena de seguridad, justo después de JwtAuthFilter: con un
+ * token válido el cliente es el usuario; sin él, la IP. Lo rechazado responde 429 con Retry-After antes de
+ * llegar a ningún controlador (en modo lookup la carga del usuario en JwtAuthFilter ya ha ocurrido).
+ *
+ * <p>No es un @Component a propósito: WebFlux registraría también cualquier bean WebFilter como filtro
+ * global y se contaría cada petición dos veces.
+ */
+public class LimiteTasaFilter implements WebFilter {
+
+    private final LimitadorTasa limitador;
+    private final boolean confiarForwardedFor;
+
+    public LimiteTasaFilter(LimitadorTasa limitador, boolean confiarForwardedFor) {
+        this.limitador = limitador;
+        this.confiarForwardedFor = confiarForwardedFor;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        LimitadorTasa.Grupo grupo = limitador.grupo(exchange.getRequest().getPath().pathWithinApplication());
+        if (grupo == null) return chain.filter(exchange);
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .map(a -> "u:" + a.getName())
+                .switchIfEmpty(Mono.fromSupplier(() -> "ip:" + ip(exchange.getRequest())))
+                .flatMap(cliente -> {
+                    long espera = limitador.intentar(grupo, cliente, System.nanoTime());
+                    if (espera == 0) return chain.filter(exchange);
+                    exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                    exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                            Long.toString(Math.max(1, (espera + 999_999_999L) / 1_000_000_000L)));
+                    return exchange.getResponse().setComplete();
+                });
+    }
+
+    // nginx añade la IP que ve al final de X-Forwarded-For ($proxy_add_x_forwarded_for): lo anterior
+    // lo manda el cliente y puede ser falso, así que solo vale el último salto.
+    private String ip(ServerHttpRequest request) {
+        if (confiarForwardedFor) {
+            String xff = request.getHeaders().getFirst("X-Forwarded-For");
+            if (xff != null && !xff.isBlank()) {
+                return xff.substring(xff.lastIndexOf(',') + 1).trim();
+            }
+        }
+        InetSocketAddress remoto = request.getRemoteAddress();
+        if (remoto == null) return "desconocida";
+        return remoto.getAddress() != null ? remoto.getAddress().getHostAddress() : remoto.getHostString();
+    }
+}
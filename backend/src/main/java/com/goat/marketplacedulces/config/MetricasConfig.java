@@ -0,0 +1,32 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Métricas que Spring Boot no trae de serie. Las de endpoints (http.server.requests), JVM y
+ * los gauges del pool R2DBC ya las publica el actuator; los histogramas se activan en application.yml.
+ */
+@Configuration
+public class MetricasConfig {
+
+    // static: un BeanPostProcessor se crea antes que el resto de beans de la configuración.
+    // El registro se pide tarde para no adelantar su creación (y la de sus binders).
+    // Queda: medida (adquisición) -> contada (sentencias por petición) -> pool.
+    @Bean
+    public static BeanPostProcessor medirR2dbc(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionFactory cf && !(bean instanceof ConnectionFactoryMedida)) {
+                    return new ConnectionFactoryMedida(new ConnectionFactoryContada(cf), registry.getObject(), beanName);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactoryProvider;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Réplica de lectura opcional. Con {@code app.r2dbc.replica.url} vacía no cambia nada; con valor,
+ * la ConnectionFactory de Spring Boot (la primaria) se envuelve en una {@link ConnectionFactoryEnrutada}
+ * con un pool propio para la réplica, de tamaño independiente.
+ */
+@Slf4j
+@Configuration
+public class ReplicaConfig {
+
+    // Ordered: tiene que quedar por dentro de las métricas de MetricasConfig (que no tienen orden),
+    // para que la adquisición y las sentencias se midan vayan a donde vayan.
+    @Bean
+    public static BeanPostProcessor enrutarReplica(Environment env, ObjectProvider<MeterRegistry> registry) {
+        return new EnrutarReplica(env, registry);
+    }
+
+    private record EnrutarReplica(Environment env, ObjectProvider<MeterRegistry> registry)
+            implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            String url = env.getProperty("app.r2dbc.replica.url", "");
+            if (!(bean instanceof ConnectionFactory primaria) || url.isBlank()) return bean;
+
+            ConnectionPool replica = crearPool(url);
+            registry.ifAvailable(r -> new ConnectionPoolMetrics(replica, beanName + "Replica", Tags.empty()).bindTo(r));
+            log.info("Lecturas marcadas -> réplica {}", url);
+            return new ConnectionFactoryEnrutada(primaria, replica,
+                    env.getProperty("app.r2dbc.replica.reintento", Duration.class, Duration.ofSeconds(10)));
+        }
+
+        private ConnectionPool crearPool(String url) {
+            ConnectionFactoryOptions opciones = ConnectionFactoryOptions.parse(url).mutate()
+                    .option(ConnectionFactoryOptions.USER,
+                            env.getProperty("app.r2dbc.replica.username", env.getProperty("spring.r2dbc.username", "")))
+                    .option(ConnectionFactoryOptions.PASSWORD,
+                            env.getProperty("app.r2dbc.replica.password", env.getProperty("spring.r2dbc.password", "")))
+                    .option(ConnectionFactoryOptions.CONNECT_TIMEOUT,
+                            env.getProperty("app.r2dbc.replica.connect-timeout", Duration.class, Duration.ofSeconds(2)))
+                    .option(PostgresqlConnectionFactoryProvider.APPLICATION_NAME, "marketplace-dulces-replica")
+                    // Una escritura marcada por error falla en vez de divergir (importa si la "réplica" no lo es)
+                    .option(PostgresqlConnectionFactoryProvider.OPTIONS, Map.of("default_transaction_read_only", "on"))
+                    .build();
+            ConnectionFactory cf = ConnectionFactories.get(opciones);
+            return new ConnectionPool(ConnectionPoolConfiguration.builder(cf)
+                    .name("replica")
+                    .initialSize(env.getProperty("app.r2dbc.replica.pool.initial-size", Integer.class, 2))
+                    .maxSize(env.getProperty("app.r2dbc.replica.pool.max-size", Integer.class, 20))
+                    .maxAcquireTime(env.getProperty("app.r2dbc.replica.pool.max-acquire-time", Duration.class, Duration.ofSeconds(2)))
+                    .maxIdleTime(Duration.ofMinutes(30))
+                    .build());
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
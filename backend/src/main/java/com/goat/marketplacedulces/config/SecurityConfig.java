@@ -1,6 +1,7 @@
 package com.goat.marketplacedulces.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
@@ -27,11 +28,18 @@ public class SecurityConfig {
 
     // Tu filtro que mete la Authentication desde el JWT
     private final JwtAuthFilter jwtAuthFilter;
+    private final LimitadorTasa limitadorTasa;
 
-    // Necesario para registrar usuarios / verificar contraseñas
+    // Solo detrás de nginx (deploy/nginx.conf, lo activa docker-compose): con el backend expuesto
+    // directamente un cliente podría inventarse la cabecera para estrenar cubeta en cada petición
+    @Value("${app.limite.confiar-x-forwarded-for:false}")
+    private boolean confiarForwardedFor;
+
+    // Necesario para registrar usuarios / verificar contraseñas.
+    // Subir el costo hace cada login ~2x más caro por punto; los hashes viejos se regeneran al hacer login.
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.auth.bcrypt.costo:10}") int costo) {
+        return new BCryptPasswordEncoder(costo);
     }
 
     @Bean
@@ -42,7 +50,9 @@ public class SecurityConfig {
                 .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
                 .logout(ServerHttpSecurity.LogoutSpec::disable)
                 .authorizeExchange(ex -> ex
-                        .pathMatchers("/auth/**", "/actuator/**", "/v3/api-docs/**", "/swagger-ui/**").permitAll()
+                        .pathMatchers("/auth/**", "/actuator/health", "/actuator/health/**", "/v3/api-docs/**", "/swagger-ui/**").permitAll()
+                        // métricas/prometheus dicen mucho del sistema (rutas, usuarios, pool): solo ADMIN
+                        .pathMatchers("/actuator/**").hasRole("ADMIN")
                         // ajusta si quieres público /productos:
                         // .pathMatchers(HttpMethod.GET, "/productos/**").permitAll()
                         .anyExchange().authenticated()
@@ -53,7 +63,9 @@ public class SecurityConfig {
                     swe.getResponse().getHeaders().remove(HttpHeaders.WWW_AUTHENTICATE);
                     return Mono.empty();
                 }))
-                .addFilterAt(jwtAuthFilter, SecurityWebFiltersOrder.AUTHENTICATION);
+                .addFilterAt(jwtAuthFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                // Detrás del JWT para limitar por usuario; antes de la autorización y de los controladores
+                .addFilterAfter(new LimiteTasaFilter(limitadorTasa, confiarForwardedFor), SecurityWebFiltersOrder.AUTHENTICATION);
 
         return http.build();
     }
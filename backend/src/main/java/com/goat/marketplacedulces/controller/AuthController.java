@@ -25,7 +25,7 @@ public class AuthController {
 
     @PostMapping("/register")
     public Mono<?> register(@RequestBody RegisterRequest body) {
-        // El service recibe Strings (username, password, rol)
-        return authService.register(body.getUsername(), body.getPassword(), body.getRol());
+        // El service recibe Strings (username, password)
+        return authService.register(body.getUsername(), body.getPassword());
     }
 }
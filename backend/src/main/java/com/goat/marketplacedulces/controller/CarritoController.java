@@ -1,6 +1,8 @@
 // src/main/java/com/goat/marketplacedulces/controller/CarritoController.java
 package com.goat.marketplacedulces.controller;
 
+import com.goat.marketplacedulces.dto.CarritoLinea;
+import com.goat.marketplacedulces.dto.CarritoLoteRequest;
 import com.goat.marketplacedulces.model.Carrito;
 import com.goat.marketplacedulces.service.CarritoService;
 import lombok.Data;
@@ -36,14 +38,34 @@ public class CarritoController {
         return carritoService.agregar(principal.getName(), body.getProductoId(), cant);
     }
 
+    // Varios cambios en una sola petición/transacción; devuelve el carrito resultante.
+    // { "vaciar": false, "eliminar": [3], "fijar": [{ "productoId": 1, "cantidad": 5 }],
+    //   "agregar": [{ "productoId": 2, "cantidad": 1 }] }
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<Carrito> lote(@RequestBody CarritoLoteRequest body, Principal principal) {
+        return carritoService.aplicarLote(principal.getName(), body);
+    }
+
     @GetMapping
     public Flux<Carrito> verCarrito(Principal principal) {
         return carritoService.verCarrito(principal.getName());
     }
 
+    // Carrito con datos del producto, subtotales y total (una sola consulta a la BD)
+    @GetMapping("/detalle")
+    public Flux<CarritoLinea> verDetalle(Principal principal) {
+        return carritoService.verDetalle(principal.getName());
+    }
+
+    // Vacía el carrito completo del usuario
+    @DeleteMapping
+    public Mono<Void> vaciar(Principal principal) {
+        return carritoService.vaciar(principal.getName());
+    }
+
     @DeleteMapping("/{id}")
-    public Mono<Void> eliminar(@PathVariable("id") Long id) {
-        return carritoService.eliminar(id);
+    public Mono<Void> eliminar(@PathVariable("id") Long id, Principal principal) {
+        return carritoService.eliminar(principal.getName(), id);
     }
 
     @Data
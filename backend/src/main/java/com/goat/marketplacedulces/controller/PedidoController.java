@@ -0,0 +1,29 @@
+package com.goat.marketplacedulces.controller;
+
+import com.goat.marketplacedulces.model.Pedido;
+import com.goat.marketplacedulces.service.PedidoService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/pedidos")
+@RequiredArgsConstructor
+public class PedidoController {
+
+    private final PedidoService pedidoService;
+
+    // POST /pedidos -> checkout del carrito actual (409 si no hay stock suficiente)
+    @PostMapping
+    public Mono<Pedido> checkout(Principal principal) {
+        return pedidoService.checkout(principal.getName());
+    }
+
+    @GetMapping
+    public Flux<Pedido> listar(Principal principal) {
+        return pedidoService.listar(principal.getName());
+    }
+}
@@ -1,31 +1,122 @@
 package com.goat.marketplacedulces.controller;
 
+import com.goat.marketplacedulces.dto.ImportacionResultado;
 import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.service.CatalogoIndice;
+import com.goat.marketplacedulces.service.Facetas;
+import com.goat.marketplacedulces.service.FiltroProductos;
+import com.goat.marketplacedulces.service.ImportacionService;
 import com.goat.marketplacedulces.service.ProductoService;
+import com.goat.marketplacedulces.service.ProductoTendencia;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/productos")
 @RequiredArgsConstructor
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final ImportacionService importacionService;
 
+    // Sale del snapshot en memoria con el JSON ya serializado.
+    // Si el cliente manda If-None-Match con el ETag vigente, Spring responde 304 sin cuerpo.
+    // Con Accept: application/x-ndjson se escribe un producto por línea a medida que el cliente lee, para
+    // procesarlo sin esperar (ni guardar) el array entero; sin ETag, porque no se genera de una vez.
     @GetMapping
-    public Flux<Producto> listar() {
-        return productoService.listar();
+    public Mono<ResponseEntity<?>> listar(ServerHttpRequest request) {
+        if (request.getHeaders().getAccept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype)) {
+            return Mono.just(ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(productoService.listar()));
+        }
+        return productoService.catalogo()
+                .map(s -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(s.etag())
+                        .body(s.json()));
     }
 
+    // GET /productos/buscar?tipo=Galletas&pais=Japón&precioMin=1000&precioMax=9000&enStock=true&orden=-precio&limite=20&offset=0
+    // Todos los filtros se combinan (AND). orden: id (por defecto), precio, -precio, nombre.
+    // El total de coincidencias va en X-Total-Count. Si hay más resultados, X-Next-Cursor trae un cursor
+    // para pedir la página siguiente con &cursor=... (mismos filtros, sin offset): no se salta ni repite
+    // productos aunque el catálogo cambie entre páginas y no cuenta el total (no lleva X-Total-Count).
     @GetMapping("/buscar")
-    public Flux<Producto> buscar(@RequestParam(required = false) String pais,
-                                 @RequestParam(required = false) String tipo) {
-        if (pais != null) return productoService.buscarPorPais(pais);
-        if (tipo != null) return productoService.buscarPorTipo(tipo);
-        return productoService.listar();
+    public Mono<ResponseEntity<List<Producto>>> buscar(@RequestParam(name = "pais", required = false) String pais,
+                                                       @RequestParam(name = "tipo", required = false) String tipo,
+                                                       @RequestParam(name = "precioMin", required = false) Integer precioMin,
+                                                       @RequestParam(name = "precioMax", required = false) Integer precioMax,
+                                                       @RequestParam(name = "enStock", defaultValue = "false") boolean enStock,
+                                                       @RequestParam(name = "orden", required = false) String orden,
+                                                       @RequestParam(name = "cursor", required = false) String cursor,
+                                                       @RequestParam(name = "limite", defaultValue = "100") int limite,
+                                                       @RequestParam(name = "offset", defaultValue = "0") int offset) {
+        FiltroProductos filtro = new FiltroProductos(tipo, pais, precioMin, precioMax, enStock);
+
+        // El resultado de una misma URL solo cambia si cambia el catálogo: sirve el ETag del snapshot.
+        return productoService.buscar(filtro, orden, cursor, offset, limite)
+                .map(b -> {
+                    CatalogoIndice.Resultado r = b.resultado();
+                    ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                            .cacheControl(CacheControl.noCache())
+                            .eTag(b.snapshot().etag());
+                    if (r.total() != null) respuesta.header("X-Total-Count", String.valueOf(r.total()));
+                    if (r.siguiente() != null) respuesta.header("X-Next-Cursor", r.siguiente().codificar());
+                    return respuesta.body(r.productos());
+                });
+    }
+
+    // GET /productos/facetas[?tipo=&pais=&precioMin=&precioMax=&enStock=]
+    // Para la barra lateral: conteos por tipo y país sin descargar el catálogo. Mismo ETag que el catálogo.
+    @GetMapping("/facetas")
+    public Mono<ResponseEntity<Facetas>> facetas(@RequestParam(name = "pais", required = false) String pais,
+                                                 @RequestParam(name = "tipo", required = false) String tipo,
+                                                 @RequestParam(name = "precioMin", required = false) Integer precioMin,
+                                                 @RequestParam(name = "precioMax", required = false) Integer precioMax,
+                                                 @RequestParam(name = "enStock", defaultValue = "false") boolean enStock) {
+        FiltroProductos filtro = new FiltroProductos(tipo, pais, precioMin, precioMax, enStock);
+        return productoService.facetas(filtro)
+                .map(f -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(f.snapshot().etag())
+                        .body(f.facetas()));
+    }
+
+    // GET /productos/autocompletar?q=ramune%20mel&limite=8
+    // Sin tildes ni mayúsculas, por inicio de cualquier palabra del nombre; más stock primero.
+    @GetMapping("/autocompletar")
+    public Mono<List<Producto>> autocompletar(@RequestParam(name = "q", defaultValue = "") String q,
+                                              @RequestParam(name = "limite", defaultValue = "8") int limite) {
+        return productoService.autocompletar(q, limite);
+    }
+
+    // GET /productos/tendencias?limite=10
+    // Lo más añadido al carrito en la última hora (lo reciente pesa más), con la puntuación. Sale de memoria.
+    @GetMapping("/tendencias")
+    public Mono<List<ProductoTendencia>> tendencias(@RequestParam(name = "limite", defaultValue = "10") int limite) {
+        return productoService.tendencias(limite);
+    }
+
+    // GET /productos/stream (text/event-stream): en vez de repetir GET /productos para ver cambios de stock.
+    // Eventos "creado", "precio", "stock" y "actualizado" con el producto completo como data; cambios de
+    // cualquier nodo. No se reenvía lo perdido: al (re)conectar, pedir GET /productos (con If-None-Match).
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> stream() {
+        return productoService.cambios();
     }
 
     @PostMapping
@@ -33,4 +124,14 @@ public class ProductoController {
     public Mono<Producto> crear(@RequestBody Producto producto) {
         return productoService.crear(producto);
     }
+
+    // POST /productos/importar con Content-Type application/x-ndjson (un producto JSON por línea) o text/csv
+    // (cabecera id,nombre,tipo,paisOrigen,precio,stock). Con id: inserta o sobrescribe ese producto.
+    // Responde al terminar con insertados/actualizados, errores por línea y filas por segundo.
+    @PostMapping(path = "/importar", consumes = {"application/x-ndjson", "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ImportacionResultado> importar(@RequestBody Flux<DataBuffer> cuerpo,
+                                               @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo) {
+        return importacionService.importar(cuerpo, tipo);
+    }
 }
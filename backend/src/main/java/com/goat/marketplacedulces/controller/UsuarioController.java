@@ -0,0 +1,27 @@
+package com.goat.marketplacedulces.controller;
+
+import com.goat.marketplacedulces.service.AuthService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/usuarios")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class UsuarioController {
+
+    private final AuthService authService;
+
+    // POST /usuarios/{username}/deshabilitar -> sus tokens dejan de valer al instante
+    @PostMapping("/{username}/deshabilitar")
+    public Mono<Void> deshabilitar(@PathVariable("username") String username) {
+        return authService.deshabilitar(username);
+    }
+
+    @PostMapping("/{username}/habilitar")
+    public Mono<Void> habilitar(@PathVariable("username") String username) {
+        return authService.habilitar(username);
+    }
+}
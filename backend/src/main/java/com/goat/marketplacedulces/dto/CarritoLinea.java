@@ -0,0 +1,20 @@
+package com.goat.marketplacedulces.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Línea del carrito ya unida con su producto (GET /carrito/detalle). */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoLinea {
+    private Long id;            // id de la fila en carrito (sirve para DELETE /carrito/{id})
+    private Long productoId;
+    private String nombre;
+    private Integer precio;
+    private Integer stock;
+    private Integer cantidad;
+    private Long subtotal;      // precio * cantidad
+    private Long totalCarrito;  // suma de todos los subtotales (igual en todas las líneas)
+}
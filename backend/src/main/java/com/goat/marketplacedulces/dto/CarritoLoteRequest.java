@@ -0,0 +1,36 @@
+package com.goat.marketplacedulces.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuerpo de POST /carrito/batch. Se aplica en este orden y en una sola transacción:
+ * vaciar -> eliminar -> fijar -> agregar. Una lista que falta o viene a null es una lista vacía.
+ */
+@Data
+public class CarritoLoteRequest {
+    private boolean vaciar;                          // borra todo el carrito antes de lo demás
+    private List<Long> eliminar = new ArrayList<>(); // productoIds a quitar
+    private List<Item> fijar = new ArrayList<>();    // cantidad absoluta (<= 0 quita la línea)
+    private List<Item> agregar = new ArrayList<>();  // suma a lo que haya (como /carrito/agregar)
+
+    public void setEliminar(List<Long> eliminar) {
+        this.eliminar = eliminar == null ? new ArrayList<>() : eliminar;
+    }
+
+    public void setFijar(List<Item> fijar) {
+        this.fijar = fijar == null ? new ArrayList<>() : fijar;
+    }
+
+    public void setAgregar(List<Item> agregar) {
+        this.agregar = agregar == null ? new ArrayList<>() : agregar;
+    }
+
+    @Data
+    public static class Item {
+        private Long productoId;
+        private Integer cantidad;
+    }
+}
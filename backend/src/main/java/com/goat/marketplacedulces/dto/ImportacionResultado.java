@@ -0,0 +1,29 @@
+package com.goat.marketplacedulces.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/** Resumen de POST /productos/importar: qué se escribió, qué filas fallaron y a qué ritmo. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionResultado {
+    private long filas;          // líneas con datos leídas (sin cabecera ni líneas vacías)
+    private long insertados;
+    private long actualizados;
+    private long erroneas;
+    private List<ErrorFila> errores; // las primeras app.productos.importar.max-errores
+    private long duracionMs;
+    private double filasPorSegundo;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ErrorFila {
+        private long linea;      // 1 = primera línea del cuerpo (en CSV, la cabecera)
+        private String error;
+    }
+}
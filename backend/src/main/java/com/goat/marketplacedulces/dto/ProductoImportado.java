@@ -0,0 +1,19 @@
+package com.goat.marketplacedulces.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Fila de productos tras el upsert de una importación; "insertado" = no existía ese id. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoImportado {
+    private Long id;
+    private String nombre;
+    private String tipo;
+    private String paisOrigen;
+    private Integer precio;
+    private Integer stock;
+    private Boolean insertado;
+}
@@ -2,10 +2,13 @@ package com.goat.marketplacedulces.dto;
 
 import lombok.Data;
 
+/**
+ * Cuerpo de POST /auth/register. Sin rol: el registro público siempre crea un USUARIO (el rol va en el
+ * token); los ADMIN se dan de alta fuera de la API, en la BD. Un "rol" en el JSON se ignora.
+ */
 @Data
 public class RegisterRequest {
     private String username;
     private String password;
-    private String rol; // ADMIN o USUARIO
 }
 
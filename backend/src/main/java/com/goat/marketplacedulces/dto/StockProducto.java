@@ -0,0 +1,15 @@
+package com.goat.marketplacedulces.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Stock de un producto tras un UPDATE; "concedido" = unidades que se llevó la reserva. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockProducto {
+    private Long id;
+    private Integer stock;
+    private Integer concedido;
+}
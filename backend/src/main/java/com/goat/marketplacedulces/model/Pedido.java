@@ -0,0 +1,25 @@
+package com.goat.marketplacedulces.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Data
+@Table("pedidos")
+public class Pedido {
+    @Id
+    private Long id;
+    private String username;
+    private Long total;
+    private String estado;    // "CONFIRMADO"
+    @Column("created_at")
+    private OffsetDateTime createdAt;
+
+    @Transient
+    private List<PedidoItem> items;
+}
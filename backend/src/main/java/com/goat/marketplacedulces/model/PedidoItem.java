@@ -0,0 +1,24 @@
+package com.goat.marketplacedulces.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("pedido_items")
+public class PedidoItem {
+    @Id
+    private Long id;
+    @Column("pedido_id")
+    private Long pedidoId;
+    @Column("producto_id")
+    private Long productoId;
+    private Integer cantidad;
+    @Column("precio_unitario")
+    private Integer precioUnitario;
+}
@@ -1,12 +1,109 @@
 // src/main/java/com/goat/marketplacedulces/repository/CarritoRepository.java
 package com.goat.marketplacedulces.repository;
 
+import com.goat.marketplacedulces.dto.CarritoLinea;
 import com.goat.marketplacedulces.model.Carrito;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface CarritoRepository extends R2dbcRepository<Carrito, Long> {
     Flux<Carrito> findByUsername(String username);
     Mono<Carrito> findByUsernameAndProductoId(String username, Long productoId);
+
+    // Inserta la línea o suma la cantidad en un solo statement (atómico frente a clics concurrentes).
+    // La existencia de usuario y producto la garantizan fk_carrito_user / fk_carrito_producto.
+    @Query("""
+            INSERT INTO carrito (username, producto_id, cantidad)
+            VALUES (:username, :productoId, :cantidad)
+            ON CONFLICT (username, producto_id)
+            DO UPDATE SET cantidad = carrito.cantidad + EXCLUDED.cantidad
+            RETURNING id, username, producto_id, cantidad
+            """)
+    Mono<Carrito> agregarOSumar(@Param("username") String username,
+                                @Param("productoId") Long productoId,
+                                @Param("cantidad") int cantidad);
+
+    // Carrito listo para pintar en un solo round-trip: join con productos y el total
+    // calculado con una ventana, así no hace falta una consulta por línea (N+1).
+    @Query("""
+            SELECT c.id, c.producto_id, p.nombre, p.precio, p.stock, c.cantidad,
+                   c.cantidad::bigint * p.precio AS subtotal,
+                   SUM(c.cantidad::bigint * p.precio) OVER () AS total_carrito
+            FROM carrito c
+            JOIN productos p ON p.id = c.producto_id
+            WHERE c.username = :username
+            ORDER BY c.id
+            """)
+    Flux<CarritoLinea> findDetalleByUsername(@Param("username") String username);
+
+    // --- Operaciones de lote (POST /carrito/batch): un statement multi-fila por tipo ---
+
+    @Modifying
+    @Query("""
+            INSERT INTO carrito (username, producto_id, cantidad)
+            SELECT :username, t.producto_id, t.cantidad
+            FROM unnest(CAST(:productos AS bigint[]), CAST(:cantidades AS int[])) AS t(producto_id, cantidad)
+            ON CONFLICT (username, producto_id)
+            DO UPDATE SET cantidad = carrito.cantidad + EXCLUDED.cantidad
+            """)
+    Mono<Integer> agregarVarios(@Param("username") String username,
+                                @Param("productos") Long[] productos,
+                                @Param("cantidades") Integer[] cantidades);
+
+    @Modifying
+    @Query("""
+            INSERT INTO carrito (username, producto_id, cantidad)
+            SELECT :username, t.producto_id, t.cantidad
+            FROM unnest(CAST(:productos AS bigint[]), CAST(:cantidades AS int[])) AS t(producto_id, cantidad)
+            ON CONFLICT (username, producto_id)
+            DO UPDATE SET cantidad = EXCLUDED.cantidad
+            """)
+    Mono<Integer> fijarVarios(@Param("username") String username,
+                              @Param("productos") Long[] productos,
+                              @Param("cantidades") Integer[] cantidades);
+
+    @Modifying
+    @Query("DELETE FROM carrito WHERE username = :username AND producto_id = ANY(CAST(:productos AS bigint[]))")
+    Mono<Integer> eliminarVarios(@Param("username") String username, @Param("productos") Long[] productos);
+
+    @Modifying
+    @Query("DELETE FROM carrito WHERE username = :username AND id = ANY(CAST(:ids AS bigint[]))")
+    Mono<Integer> eliminarLineas(@Param("username") String username, @Param("ids") Long[] ids);
+
+    @Modifying
+    @Query("DELETE FROM carrito WHERE username = :username")
+    Mono<Integer> vaciar(@Param("username") String username);
+
+    // --- Write-behind (CarritoBuffer): cantidades finales de muchos usuarios en un statement ---
+
+    // Ids pedidos por adelantado para que las líneas nuevas tengan id antes de llegar a la BD
+    @Query("SELECT nextval('carrito_id_seq') FROM generate_series(1, :n)")
+    Flux<Long> reservarIds(@Param("n") int n);
+
+    @Modifying
+    @Query("""
+            INSERT INTO carrito (id, username, producto_id, cantidad)
+            SELECT t.id, t.username, t.producto_id, t.cantidad
+            FROM unnest(CAST(:ids AS bigint[]), CAST(:usernames AS varchar[]),
+                        CAST(:productos AS bigint[]), CAST(:cantidades AS int[]))
+                 AS t(id, username, producto_id, cantidad)
+            ON CONFLICT (username, producto_id)
+            DO UPDATE SET cantidad = EXCLUDED.cantidad
+            """)
+    Mono<Integer> escribirLineas(@Param("ids") Long[] ids,
+                                 @Param("usernames") String[] usernames,
+                                 @Param("productos") Long[] productos,
+                                 @Param("cantidades") Integer[] cantidades);
+
+    @Modifying
+    @Query("""
+            DELETE FROM carrito c
+            USING unnest(CAST(:usernames AS varchar[]), CAST(:productos AS bigint[])) AS t(username, producto_id)
+            WHERE c.username = t.username AND c.producto_id = t.producto_id
+            """)
+    Mono<Integer> borrarLineas(@Param("usernames") String[] usernames, @Param("productos") Long[] productos);
 }
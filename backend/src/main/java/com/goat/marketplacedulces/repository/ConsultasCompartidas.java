@@ -0,0 +1,82 @@
+package com.goat.marketplacedulces.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight para lecturas: si llega una lectura idéntica (misma consulta y parámetro) mientras otra
+ * está en curso, se une a ella y recibe las mismas filas en vez de lanzar otra consulta. En un pico, cien
+ * peticiones del mismo carrito o del mismo usuario hacen una sola consulta. No es una caché: al terminar la
+ * consulta se olvida y la siguiente lectura va a la BD.
+ *
+ * <p>Quien se une recibe filas de una consulta que empezó un poco antes que la suya, así que solo se usa
+ * para lo que ya se lee de la réplica (que tolera ese retraso). Dentro de una transacción no se comparte
+ * nunca: la consulta tiene que ver lo escrito en ella.
+ *
+ * <p>Métrica: {@code db.consultas.compartidas} (por consulta), lecturas que no fueron a la BD.
+ */
+@Component
+public class ConsultasCompartidas {
+
+    private final Map<List<Object>, Flux<?>> enCurso = new ConcurrentHashMap<>();
+    private final Map<String, Counter> compartidas = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final boolean habilitado;
+
+    public ConsultasCompartidas(MeterRegistry registry,
+                                @Value("${app.consultas.compartir:true}") boolean habilitado) {
+        this.registry = registry;
+        this.habilitado = habilitado;
+    }
+
+    /** {@code lectura} solo se invoca si no hay ya una igual en curso; {@code consulta} es un nombre fijo. */
+    public <T> Flux<T> flux(String consulta, Object parametro, Supplier<Flux<T>> lectura) {
+        if (!habilitado) return Flux.defer(lectura);
+        return Flux.deferContextual(ctx -> {
+            if (ctx.hasKey(TransactionContext.class)) return lectura.get();
+            List<Object> clave = List.of(consulta, parametro);
+            boolean[] nueva = new boolean[1];
+            @SuppressWarnings("unchecked")
+            Flux<T> compartida = (Flux<T>) enCurso.computeIfAbsent(clave, k -> {
+                nueva[0] = true;
+                return iniciar(k, lectura.get());
+            });
+            if (!nueva[0]) contador(consulta).increment();
+            return compartida;
+        });
+    }
+
+    public <T> Mono<T> mono(String consulta, Object parametro, Supplier<Mono<T>> lectura) {
+        return flux(consulta, parametro, () -> lectura.get().flux()).singleOrEmpty();
+    }
+
+    // replay: quien se une tarde recibe también las filas ya emitidas. refCount: si todos cancelan se
+    // cancela la consulta. En ambos casos la entrada sale del mapa y no retiene el resultado.
+    private <T> Flux<T> iniciar(List<Object> clave, Flux<T> lectura) {
+        AtomicReference<Flux<T>> propia = new AtomicReference<>();
+        Flux<T> compartida = lectura
+                .doFinally(s -> enCurso.remove(clave, propia.get()))
+                .replay()
+                .refCount();
+        propia.set(compartida);
+        return compartida;
+    }
+
+    private Counter contador(String consulta) {
+        return compartidas.computeIfAbsent(consulta, c -> Counter.builder("db.consultas.compartidas")
+                .tag("consulta", c)
+                .description("Lecturas servidas por una consulta idéntica que ya estaba en curso")
+                .register(registry));
+    }
+}
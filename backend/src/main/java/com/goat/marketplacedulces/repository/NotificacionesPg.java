@@ -0,0 +1,121 @@
+package com.goat.marketplacedulces.repository;
+
+import io.r2dbc.postgresql.PostgresqlConnectionFactoryProvider;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * LISTEN/NOTIFY de Postgres para avisar al resto de nodos del backend (cambios de catálogo, etc.).
+ *
+ * <p>Cada canal escuchado usa una conexión propia a la primaria, fuera del pool: una conexión con LISTEN
+ * no puede devolverse al pool. Si se corta se reconecta sola; como lo notificado mientras tanto se pierde,
+ * tras reconectar se emite un {@link Aviso#hueco()} para que quien escucha se resincronice.
+ *
+ * <p>Los avisos los recibe también el nodo que los envía: {@link #nodo()} va en el payload para ignorarlos.
+ */
+@Slf4j
+@Component
+public class NotificacionesPg {
+
+    /** Payload de un NOTIFY, o {@code null} si la conexión se cortó y pudo perderse alguno. */
+    public record Aviso(String payload) {
+        static Aviso hueco() {
+            return new Aviso(null);
+        }
+
+        public boolean esHueco() {
+            return payload == null;
+        }
+    }
+
+    // Postgres no admite parámetros en LISTEN: el nombre del canal va en el SQL y se valida
+    private static final Pattern CANAL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    // Límite de Postgres para el payload de un NOTIFY (8000 bytes)
+    public static final int MAX_PAYLOAD = 7900;
+
+    private final DatabaseClient db;
+    private final ConnectionFactory escucha;
+    private final String nodo = UUID.randomUUID().toString();
+
+    public NotificacionesPg(DatabaseClient db, R2dbcProperties props) {
+        this.db = db;
+        this.escucha = ConnectionFactories.get(ConnectionFactoryOptions.parse(props.getUrl()).mutate()
+                .option(ConnectionFactoryOptions.USER, props.getUsername() == null ? "" : props.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, props.getPassword() == null ? "" : props.getPassword())
+                .option(PostgresqlConnectionFactoryProvider.APPLICATION_NAME, "marketplace-dulces-listen")
+                .build());
+    }
+
+    /** Identificador de este proceso, distinto en cada arranque. */
+    public String nodo() {
+        return nodo;
+    }
+
+    /** Envía un NOTIFY por la primaria (fuera de transacción se entrega al momento). */
+    public Mono<Void> notificar(String canal, String payload) {
+        validar(canal);
+        if (payload.length() > MAX_PAYLOAD) {
+            return Mono.error(new IllegalArgumentException("Payload de NOTIFY demasiado grande: " + payload.length()));
+        }
+        return db.sql("SELECT pg_notify(:canal, :payload)")
+                .bind("canal", canal)
+                .bind("payload", payload)
+                .then();
+    }
+
+    /**
+     * Avisos del canal mientras haya suscriptor. La conexión se abre al suscribirse y se cierra al cancelar;
+     * si se cae se reintenta indefinidamente (con espera creciente hasta 30s).
+     */
+    public Flux<Aviso> escuchar(String canal) {
+        validar(canal);
+        AtomicBoolean conectado = new AtomicBoolean();
+        return Flux.usingWhen(Mono.from(escucha.create()),
+                        c -> {
+                            PostgresqlConnection pg = postgres(c);
+                            Flux<Aviso> avisos = pg.getNotifications().map(n -> new Aviso(
+                                    n.getParameter() == null ? "" : n.getParameter()));
+                            return pg.createStatement("LISTEN " + canal).execute()
+                                    .flatMap(PostgresqlResult::getRowsUpdated)
+                                    .thenMany(conectado.getAndSet(true)
+                                            ? Flux.just(Aviso.hueco()).concatWith(avisos)
+                                            : avisos);
+                        },
+                        Connection::close)
+                // getNotifications() completa al cerrarse la conexión: también hay que reconectar
+                .concatWith(Mono.error(() -> new IllegalStateException("conexión LISTEN cerrada")))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(r -> log.warn("LISTEN {} caído, reconectando: {}", canal, r.failure().toString())));
+    }
+
+    private static PostgresqlConnection postgres(Connection c) {
+        Object actual = c;
+        while (!(actual instanceof PostgresqlConnection) && actual instanceof Wrapped<?> w) {
+            actual = w.unwrap();
+        }
+        if (actual instanceof PostgresqlConnection pg) return pg;
+        throw new IllegalStateException("LISTEN/NOTIFY requiere el driver de Postgres: " + c.getClass().getName());
+    }
+
+    private static void validar(String canal) {
+        if (!CANAL.matcher(canal).matches()) throw new IllegalArgumentException("Canal no válido: " + canal);
+    }
+}
@@ -0,0 +1,25 @@
+package com.goat.marketplacedulces.repository;
+
+import com.goat.marketplacedulces.model.Pedido;
+import com.goat.marketplacedulces.model.PedidoItem;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+public interface PedidoRepository extends ReactiveCrudRepository<Pedido, Long> {
+    Flux<Pedido> findByUsernameOrderByIdDesc(String username);
+
+    // Todas las líneas del pedido en un solo INSERT multi-fila
+    @Query("""
+            INSERT INTO pedido_items (pedido_id, producto_id, cantidad, precio_unitario)
+            SELECT :pedidoId, t.producto_id, t.cantidad, t.precio_unitario
+            FROM unnest(CAST(:productos AS bigint[]), CAST(:cantidades AS int[]), CAST(:precios AS int[]))
+                 AS t(producto_id, cantidad, precio_unitario)
+            RETURNING id, pedido_id, producto_id, cantidad, precio_unitario
+            """)
+    Flux<PedidoItem> insertarItems(@Param("pedidoId") Long pedidoId,
+                                   @Param("productos") Long[] productos,
+                                   @Param("cantidades") Integer[] cantidades,
+                                   @Param("precios") Integer[] precios);
+}
@@ -1,12 +1,68 @@
 package com.goat.marketplacedulces.repository;
 
+import com.goat.marketplacedulces.dto.ProductoImportado;
+import com.goat.marketplacedulces.dto.StockProducto;
 import com.goat.marketplacedulces.model.Producto;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ProductoRepository extends ReactiveCrudRepository<Producto, Long> {
     Flux<Producto> findByPaisOrigen(String pais);
     Flux<Producto> findByTipo(String tipo);
-}
 
+    // Descuento condicional: si no alcanza el stock no actualiza nada (Mono vacío)
+    @Query("""
+            UPDATE productos SET stock = stock - :cantidad
+            WHERE id = :id AND stock >= :cantidad
+            RETURNING id, stock, :cantidad AS concedido
+            """)
+    Mono<StockProducto> descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+    // Se lleva hasta :pedido unidades (lo que haya si hay menos) para repartirlas desde memoria
+    @Query("""
+            WITH actual AS (SELECT id, stock FROM productos WHERE id = :id FOR UPDATE)
+            UPDATE productos p SET stock = p.stock - LEAST(actual.stock, :pedido)
+            FROM actual
+            WHERE p.id = actual.id
+            RETURNING p.id, p.stock, actual.stock - p.stock AS concedido
+            """)
+    Mono<StockProducto> reservarLote(@Param("id") Long id, @Param("pedido") int pedido);
+
+    // Devuelve unidades reservadas y no vendidas, varias filas en un statement
+    @Query("""
+            UPDATE productos p SET stock = p.stock + t.cantidad
+            FROM unnest(CAST(:ids AS bigint[]), CAST(:cantidades AS int[])) AS t(id, cantidad)
+            WHERE p.id = t.id
+            RETURNING p.id, p.stock, -t.cantidad AS concedido
+            """)
+    Flux<StockProducto> devolverStock(@Param("ids") Long[] ids, @Param("cantidades") Integer[] cantidades);
 
+    // Importación: un statement por lote. Sin id se inserta con la secuencia; con id se inserta o se
+    // sobrescribe esa fila (el stock también: lo reservado en memoria por los nodos vuelve después encima).
+    @Query("""
+            INSERT INTO productos (id, nombre, tipo, pais_origen, precio, stock)
+            SELECT COALESCE(t.id, nextval(pg_get_serial_sequence('productos', 'id'))),
+                   t.nombre, t.tipo, t.pais_origen, t.precio, t.stock
+            FROM unnest(CAST(:ids AS bigint[]), CAST(:nombres AS varchar[]), CAST(:tipos AS varchar[]),
+                        CAST(:paises AS varchar[]), CAST(:precios AS int[]), CAST(:stocks AS int[]))
+                 AS t(id, nombre, tipo, pais_origen, precio, stock)
+            ON CONFLICT (id) DO UPDATE
+               SET nombre = EXCLUDED.nombre, tipo = EXCLUDED.tipo, pais_origen = EXCLUDED.pais_origen,
+                   precio = EXCLUDED.precio, stock = EXCLUDED.stock
+            RETURNING id, nombre, tipo, pais_origen, precio, stock, (xmax = 0) AS insertado
+            """)
+    Flux<ProductoImportado> importar(@Param("ids") Long[] ids, @Param("nombres") String[] nombres,
+                                     @Param("tipos") String[] tipos, @Param("paises") String[] paises,
+                                     @Param("precios") Integer[] precios, @Param("stocks") Integer[] stocks);
+
+    // Tras insertar ids explícitos la secuencia puede ir por detrás: la adelanta sin retroceder nunca
+    @Query("""
+            SELECT setval(pg_get_serial_sequence('productos', 'id'),
+                          GREATEST((SELECT COALESCE(MAX(id), 1) FROM productos),
+                                   (SELECT last_value FROM productos_id_seq)))
+            """)
+    Mono<Long> ajustarSecuencia();
+}
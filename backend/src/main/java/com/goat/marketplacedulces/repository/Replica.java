@@ -0,0 +1,28 @@
+package com.goat.marketplacedulces.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marca una lectura como apta para la réplica (app.r2dbc.replica.url). Sin réplica configurada,
+ * dentro de una transacción o con la réplica caída, se lee de la primaria como siempre.
+ *
+ * <p>Solo para lo que tolera unos segundos de retraso: lo que se acaba de escribir puede no estar
+ * aún en la réplica.
+ */
+public final class Replica {
+
+    /** Clave del contexto de Reactor que mira la ConnectionFactory enrutada. */
+    public static final String LECTURA = Replica.class.getName() + ".lectura";
+
+    private Replica() {
+    }
+
+    public static <T> Flux<T> leer(Flux<T> lectura) {
+        return lectura.contextWrite(ctx -> ctx.put(LECTURA, Boolean.TRUE));
+    }
+
+    public static <T> Mono<T> leer(Mono<T> lectura) {
+        return lectura.contextWrite(ctx -> ctx.put(LECTURA, Boolean.TRUE));
+    }
+}
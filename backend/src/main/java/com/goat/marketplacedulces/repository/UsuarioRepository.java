@@ -1,9 +1,30 @@
 package com.goat.marketplacedulces.repository;
 
 import com.goat.marketplacedulces.model.Usuario;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface UsuarioRepository extends ReactiveCrudRepository<Usuario, Long> {
     Mono<Usuario> findByUsername(String username);
+
+    Mono<Boolean> existsByUsername(String username);
+
+    // Para llenar el filtro de usuarios al arrancar: solo la columna, en streaming
+    @Query("SELECT username FROM usuarios")
+    Flux<String> todosLosUsernames();
+
+    // Para la lista de revocación: al arrancar y en cada resincronización
+    @Query("SELECT username FROM usuarios WHERE NOT enabled")
+    Flux<String> deshabilitados();
+
+    @Query("SELECT NOT enabled FROM usuarios WHERE username = :username")
+    Mono<Boolean> deshabilitado(@Param("username") String username);
+
+    @Modifying
+    @Query("UPDATE usuarios SET enabled = :enabled WHERE username = :username")
+    Mono<Integer> actualizarEnabled(@Param("username") String username, @Param("enabled") boolean enabled);
 }
@@ -6,45 +6,142 @@ import com.goat.marketplacedulces.dto.RegisterRequest;
 import com.goat.marketplacedulces.model.Usuario;
 import com.goat.marketplacedulces.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono; // solo si usas new HashMap<>(...)
+import java.time.Duration;
 import java.util.Map;
 import java.util.HashMap; // si usas new HashMap<>(...)
+import java.util.concurrent.atomic.AtomicLong;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
 
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final UsuarioRepository usuarioRepository; // o tu repo
-    private final PasswordEncoder passwordEncoder;
+    private final HashingService hashing; // BCrypt en su propio pool, nunca en el event loop
     private final JwtService jwt;
+    private final RevocacionService revocacion;
+    private final FiltroUsuarios filtroUsuarios;
+
+    // Media móvil de lo que tarda comprobar una contraseña de un usuario que existe (BD + cola + BCrypt)
+    private final AtomicLong verificacionNanos = new AtomicLong();
+    private volatile Mono<String> hashFicticio;
 
     public Mono<Map<String,String>> login(String username, String rawPassword) {
+        if (!filtroUsuarios.puedeExistir(username)) return rechazoSinUsuario(rawPassword);
+        long inicio = System.nanoTime();
         return usuarioRepository.findByUsername(username)
                 .switchIfEmpty(Mono.error(new BadCredentialsException("Credenciales inválidas")))
                 .flatMap(u -> {
                     if (!u.getEnabled()) return Mono.error(new DisabledException("Usuario deshabilitado"));
-                    if (!passwordEncoder.matches(rawPassword, u.getPassword()))
-                        return Mono.error(new BadCredentialsException("Credenciales inválidas"));
+                    return hashing.matches(rawPassword, u.getPassword())
+                            .doOnNext(ok -> medirVerificacion(System.nanoTime() - inicio))
+                            .flatMap(ok -> {
+                                if (!ok) return Mono.error(new BadCredentialsException("Credenciales inválidas"));
+
+                                String token = jwt.generateToken(u.getUsername(), u.getRol());
+                                return rehashSiHaceFalta(u, rawPassword)
+                                        .thenReturn(Map.of("token", token));
+                            });
+                });
+    }
+
+    /**
+     * Username que seguro que no existe: se responde lo mismo que a una contraseña incorrecta y tras el
+     * mismo tiempo, para no revelar qué usernames existen, pero sin consultar la BD ni ocupar el pool de
+     * BCrypt (que es lo que busca un bot probando listas de credenciales). Hasta tener una medida real del
+     * tiempo de verificación se hace un BCrypt de verdad contra un hash ficticio.
+     */
+    private Mono<Map<String, String>> rechazoSinUsuario(String rawPassword) {
+        long tipico = verificacionNanos.get();
+        Mono<?> espera = tipico > 0
+                ? Mono.delay(Duration.ofNanos(tipico))
+                : hashFicticio().flatMap(hash -> hashing.matches(rawPassword == null ? "" : rawPassword, hash));
+        return espera.then(Mono.error(new BadCredentialsException("Credenciales inválidas")));
+    }
+
+    private void medirVerificacion(long nanos) {
+        long previo = verificacionNanos.get();
+        verificacionNanos.set(previo == 0 ? nanos : previo + (nanos - previo) / 8);
+    }
 
-                    String token = jwt.generateToken(u.getUsername()); // ajusta claims/rol si usas
-                    return Mono.just(Map.of("token", token));
+    private Mono<String> hashFicticio() {
+        Mono<String> h = hashFicticio;
+        if (h == null) {
+            h = hashing.encode("usuario-inexistente").cache();
+            hashFicticio = h;
+        }
+        return h;
+    }
+
+    /** Alta pública: siempre con rol USUARIO. */
+    public Mono<Void> register(String username, String rawPassword) {
+        // Si el filtro no lo descarta se comprueba antes de gastar un BCrypt en un username repetido;
+        // la restricción UNIQUE sigue cubriendo dos registros simultáneos del mismo nombre
+        Mono<Boolean> existe = filtroUsuarios.puedeExistir(username)
+                ? usuarioRepository.existsByUsername(username)
+                : Mono.just(false);
+        return existe
+                .flatMap(repetido -> repetido
+                        ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "El usuario ya existe"))
+                        : hashing.encode(rawPassword)) // IMPORTANTE
+                .flatMap(hash -> {
+                    Usuario u = new Usuario();
+                    u.setUsername(username);
+                    u.setPassword(hash);
+                    u.setRol("USUARIO");
+                    u.setEnabled(true);
+                    return usuarioRepository.save(u);
+                })
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, "El usuario ya existe"))
+                .doOnNext(u -> filtroUsuarios.registrado(u.getUsername()))
+                .then();
+    }
+
+    /** Deshabilita al usuario y revoca sus tokens vigentes (modo stateless). */
+    public Mono<Void> deshabilitar(String username) {
+        return usuarioRepository.actualizarEnabled(username, false)
+                .flatMap(filas -> {
+                    if (filas == 0) return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no existe"));
+                    revocacion.revocar(username);
+                    return Mono.<Void>empty();
                 });
     }
 
-    public Mono<Void> register(String username, String rawPassword, String rol) {
-        Usuario u = new Usuario();
-        u.setUsername(username);
-        u.setPassword(passwordEncoder.encode(rawPassword)); // IMPORTANTE
-        u.setRol(rol != null ? rol : "USUARIO");
-        u.setEnabled(true);
-        return usuarioRepository.save(u).then();
+    // Si el hash guardado usa otro costo (p.ej. los sembrados con pgcrypto), lo regeneramos
+    // aprovechando que tenemos la contraseña en claro. Un fallo aquí no rompe el login.
+    private Mono<Void> rehashSiHaceFalta(Usuario u, String rawPassword) {
+        if (!hashing.necesitaRehash(u.getPassword())) return Mono.empty();
+        return hashing.encode(rawPassword)
+                .flatMap(hash -> {
+                    u.setPassword(hash);
+                    return usuarioRepository.save(u);
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("No se pudo actualizar el hash de {}: {}", u.getUsername(), e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Void> habilitar(String username) {
+        return usuarioRepository.actualizarEnabled(username, true)
+                .flatMap(filas -> {
+                    if (filas == 0) return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no existe"));
+                    revocacion.habilitar(username);
+                    return Mono.<Void>empty();
+                });
     }
 }
 
@@ -0,0 +1,228 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Autocompletado por prefijo sobre los nombres del catálogo, sin tildes ni mayúsculas
+ * ("ramune mel" encuentra "Ramune Melón", "fres" encuentra "Pocky Fresa").
+ *
+ * <p>En vez de un trie con un nodo por letra, todos los nombres normalizados van seguidos en un único
+ * {@code char[]} y se guarda un array ordenado con la posición de cada inicio de palabra (un array de
+ * sufijos limitado a inicios de palabra): por producto son sus caracteres más 8 bytes por palabra.
+ * Un prefijo es un rango contiguo de ese array que se encuentra con dos búsquedas binarias.
+ *
+ * <p>Las filas son las del snapshot con el que se construyó: mientras no cambien los nombres (los cambios
+ * de stock no los tocan) se reutiliza, y el ranking por stock se lee del snapshot vigente en cada consulta.
+ */
+public final class Autocompletado {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final char FIN = '\0';
+    // Rangos de hasta este tamaño se recorren; los más grandes usan el árbol de ranking
+    private static final int RANGO_LINEAL = 64;
+    private static final Comparator<Producto> MAS_STOCK = Comparator
+            .comparingInt((Producto p) -> p.getStock() == null ? 0 : p.getStock()).reversed()
+            .thenComparing(Producto::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final char[] texto;    // nombres normalizados, cada uno terminado en FIN
+    private final int[] inicios;   // posiciones de inicio de palabra, ordenadas por el texto que sigue
+    private final int[] filas;     // fila del producto de cada inicio
+    private volatile Ranking ranking;
+
+    private Autocompletado(char[] texto, int[] inicios, int[] filas) {
+        this.texto = texto;
+        this.inicios = inicios;
+        this.filas = filas;
+    }
+
+    public static Autocompletado de(List<Producto> productos) {
+        StringBuilder sb = new StringBuilder();
+        List<int[]> palabras = new ArrayList<>(); // {inicio, fila}
+        for (int fila = 0; fila < productos.size(); fila++) {
+            String nombre = normalizar(productos.get(fila).getNombre());
+            int base = sb.length();
+            for (int i = 0; i < nombre.length(); i++) {
+                if (i == 0 || nombre.charAt(i - 1) == ' ') palabras.add(new int[]{base + i, fila});
+            }
+            sb.append(nombre).append(FIN);
+        }
+        char[] texto = sb.toString().toCharArray();
+
+        int[][] ordenadas = palabras.toArray(int[][]::new);
+        Arrays.sort(ordenadas, (a, b) -> comparar(texto, a[0], b[0]));
+        int[] inicios = new int[ordenadas.length];
+        int[] filas = new int[ordenadas.length];
+        for (int i = 0; i < ordenadas.length; i++) {
+            inicios[i] = ordenadas[i][0];
+            filas[i] = ordenadas[i][1];
+        }
+        return new Autocompletado(texto, inicios, filas);
+    }
+
+    /** Minúsculas, sin tildes y con cualquier separador reducido a un espacio. */
+    public static String normalizar(String s) {
+        if (s == null) return "";
+        // Lo habitual (lo que se teclea) es ASCII: sin tildes no hace falta descomponer
+        String sinMarcas = esAscii(s) ? s : MARCAS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        StringBuilder sb = new StringBuilder(sinMarcas.length());
+        boolean espacio = true; // evita espacios al principio y repetidos
+        for (int i = 0; i < sinMarcas.length(); i++) {
+            char c = Character.toLowerCase(sinMarcas.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                espacio = false;
+            } else if (!espacio) {
+                sb.append(' ');
+                espacio = true;
+            }
+        }
+        int fin = sb.length();
+        if (fin > 0 && sb.charAt(fin - 1) == ' ') sb.setLength(fin - 1);
+        return sb.toString();
+    }
+
+    private static boolean esAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hasta {@code k} productos cuyo nombre tiene alguna palabra que empieza por {@code prefijo},
+     * los de más stock primero. {@code productos} son las filas del snapshot vigente.
+     */
+    public List<Producto> sugerir(String prefijo, int k, List<Producto> productos) {
+        String q = normalizar(prefijo);
+        if (q.isEmpty() || k <= 0) return List.of();
+
+        int desde = primero(q, false);
+        int hasta = primero(q, true);
+        if (hasta - desde <= RANGO_LINEAL) return recorrer(desde, hasta, k, productos);
+        return ranking(productos).mejores(desde, hasta, k);
+    }
+
+    /** Bytes aproximados de las estructuras (texto, dos arrays de int y el árbol de ranking si ya existe). */
+    public long memoriaAproximada() {
+        Ranking r = ranking;
+        return texto.length * 2L + inicios.length * 8L + (r == null ? 0 : r.arbol.length * 4L);
+    }
+
+    // Rango corto: se recorre entero y se queda con los k de más stock
+    private List<Producto> recorrer(int desde, int hasta, int k, List<Producto> productos) {
+        List<Producto> candidatos = new ArrayList<>();
+        Set<Integer> vistas = new HashSet<>();
+        for (int i = desde; i < hasta; i++) {
+            if (vistas.add(filas[i])) candidatos.add(productos.get(filas[i])); // varias palabras del mismo nombre
+        }
+        candidatos.sort(MAS_STOCK);
+        return candidatos.size() > k ? List.copyOf(candidatos.subList(0, k)) : candidatos;
+    }
+
+    private Ranking ranking(List<Producto> productos) {
+        Ranking r = ranking;
+        if (r == null || r.productos != productos) {
+            r = new Ranking(productos);
+            ranking = r;
+        }
+        return r;
+    }
+
+    /**
+     * Árbol de segmentos sobre el array ordenado de inicios: cada nodo guarda el inicio con más stock
+     * de su tramo. Los k mejores de un rango salen explorando primero los nodos con más stock, sin
+     * recorrer las miles de palabras que empiezan por una sola letra. Depende del stock, así que se
+     * rehace (perezosamente) para cada snapshot que se consulta.
+     */
+    private final class Ranking {
+        final List<Producto> productos;
+        final int hojas;
+        final int[] arbol; // índice en inicios del mejor de cada nodo, -1 si vacío
+
+        Ranking(List<Producto> productos) {
+            this.productos = productos;
+            int h = 1;
+            while (h < inicios.length) h <<= 1;
+            this.hojas = h;
+            this.arbol = new int[2 * h];
+            Arrays.fill(arbol, -1);
+            for (int i = 0; i < inicios.length; i++) arbol[h + i] = i;
+            for (int nodo = h - 1; nodo >= 1; nodo--) arbol[nodo] = mejor(arbol[2 * nodo], arbol[2 * nodo + 1]);
+        }
+
+        List<Producto> mejores(int desde, int hasta, int k) {
+            PriorityQueue<Integer> frontera = new PriorityQueue<>((a, b) -> comparar(arbol[b], arbol[a]));
+            // Nodos que cubren exactamente [desde, hasta)
+            for (int l = desde + hojas, r = hasta + hojas; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) frontera.add(l++);
+                if ((r & 1) == 1) frontera.add(--r);
+            }
+            List<Producto> resultado = new ArrayList<>(k);
+            Set<Integer> vistas = new HashSet<>();
+            while (!frontera.isEmpty() && resultado.size() < k) {
+                int nodo = frontera.poll();
+                if (arbol[nodo] < 0) continue;
+                if (nodo >= hojas) {
+                    int fila = filas[arbol[nodo]];
+                    if (vistas.add(fila)) resultado.add(productos.get(fila));
+                } else {
+                    frontera.add(2 * nodo);
+                    frontera.add(2 * nodo + 1);
+                }
+            }
+            return resultado;
+        }
+
+        private int mejor(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            return comparar(a, b) >= 0 ? a : b;
+        }
+
+        // >0 si el inicio a va antes en el ranking que b
+        private int comparar(int a, int b) {
+            if (a < 0 || b < 0) return Integer.compare(a, b);
+            return -MAS_STOCK.compare(productos.get(filas[a]), productos.get(filas[b]));
+        }
+    }
+
+    // Primer inicio cuyo texto es >= q (o, con despues=true, el primero que ya no empieza por q)
+    private int primero(String q, boolean despues) {
+        int lo = 0, hi = inicios.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compararPrefijo(inicios[mid], q);
+            if (c < 0 || (despues && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // <0 si el texto en pos va antes que q, 0 si empieza por q, >0 si va después
+    private int compararPrefijo(int pos, String q) {
+        for (int i = 0; i < q.length(); i++) {
+            char t = texto[pos + i];
+            if (t == FIN) return -1;
+            if (t != q.charAt(i)) return t < q.charAt(i) ? -1 : 1;
+        }
+        return 0;
+    }
+
+    private static int comparar(char[] texto, int a, int b) {
+        while (true) {
+            char x = texto[a++], y = texto[b++];
+            if (x != y) return x < y ? -1 : 1;
+            if (x == FIN) return 0;
+        }
+    }
+}
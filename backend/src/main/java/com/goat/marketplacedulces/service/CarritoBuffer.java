@@ -0,0 +1,451 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Carrito;
+import com.goat.marketplacedulces.repository.CarritoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Modo write-behind del carrito ({@code app.carrito.write-behind.habilitado=true}).
+ *
+ * <p>El carrito de cada usuario vive en memoria: GET /carrito sale de aquí y cada "+1" solo toca un mapa.
+ * Los cambios se acumulan por línea y se escriben con la cantidad final, en lote para todos los usuarios
+ * (un upsert y un DELETE multi-fila), cuando el carrito lleva {@code intervalo} sin cambios o, si no
+ * para de cambiar, cuando su cambio pendiente más antiguo cumple {@code ventana-durabilidad}: es lo
+ * máximo que se pierde si el nodo cae sin apagarse bien. Al apagar se escribe todo.
+ *
+ * <p>Los ids de las líneas nuevas salen de bloques de {@code carrito_id_seq} pedidos por adelantado, así
+ * la respuesta lleva el id definitivo sin esperar a la BD. Las operaciones que van contra la tabla
+ * (lote, vaciar, checkout) pasan por {@link #enDirecto}: primero se escribe lo pendiente y se suelta la
+ * copia. Pensado para un nodo o sesiones pegadas: lo que otro nodo escriba en el mismo carrito no se ve
+ * aquí hasta que la copia se suelta.
+ */
+@Slf4j
+@Component
+public class CarritoBuffer implements DisposableBean {
+
+    private static final int IDS_POR_BLOQUE = 100;
+    private static final int FILAS_POR_STATEMENT = 1000;
+
+    // Copia en memoria del carrito de un usuario; se accede siempre con synchronized sobre ella.
+    private static final class CarritoMem {
+        final String username;
+        final Map<Long, Carrito> lineas = new LinkedHashMap<>(); // productoId -> línea
+        final Map<Long, Long> borrados = new HashMap<>();         // productoId -> id de la línea quitada
+        final Set<Long> sucios = new HashSet<>();                 // productoId con cantidad sin escribir
+        long primerCambio;
+        long ultimoCambio;
+        long ultimoUso = System.nanoTime();
+        boolean soltado;
+
+        CarritoMem(String username, List<Carrito> desdeBd) {
+            this.username = username;
+            desdeBd.stream()
+                    .sorted(Comparator.comparing(Carrito::getId))
+                    .forEach(c -> lineas.put(c.getProductoId(), c));
+        }
+
+        boolean pendiente() {
+            return !sucios.isEmpty() || !borrados.isEmpty();
+        }
+
+        void cambio() {
+            long ahora = System.nanoTime();
+            if (!pendiente()) primerCambio = ahora;
+            ultimoCambio = ahora;
+            ultimoUso = ahora;
+        }
+    }
+
+    // Lo que hay que escribir de un carrito, tomado bajo su lock
+    private record Pendiente(CarritoMem carrito, List<Carrito> escribir, Map<Long, Long> borrar) {
+        int filas() {
+            return escribir.size() + borrar.size();
+        }
+    }
+
+    // Todas las escrituras pasan por una cola y se ejecutan de una en una: así un DELETE y el upsert
+    // posterior de la misma línea nunca se adelantan.
+    private record Escritura(Supplier<Collection<CarritoMem>> carritos, boolean todo, boolean soltar,
+                             Sinks.One<Void> hecho) {
+    }
+
+    private final CarritoRepository repo;
+    private final CatalogoCache catalogo;
+    private final EscriturasRecientes escrituras;
+    private final boolean habilitado;
+    private final long intervaloNanos;
+    private final long ventanaNanos;
+    private final long inactividadNanos;
+    private final int maxUsuarios;
+
+    private final Map<String, CarritoMem> carritos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> directos = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Mono<Void>> recargaIds = new AtomicReference<>();
+    private final AtomicBoolean revisionEnCola = new AtomicBoolean();
+    private final Sinks.Many<Escritura> cola = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable escritor;
+    private final Disposable revisionPeriodica;
+
+    public CarritoBuffer(CarritoRepository repo,
+                         CatalogoCache catalogo,
+                         EscriturasRecientes escrituras,
+                         @Value("${app.carrito.write-behind.habilitado:false}") boolean habilitado,
+                         @Value("${app.carrito.write-behind.intervalo:1s}") Duration intervalo,
+                         @Value("${app.carrito.write-behind.ventana-durabilidad:5s}") Duration ventana,
+                         @Value("${app.carrito.write-behind.inactividad:10m}") Duration inactividad,
+                         @Value("${app.carrito.write-behind.max-usuarios:50000}") int maxUsuarios) {
+        this.repo = repo;
+        this.catalogo = catalogo;
+        this.escrituras = escrituras;
+        this.habilitado = habilitado;
+        this.intervaloNanos = intervalo.toNanos();
+        this.ventanaNanos = ventana.toNanos();
+        this.inactividadNanos = inactividad.toNanos();
+        this.maxUsuarios = maxUsuarios;
+        if (habilitado) {
+            this.escritor = cola.asFlux().concatMap(this::ejecutar).subscribe();
+            this.revisionPeriodica = Flux.interval(intervalo)
+                    .subscribe(t -> {
+                        if (revisionEnCola.compareAndSet(false, true)) {
+                            encolar(carritos::values, false, false);
+                        }
+                    });
+        } else {
+            this.escritor = null;
+            this.revisionPeriodica = null;
+        }
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Suma unidades a la línea en memoria. Vacío si este usuario no se atiende desde memoria
+     * (modo deshabilitado, cupo lleno u operación directa en curso): entonces va directo a la BD.
+     */
+    public Mono<Carrito> agregar(String username, Long productoId, int cantidad) {
+        if (!habilitado) return Mono.empty();
+        return catalogo.snapshot().flatMap(s -> {
+            if (s.buscar(productoId) == null) {
+                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no existe"));
+            }
+            return cargar(username).flatMap(c -> sumar(c, productoId, cantidad));
+        });
+    }
+
+    /** Líneas del carrito desde memoria (o de la BD si este usuario no se atiende desde memoria). */
+    public Mono<List<Carrito>> ver(String username) {
+        return cargar(username)
+                .map(c -> {
+                    synchronized (c) {
+                        c.ultimoUso = System.nanoTime();
+                        return c.lineas.values().stream().map(CarritoBuffer::copia).toList();
+                    }
+                })
+                .switchIfEmpty(Mono.defer(() -> repo.findByUsername(username).collectList()));
+    }
+
+    /** Quita la línea {@code id} si está en la copia en memoria; vacío si no se atiende desde memoria. */
+    public Mono<Boolean> eliminar(String username, Long id) {
+        if (!habilitado) return Mono.empty();
+        return cargar(username).flatMap(c -> {
+            synchronized (c) {
+                if (c.soltado) return eliminar(username, id);
+                for (Carrito linea : c.lineas.values()) {
+                    if (linea.getId().equals(id)) {
+                        c.cambio();
+                        c.lineas.remove(linea.getProductoId());
+                        c.sucios.remove(linea.getProductoId());
+                        c.borrados.put(linea.getProductoId(), id);
+                        return Mono.just(true);
+                    }
+                }
+                return Mono.just(false);
+            }
+        });
+    }
+
+    /** Escribe ya lo pendiente del usuario (p. ej. antes de leer el carrito con un join en la BD). */
+    public Mono<Void> escribirPendiente(String username) {
+        if (!habilitado || !carritos.containsKey(username)) return Mono.empty();
+        return encolar(() -> soloDe(username), true, false);
+    }
+
+    /**
+     * Ejecuta una operación contra la tabla: escribe lo pendiente, suelta la copia en memoria y, mientras
+     * dura la operación, el usuario se atiende directo desde la BD. Al terminar se volverá a cargar.
+     */
+    public <T> Flux<T> enDirecto(String username, Flux<T> operacion) {
+        if (!habilitado) return operacion;
+        return Mono.fromRunnable(() -> directos.merge(username, 1, Integer::sum))
+                .then(Mono.defer(() -> carritos.containsKey(username)
+                        ? encolar(() -> soloDe(username), true, true)
+                        : Mono.<Void>empty()))
+                .thenMany(operacion)
+                .doFinally(s -> directos.computeIfPresent(username, (u, n) -> n == 1 ? null : n - 1));
+    }
+
+    public <T> Mono<T> enDirecto(String username, Mono<T> operacion) {
+        // singleOrEmpty y no next(): no se cancela la operación (ni su transacción) al recibir el valor
+        return enDirecto(username, operacion.flux()).singleOrEmpty();
+    }
+
+    /** Escribe todo lo pendiente (revisión periódica forzada; útil en tests). */
+    public Mono<Void> escribirTodo() {
+        if (!habilitado) return Mono.empty();
+        return encolar(carritos::values, true, false);
+    }
+
+    @Override
+    public void destroy() {
+        if (!habilitado) return;
+        revisionPeriodica.dispose();
+        try {
+            escribirTodo().block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            log.error("No se pudieron escribir los carritos pendientes al apagar: {}", e.toString());
+        }
+        escritor.dispose();
+    }
+
+    // --- memoria ---
+
+    private Mono<CarritoMem> cargar(String username) {
+        if (!habilitado || directos.containsKey(username)) return Mono.empty();
+        CarritoMem c = carritos.get(username);
+        if (c != null) return Mono.just(c);
+        if (carritos.size() >= maxUsuarios) return Mono.empty(); // cupo lleno: este usuario va a la BD
+        return repo.findByUsername(username)
+                .collectList()
+                .flatMap(lineas -> directos.containsKey(username)
+                        ? Mono.empty()
+                        : Mono.just(carritos.computeIfAbsent(username, u -> new CarritoMem(u, lineas))));
+    }
+
+    private Mono<Carrito> sumar(CarritoMem c, Long productoId, int cantidad) {
+        synchronized (c) {
+            if (c.soltado) {
+                return cargar(c.username).flatMap(otra -> sumar(otra, productoId, cantidad));
+            }
+            Carrito linea = c.lineas.get(productoId);
+            if (linea == null) {
+                // Si se quitó en esta misma ventana se reutiliza su id: la fila puede seguir en la BD
+                Long id = c.borrados.remove(productoId);
+                if (id == null) id = ids.poll();
+                if (id != null) {
+                    linea = new Carrito(id, c.username, productoId, 0);
+                    c.lineas.put(productoId, linea);
+                }
+            }
+            if (linea != null) {
+                c.cambio();
+                linea.setCantidad(linea.getCantidad() + cantidad);
+                c.sucios.add(productoId);
+                return Mono.just(copia(linea));
+            }
+        }
+        // Sin ids a mano: se pide otro bloque y se reintenta
+        return recargarIds().then(Mono.defer(() -> sumar(c, productoId, cantidad)));
+    }
+
+    // Un solo bloque de ids en vuelo; se suelta antes de completar para que los reintentos vean el nuevo estado.
+    private Mono<Void> recargarIds() {
+        while (true) {
+            Mono<Void> enCurso = recargaIds.get();
+            if (enCurso != null) return enCurso;
+
+            AtomicReference<Mono<Void>> propia = new AtomicReference<>();
+            Mono<Void> nueva = repo.reservarIds(IDS_POR_BLOQUE)
+                    .doOnNext(ids::offer)
+                    .then()
+                    .doOnTerminate(() -> recargaIds.compareAndSet(propia.get(), null))
+                    .cache();
+            propia.set(nueva);
+            if (recargaIds.compareAndSet(null, nueva)) return nueva;
+        }
+    }
+
+    private Collection<CarritoMem> soloDe(String username) {
+        CarritoMem c = carritos.get(username);
+        return c == null ? List.of() : List.of(c);
+    }
+
+    private static Carrito copia(Carrito c) {
+        return new Carrito(c.getId(), c.getUsername(), c.getProductoId(), c.getCantidad());
+    }
+
+    // --- escritura ---
+
+    private Mono<Void> encolar(Supplier<Collection<CarritoMem>> cuales, boolean todo, boolean soltar) {
+        Sinks.One<Void> hecho = Sinks.one();
+        cola.emitNext(new Escritura(cuales, todo, soltar, hecho), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        return hecho.asMono();
+    }
+
+    private Mono<Void> ejecutar(Escritura e) {
+        long ahora = System.nanoTime();
+        if (!e.todo()) revisionEnCola.set(false);
+
+        List<Pendiente> pendientes = new ArrayList<>();
+        for (CarritoMem c : e.carritos().get()) {
+            Pendiente p = tomar(c, ahora, e.todo(), e.soltar());
+            if (p != null) pendientes.add(p);
+        }
+        return escribir(pendientes)
+                .doOnError(err -> {
+                    if (!e.todo()) log.warn("No se pudieron escribir carritos pendientes: {}", err.toString());
+                })
+                .doOnSuccess(v -> e.hecho().tryEmitEmpty())
+                .onErrorResume(err -> {
+                    e.hecho().tryEmitError(err);
+                    return Mono.empty();
+                });
+    }
+
+    private Pendiente tomar(CarritoMem c, long ahora, boolean todo, boolean soltar) {
+        synchronized (c) {
+            if (soltar) {
+                c.soltado = true;
+                carritos.remove(c.username, c);
+            } else if (!c.pendiente()) {
+                // Carrito limpio y sin uso: se suelta para no crecer sin límite
+                if (ahora - c.ultimoUso >= inactividadNanos) {
+                    c.soltado = true;
+                    carritos.remove(c.username, c);
+                }
+                return null;
+            }
+            boolean toca = todo
+                    || ahora - c.ultimoCambio >= intervaloNanos
+                    || ahora - c.primerCambio >= ventanaNanos;
+            if (!c.pendiente() || !toca) return null;
+
+            List<Carrito> escribir = c.sucios.stream().map(id -> copia(c.lineas.get(id))).toList();
+            Map<Long, Long> borrar = new HashMap<>(c.borrados);
+            c.sucios.clear();
+            c.borrados.clear();
+            return new Pendiente(c, escribir, borrar);
+        }
+    }
+
+    private Mono<Void> escribir(List<Pendiente> pendientes) {
+        if (pendientes.isEmpty()) return Mono.empty();
+        // Trozos de hasta FILAS_POR_STATEMENT filas; un carrito nunca se parte
+        List<List<Pendiente>> trozos = new ArrayList<>();
+        List<Pendiente> trozo = new ArrayList<>();
+        int filas = 0;
+        for (Pendiente p : pendientes) {
+            if (!trozo.isEmpty() && filas + p.filas() > FILAS_POR_STATEMENT) {
+                trozos.add(trozo);
+                trozo = new ArrayList<>();
+                filas = 0;
+            }
+            trozo.add(p);
+            filas += p.filas();
+        }
+        trozos.add(trozo);
+
+        return Flux.fromIterable(trozos)
+                .concatMapDelayError(t -> t.size() == 1 ? escribirUno(t.get(0))
+                        // Un usuario o producto borrado no debe bloquear al resto: se reintenta de uno en uno
+                        : escribirTrozo(t).onErrorResume(err -> Flux.fromIterable(t).concatMapDelayError(this::escribirUno).then()))
+                .then();
+    }
+
+    private Mono<Void> escribirUno(Pendiente p) {
+        return escribirTrozo(List.of(p)).onErrorResume(err -> {
+            if (err instanceof DataIntegrityViolationException) {
+                log.warn("Carrito de {} descartado: {}", p.carrito().username, err.toString());
+                soltar(p.carrito());
+                return Mono.empty();
+            }
+            restaurar(p);
+            return Mono.error(err);
+        });
+    }
+
+    private Mono<Void> escribirTrozo(List<Pendiente> trozo) {
+        List<String> usernamesBorrar = new ArrayList<>();
+        List<Long> productosBorrar = new ArrayList<>();
+        List<Long> idsEscribir = new ArrayList<>();
+        List<String> usernamesEscribir = new ArrayList<>();
+        List<Long> productosEscribir = new ArrayList<>();
+        List<Integer> cantidades = new ArrayList<>();
+        for (Pendiente p : trozo) {
+            for (Long productoId : p.borrar().keySet()) {
+                usernamesBorrar.add(p.carrito().username);
+                productosBorrar.add(productoId);
+            }
+            for (Carrito l : p.escribir()) {
+                idsEscribir.add(l.getId());
+                usernamesEscribir.add(l.getUsername());
+                productosEscribir.add(l.getProductoId());
+                cantidades.add(l.getCantidad());
+            }
+        }
+        Mono<Integer> borrar = usernamesBorrar.isEmpty() ? Mono.just(0)
+                : repo.borrarLineas(usernamesBorrar.toArray(String[]::new), productosBorrar.toArray(Long[]::new));
+        Mono<Integer> escribir = idsEscribir.isEmpty() ? Mono.just(0)
+                : repo.escribirLineas(idsEscribir.toArray(Long[]::new), usernamesEscribir.toArray(String[]::new),
+                        productosEscribir.toArray(Long[]::new), cantidades.toArray(Integer[]::new));
+        return borrar.then(escribir)
+                .doOnSuccess(n -> trozo.forEach(p -> escrituras.marcar(p.carrito().username)))
+                .then();
+    }
+
+    // La escritura falló: lo tomado vuelve a quedar pendiente (las cantidades son absolutas, reintentar es seguro)
+    private void restaurar(Pendiente p) {
+        CarritoMem c = p.carrito();
+        synchronized (c) {
+            if (c.soltado) {
+                if (carritos.putIfAbsent(c.username, c) != null) {
+                    log.error("Cambios del carrito de {} perdidos: ya hay otra copia cargada", c.username);
+                    return;
+                }
+                c.soltado = false;
+            }
+            if (!c.pendiente()) c.primerCambio = System.nanoTime();
+            for (Carrito l : p.escribir()) {
+                if (c.lineas.containsKey(l.getProductoId())) c.sucios.add(l.getProductoId());
+            }
+            p.borrar().forEach((productoId, id) -> {
+                if (!c.lineas.containsKey(productoId)) c.borrados.putIfAbsent(productoId, id);
+            });
+        }
+    }
+
+    private void soltar(CarritoMem c) {
+        synchronized (c) {
+            c.soltado = true;
+            carritos.remove(c.username, c);
+        }
+    }
+}
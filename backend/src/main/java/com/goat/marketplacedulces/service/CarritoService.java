@@ -1,54 +1,217 @@
 // src/main/java/com/goat/marketplacedulces/service/CarritoService.java
 package com.goat.marketplacedulces.service;
 
+import com.goat.marketplacedulces.dto.CarritoLinea;
+import com.goat.marketplacedulces.dto.CarritoLoteRequest;
 import com.goat.marketplacedulces.model.Carrito;
 import com.goat.marketplacedulces.repository.CarritoRepository;
-import com.goat.marketplacedulces.repository.ProductoRepository;
-import com.goat.marketplacedulces.repository.UsuarioRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.postgresql.api.PostgresqlException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 @Service
-@RequiredArgsConstructor
 public class CarritoService {
 
+    private static final String USUARIO_NO_EXISTE = "Usuario no existe";
+
     private final CarritoRepository repo;
-    private final UsuarioRepository usuarioRepo;
-    private final ProductoRepository productoRepo;
+    private final CarritoBuffer buffer;
+    private final EscriturasRecientes escrituras;
+    private final Tendencias tendencias;
+    private final TransactionalOperator tx;
+    private final int maxItemsLote;
+
+    // carrito.agregar: cuántos POST /carrito acaban en la línea añadida y cuántos en 404
+    private final Counter agregados, productoNoExiste, usuarioNoExiste, fallidos;
+
+    public CarritoService(CarritoRepository repo,
+                          CarritoBuffer buffer,
+                          EscriturasRecientes escrituras,
+                          Tendencias tendencias,
+                          TransactionalOperator tx,
+                          MeterRegistry registry,
+                          @Value("${app.carrito.lote.max-items:500}") int maxItemsLote) {
+        this.repo = repo;
+        this.buffer = buffer;
+        this.escrituras = escrituras;
+        this.tendencias = tendencias;
+        this.tx = tx;
+        this.maxItemsLote = maxItemsLote;
+        this.agregados = contador(registry, "agregado");
+        this.productoNoExiste = contador(registry, "producto_no_existe");
+        this.usuarioNoExiste = contador(registry, "usuario_no_existe");
+        this.fallidos = contador(registry, "error");
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("carrito.agregar").tag("resultado", resultado)
+                .description("Resultado de añadir un producto al carrito")
+                .register(registry);
+    }
 
     public Mono<Carrito> agregar(String username, Long productoId, Integer cantidad) {
         int qty = (cantidad == null || cantidad <= 0) ? 1 : cantidad;
 
-        // 1) Usuario debe existir
-        return usuarioRepo.findByUsername(username)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no existe")))
-                .then(
-                        // 2) Producto debe existir
-                        productoRepo.existsById(productoId).flatMap(exists -> {
-                            if (!exists) {
-                                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no existe"));
-                            }
-                            // 3) Merge: si existe suma cantidad, si no crea
-                            return repo.findByUsernameAndProductoId(username, productoId)
-                                    .flatMap(item -> {
-                                        int nueva = (item.getCantidad() == null ? 0 : item.getCantidad()) + qty;
-                                        item.setCantidad(nueva);
-                                        return repo.save(item);
-                                    })
-                                    .switchIfEmpty(repo.save(new Carrito(null, username, productoId, qty)));
-                        })
-                );
+        // Con write-behind se suma en memoria y se escribe luego, agrupado
+        return buffer.agregar(username, productoId, qty)
+                .switchIfEmpty(Mono.defer(() -> agregarEnBd(username, productoId, qty)))
+                .doOnNext(c -> {
+                    agregados.increment();
+                    tendencias.registrar(productoId);
+                })
+                .doOnError(this::contarFallo);
+    }
+
+    private void contarFallo(Throwable e) {
+        if (e instanceof ResponseStatusException r && r.getStatusCode() == HttpStatus.NOT_FOUND) {
+            (USUARIO_NO_EXISTE.equals(r.getReason()) ? usuarioNoExiste : productoNoExiste).increment();
+        } else {
+            fallidos.increment();
+        }
+    }
+
+    private Mono<Carrito> agregarEnBd(String username, Long productoId, int qty) {
+        // Un único round-trip: INSERT ... ON CONFLICT DO UPDATE ... RETURNING.
+        // Si el usuario o el producto no existen salta la FK y la traducimos al 404 de siempre.
+        return repo.agregarOSumar(username, productoId, qty)
+                .doOnNext(c -> escrituras.marcar(username))
+                .onErrorMap(DataIntegrityViolationException.class, CarritoService::traducirFk);
     }
 
     public Flux<Carrito> verCarrito(String username) {
-        return repo.findByUsername(username);
+        if (!buffer.habilitado()) return escrituras.leer(username, "carrito", () -> repo.findByUsername(username));
+        return buffer.ver(username).flatMapMany(Flux::fromIterable);
+    }
+
+    /** Líneas con nombre, precio, stock, subtotal y total del carrito: una sola consulta. */
+    public Flux<CarritoLinea> verDetalle(String username) {
+        // Si había algo pendiente se acaba de escribir y ya cuenta como escritura reciente
+        return buffer.escribirPendiente(username)
+                .thenMany(escrituras.leer(username, "carrito.detalle", () -> repo.findDetalleByUsername(username)));
+    }
+
+    public Mono<Void> eliminar(String username, Long id) {
+        return buffer.eliminar(username, id)
+                .defaultIfEmpty(false)
+                .flatMap(enMemoria -> enMemoria
+                        ? Mono.<Void>empty()
+                        // Como en memoria: solo una línea del carrito de este usuario
+                        : buffer.enDirecto(username, repo.eliminarLineas(username, new Long[]{id}))
+                                .doFinally(s -> escrituras.marcar(username))
+                                .then());
+    }
+
+    public Mono<Void> vaciar(String username) {
+        return buffer.enDirecto(username, repo.vaciar(username))
+                .doFinally(s -> escrituras.marcar(username))
+                .then();
+    }
+
+    /**
+     * Aplica varios cambios al carrito en una transacción, con un statement multi-fila por tipo
+     * de operación, y devuelve el carrito resultante.
+     */
+    public Flux<Carrito> aplicarLote(String username, CarritoLoteRequest lote) {
+        // La transacción va dentro de enDirecto: la copia en memoria no se recarga antes del commit
+        return buffer.enDirecto(username, tx.transactional(lote(username, lote)))
+                .doFinally(s -> escrituras.marcar(username));
+    }
+
+    private Flux<Carrito> lote(String username, CarritoLoteRequest lote) {
+        return Flux.defer(() -> {
+            int total = lote.getEliminar().size() + lote.getFijar().size() + lote.getAgregar().size();
+            if (total > maxItemsLote) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Máximo " + maxItemsLote + " items por lote"));
+            }
+
+            Set<Long> eliminar = new LinkedHashSet<>();
+            for (Long productoId : lote.getEliminar()) {
+                eliminar.add(requerido(productoId));
+            }
+            // "fijar" repetido: gana el último. Cantidad <= 0 equivale a quitar la línea.
+            Map<Long, Integer> fijar = new LinkedHashMap<>();
+            for (CarritoLoteRequest.Item item : lote.getFijar()) {
+                Long productoId = requerido(item);
+                int cantidad = item.getCantidad() == null ? 0 : item.getCantidad();
+                if (cantidad <= 0) {
+                    fijar.remove(productoId);
+                    eliminar.add(productoId);
+                } else {
+                    fijar.put(productoId, cantidad);
+                    eliminar.remove(productoId);
+                }
+            }
+            // "agregar" repetido se suma antes de ir a la BD: ON CONFLICT no admite tocar la misma fila dos veces
+            Map<Long, Integer> agregar = new LinkedHashMap<>();
+            for (CarritoLoteRequest.Item item : lote.getAgregar()) {
+                Long productoId = requerido(item);
+                int qty = (item.getCantidad() == null || item.getCantidad() <= 0) ? 1 : item.getCantidad();
+                agregar.merge(productoId, qty, Integer::sum);
+            }
+
+            Mono<Integer> pasos = Mono.just(0);
+            if (lote.isVaciar()) pasos = pasos.then(repo.vaciar(username));
+            if (!eliminar.isEmpty()) pasos = pasos.then(repo.eliminarVarios(username, eliminar.toArray(Long[]::new)));
+            if (!fijar.isEmpty()) {
+                pasos = pasos.then(repo.fijarVarios(username,
+                        fijar.keySet().toArray(Long[]::new), fijar.values().toArray(Integer[]::new)));
+            }
+            if (!agregar.isEmpty()) {
+                pasos = pasos.then(repo.agregarVarios(username,
+                        agregar.keySet().toArray(Long[]::new), agregar.values().toArray(Integer[]::new)));
+            }
+            return pasos.thenMany(repo.findByUsername(username))
+                    .doOnComplete(() -> agregar.keySet().forEach(tendencias::registrar));
+        }).onErrorMap(DataIntegrityViolationException.class, CarritoService::traducirFk);
+    }
+
+    // Un item null en la lista ([null]) es como uno sin productoId
+    private static Long requerido(CarritoLoteRequest.Item item) {
+        return requerido(item == null ? null : item.getProductoId());
+    }
+
+    private static Long requerido(Long productoId) {
+        if (productoId == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "productoId es obligatorio");
+        }
+        return productoId;
+    }
+
+    static Throwable traducirFk(DataIntegrityViolationException ex) {
+        String constraint = constraint(ex);
+        if ("fk_carrito_user".equals(constraint)) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, USUARIO_NO_EXISTE);
+        }
+        if ("fk_carrito_producto".equals(constraint)) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no existe");
+        }
+        return ex; // otra violación: la maneja ApiExceptionHandler
     }
 
-    public Mono<Void> eliminar(Long id) {
-        return repo.deleteById(id);
+    private static String constraint(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof PostgresqlException pg) {
+                return pg.getErrorDetails().getConstraintName().orElse(null);
+            }
+        }
+        // Sin detalles del driver: el nombre de la constraint viene en el mensaje
+        String msg = String.valueOf(ex.getMessage());
+        if (msg.contains("fk_carrito_user")) return "fk_carrito_user";
+        if (msg.contains("fk_carrito_producto")) return "fk_carrito_producto";
+        return null;
     }
 }
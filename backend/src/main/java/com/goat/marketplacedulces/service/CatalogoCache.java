@@ -0,0 +1,242 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import com.goat.marketplacedulces.repository.Replica;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Catálogo en memoria. Las lecturas (/productos, /productos/buscar) salen del
+ * snapshot actual sin tocar la BD; cada cambio publica un snapshot nuevo de forma atómica
+ * y avisa a CatalogoEventos de qué productos cambiaron.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogoCache {
+
+    private static final Comparator<Producto> POR_ID =
+            Comparator.comparing(Producto::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ProductoRepository productoRepository;
+    private final ObjectMapper objectMapper;
+    private final CatalogoEventos eventos;
+
+    private final AtomicReference<CatalogoSnapshot> actual = new AtomicReference<>();
+    private final AtomicReference<Mono<CatalogoSnapshot>> cargaEnCurso = new AtomicReference<>();
+    private final AtomicLong versiones = new AtomicLong();
+
+    // Cambios de stock (checkout) pendientes de publicar: se agrupan para no reconstruir
+    // el snapshot completo por cada compra en una venta flash.
+    private static final Duration RETARDO_STOCK = Duration.ofMillis(100);
+    private final Map<Long, Integer> stockPendiente = new ConcurrentHashMap<>();
+    private final AtomicBoolean stockProgramado = new AtomicBoolean();
+
+    /** Snapshot vigente; si aún no hay ninguno, lo carga (una sola vez aunque pidan muchos). */
+    public Mono<CatalogoSnapshot> snapshot() {
+        CatalogoSnapshot s = actual.get();
+        return s != null ? Mono.just(s) : recargar();
+    }
+
+    /** Relee todo el catálogo de la BD. Las llamadas concurrentes comparten la misma carga. */
+    public Mono<CatalogoSnapshot> recargar() {
+        while (true) {
+            Mono<CatalogoSnapshot> enCurso = cargaEnCurso.get();
+            if (enCurso != null) return enCurso;
+
+            CatalogoSnapshot base = actual.get();
+            AtomicReference<Mono<CatalogoSnapshot>> propia = new AtomicReference<>();
+            // Los cambios posteriores llegan por aplicar()/actualizarStock(), no por releer: vale la réplica
+            Mono<CatalogoSnapshot> carga = Replica.leer(productoRepository.findAll())
+                    .collectList()
+                    .map(productos -> publicarCarga(base, productos))
+                    .doFinally(sig -> cargaEnCurso.compareAndSet(propia.get(), null))
+                    .cache();
+            propia.set(carga);
+            if (cargaEnCurso.compareAndSet(null, carga)) return carga;
+        }
+    }
+
+    /**
+     * Relee el catálogo de la primaria (no de la réplica, que puede no tener aún lo que otro nodo acaba de
+     * escribir). A diferencia de {@link #recargar}, si entretanto entra un cambio incremental vuelve a leer
+     * en vez de quedarse con el snapshot anterior, que no tendría lo escrito por el otro nodo.
+     */
+    public Mono<CatalogoSnapshot> recargarDesdePrimaria() {
+        Mono<CatalogoSnapshot> intento = Mono.defer(() -> {
+            CatalogoSnapshot base = actual.get();
+            return productoRepository.findAll().collectList()
+                    .mapNotNull(productos -> publicarSiNoCambio(base, productos));
+        });
+        return Flux.range(0, 3)
+                .concatMap(i -> intento)
+                .next()
+                .switchIfEmpty(Mono.defer(this::snapshot));
+    }
+
+    /** Incorpora (o reemplaza por id) un producto recién guardado sin releer la tabla. */
+    public void aplicar(Producto producto) {
+        aplicarVarios(List.of(producto));
+    }
+
+    /** Como {@link #aplicar}, con un único snapshot nuevo para todos (p.ej. tras una importación). */
+    public void aplicarVarios(List<Producto> nuevos) {
+        if (nuevos.isEmpty()) return;
+        // updateAndGet puede repetir la función: vale lo que dejó la última pasada
+        List<CatalogoEventos.Cambio> cambios = new ArrayList<>();
+        actual.updateAndGet(s -> {
+            cambios.clear();
+            if (s == null) return null; // aún no cargado: la primera lectura ya lo traerá de la BD
+            Map<Long, Producto> porId = new HashMap<>(nuevos.size() * 2);
+            for (Producto p : nuevos) porId.put(p.getId(), p);
+            List<Producto> productos = new ArrayList<>(s.productos().size() + nuevos.size());
+            for (Producto p : s.productos()) {
+                Producto nuevo = porId.remove(p.getId());
+                if (nuevo == null) {
+                    productos.add(p);
+                } else {
+                    productos.add(nuevo);
+                    diferencias(p, nuevo, cambios);
+                }
+            }
+            for (Producto p : porId.values()) { // los que no estaban
+                productos.add(p);
+                diferencias(null, p, cambios);
+            }
+            return construir(productos, s.indice().actualizar(nuevos), null);
+        });
+        eventos.publicar(cambios);
+    }
+
+    /** Registra el stock nuevo de un producto; se publica junto con otros en un snapshot poco después. */
+    public void actualizarStock(Long id, int stock) {
+        stockPendiente.put(id, stock);
+        if (stockProgramado.compareAndSet(false, true)) {
+            Mono.delay(RETARDO_STOCK).subscribe(t -> aplicarStockPendiente());
+        }
+    }
+
+    void aplicarStockPendiente() {
+        stockProgramado.set(false);
+        Map<Long, Integer> cambios = new HashMap<>();
+        for (Long id : stockPendiente.keySet()) {
+            Integer stock = stockPendiente.remove(id);
+            if (stock != null) cambios.put(id, stock);
+        }
+        if (cambios.isEmpty()) return;
+        List<Producto> cambiados = new ArrayList<>(cambios.size());
+        actual.updateAndGet(s -> {
+            cambiados.clear();
+            if (s == null) return null;
+            List<Producto> productos = new ArrayList<>(s.productos().size());
+            for (Producto p : s.productos()) {
+                Integer stock = cambios.get(p.getId());
+                if (stock == null || stock.equals(p.getStock())) {
+                    productos.add(p);
+                } else {
+                    Producto copia = conStock(p, stock);
+                    productos.add(copia);
+                    cambiados.add(copia);
+                }
+            }
+            if (cambiados.isEmpty()) return s; // ya estaba al día (p.ej. aviso de otro nodo repetido)
+            // Solo cambia el stock: mismas filas y nombres, el autocompletado sirve tal cual
+            return construir(productos, s.indice().actualizar(cambiados), s.autocompletado());
+        });
+        eventos.publicar(cambiados.stream().map(p -> new CatalogoEventos.Cambio(CatalogoEventos.STOCK, p)).toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        recargar().subscribe(
+                s -> log.info("Catálogo precargado: {} productos (v{})", s.productos().size(), s.version()),
+                e -> log.warn("No se pudo precargar el catálogo, se cargará en la primera petición: {}", e.toString()));
+    }
+
+    // Si mientras leíamos la BD alguien aplicó un cambio incremental, nos quedamos con ese
+    // snapshot: el nuestro pudo leerse antes de que el cambio se confirmara.
+    private CatalogoSnapshot publicarCarga(CatalogoSnapshot base, List<Producto> productos) {
+        CatalogoSnapshot nuevo = publicarSiNoCambio(base, productos);
+        return nuevo != null ? nuevo : actual.get();
+    }
+
+    // null si el snapshot ya no es base
+    private CatalogoSnapshot publicarSiNoCambio(CatalogoSnapshot base, List<Producto> productos) {
+        CatalogoSnapshot nuevo = construir(new ArrayList<>(productos), null, null);
+        if (!actual.compareAndSet(base, nuevo)) return null;
+        if (base != null) eventos.publicar(diferencias(base, nuevo)); // recarga tras perder avisos de otros nodos
+        return nuevo;
+    }
+
+    private static List<CatalogoEventos.Cambio> diferencias(CatalogoSnapshot antes, CatalogoSnapshot despues) {
+        Map<Long, Producto> previos = new HashMap<>();
+        for (Producto p : antes.productos()) previos.put(p.getId(), p);
+        List<CatalogoEventos.Cambio> cambios = new ArrayList<>();
+        for (Producto p : despues.productos()) diferencias(previos.get(p.getId()), p, cambios);
+        return cambios;
+    }
+
+    // Un evento por aspecto que cambió; lo que no es precio ni stock (nombre, tipo...) va como "actualizado"
+    private static void diferencias(Producto anterior, Producto nuevo, List<CatalogoEventos.Cambio> cambios) {
+        if (anterior == null) {
+            cambios.add(new CatalogoEventos.Cambio(CatalogoEventos.CREADO, nuevo));
+            return;
+        }
+        boolean precio = !Objects.equals(anterior.getPrecio(), nuevo.getPrecio());
+        boolean stock = !Objects.equals(anterior.getStock(), nuevo.getStock());
+        if (precio) cambios.add(new CatalogoEventos.Cambio(CatalogoEventos.PRECIO, nuevo));
+        if (stock) cambios.add(new CatalogoEventos.Cambio(CatalogoEventos.STOCK, nuevo));
+        if (!precio && !stock && !anterior.equals(nuevo)) {
+            cambios.add(new CatalogoEventos.Cambio(CatalogoEventos.ACTUALIZADO, nuevo));
+        }
+    }
+
+    // Los Producto del snapshot se comparten: nunca se modifican, se copian.
+    private static Producto conStock(Producto p, int stock) {
+        Producto copia = new Producto();
+        copia.setId(p.getId());
+        copia.setNombre(p.getNombre());
+        copia.setTipo(p.getTipo());
+        copia.setPaisOrigen(p.getPaisOrigen());
+        copia.setPrecio(p.getPrecio());
+        copia.setStock(stock);
+        return copia;
+    }
+
+    // indice/autocompletado: los del snapshot anterior ya al día con el cambio, o null para construirlos
+    private CatalogoSnapshot construir(List<Producto> productos, CatalogoIndice indice, Autocompletado autocompletado) {
+        productos.sort(POR_ID);
+        List<Producto> inmutable = List.copyOf(productos);
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(inmutable);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el catálogo", e);
+        }
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        return new CatalogoSnapshot(versiones.incrementAndGet(), inmutable, json, etag,
+                indice != null ? indice : CatalogoIndice.de(inmutable),
+                autocompletado != null ? autocompletado : Autocompletado.de(inmutable));
+    }
+}
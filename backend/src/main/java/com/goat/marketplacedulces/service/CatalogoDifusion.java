@@ -0,0 +1,143 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.NotificacionesPg;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lleva los cambios del catálogo de este nodo al resto por LISTEN/NOTIFY (canal "catalogo") y aplica
+ * los que llegan de otros nodos al CatalogoCache local, que a su vez los publica a sus clientes SSE.
+ * Sin esto, un producto creado en un nodo no aparecía en los demás hasta reiniciarlos.
+ *
+ * <p>Los cambios de stock se agrupan como en CatalogoCache: un NOTIFY cada 100 ms como mucho en una
+ * venta flash. Un aviso perdido (conexión LISTEN caída) se compensa releyendo el catálogo al reconectar.
+ */
+@Slf4j
+@Service
+public class CatalogoDifusion implements DisposableBean {
+
+    static final String CANAL = "catalogo";
+    private static final Duration RETARDO_STOCK = Duration.ofMillis(100);
+    // Entradas de stock por NOTIFY: ~20 bytes cada una, bajo el límite de 8000 bytes del payload
+    private static final int STOCK_POR_AVISO = 300;
+
+    /**
+     * Lo que viaja en el payload: un producto creado/modificado, un lote de stocks nuevos o, tras cambios
+     * demasiado grandes para un NOTIFY (una importación), la orden de releer el catálogo.
+     */
+    record Mensaje(String nodo, Producto producto, Map<Long, Integer> stock, boolean recargar) {
+    }
+
+    private final NotificacionesPg notificaciones;
+    private final CatalogoCache catalogo;
+    private final ObjectMapper objectMapper;
+    private final boolean habilitado;
+    private final Map<Long, Integer> stockPendiente = new ConcurrentHashMap<>();
+    private final AtomicBoolean stockProgramado = new AtomicBoolean();
+    private volatile Disposable escucha;
+
+    public CatalogoDifusion(NotificacionesPg notificaciones,
+                            CatalogoCache catalogo,
+                            ObjectMapper objectMapper,
+                            @Value("${app.catalogo.difusion.habilitado:true}") boolean habilitado) {
+        this.notificaciones = notificaciones;
+        this.catalogo = catalogo;
+        this.objectMapper = objectMapper;
+        this.habilitado = habilitado;
+    }
+
+    /** Producto creado o modificado en este nodo (ya aplicado al catálogo local). */
+    public void producto(Producto producto) {
+        if (habilitado) enviar(new Mensaje(notificaciones.nodo(), producto, null, false));
+    }
+
+    /** Muchos productos cambiados en este nodo: el resto relee el catálogo de la primaria. */
+    public void recargar() {
+        if (habilitado) enviar(new Mensaje(notificaciones.nodo(), null, null, true));
+    }
+
+    /** Stock nuevo de un producto tras una operación de este nodo; se envía agrupado poco después. */
+    public void stock(Long id, int stock) {
+        if (!habilitado) return;
+        stockPendiente.put(id, stock);
+        if (stockProgramado.compareAndSet(false, true)) {
+            Mono.delay(RETARDO_STOCK).subscribe(t -> enviarStockPendiente());
+        }
+    }
+
+    void enviarStockPendiente() {
+        stockProgramado.set(false);
+        Map<Long, Integer> lote = new HashMap<>();
+        for (Long id : stockPendiente.keySet()) {
+            Integer stock = stockPendiente.remove(id);
+            if (stock == null) continue;
+            lote.put(id, stock);
+            if (lote.size() == STOCK_POR_AVISO) {
+                enviar(new Mensaje(notificaciones.nodo(), null, lote, false));
+                lote = new HashMap<>();
+            }
+        }
+        if (!lote.isEmpty()) enviar(new Mensaje(notificaciones.nodo(), null, lote, false));
+    }
+
+    private void enviar(Mensaje mensaje) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(mensaje);
+        } catch (Exception e) {
+            log.warn("No se pudo serializar el aviso de catálogo: {}", e.toString());
+            return;
+        }
+        // Si falla, los otros nodos lo verán en su próxima recarga: no se hace fallar la petición
+        notificaciones.notificar(CANAL, payload)
+                .subscribe(null, e -> log.warn("No se pudo avisar del cambio de catálogo: {}", e.toString()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void escuchar() {
+        if (!habilitado) return;
+        escucha = notificaciones.escuchar(CANAL).subscribe(this::recibir);
+    }
+
+    void recibir(NotificacionesPg.Aviso aviso) {
+        if (aviso.esHueco()) {
+            catalogo.recargarDesdePrimaria()
+                    .subscribe(null, e -> log.warn("No se pudo recargar el catálogo: {}", e.toString()));
+            return;
+        }
+        Mensaje m;
+        try {
+            m = objectMapper.readValue(aviso.payload(), Mensaje.class);
+        } catch (Exception e) {
+            log.warn("Aviso de catálogo no válido: {}", e.toString());
+            return;
+        }
+        if (notificaciones.nodo().equals(m.nodo())) return; // el propio: ya aplicado al hacerlo
+        if (m.recargar()) {
+            catalogo.recargarDesdePrimaria()
+                    .subscribe(null, e -> log.warn("No se pudo recargar el catálogo: {}", e.toString()));
+        }
+        if (m.producto() != null) catalogo.aplicar(m.producto());
+        if (m.stock() != null) m.stock().forEach(catalogo::actualizarStock);
+    }
+
+    @Override
+    public void destroy() {
+        Disposable d = escucha;
+        if (d != null) d.dispose();
+    }
+}
@@ -0,0 +1,98 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cambios del catálogo (producto nuevo, cambio de precio, cambio de stock) para GET /productos/stream.
+ *
+ * <p>Un único publicador caliente para todos los clientes: cada evento se serializa una vez y el mismo
+ * {@link ServerSentEvent} se reparte a todas las conexiones. Cada suscriptor tiene su propio buffer
+ * acotado; si un cliente lento lo llena se descartan sus eventos más antiguos (y solo los suyos): el
+ * estado más reciente de un producto es lo que importa, y los demás clientes no esperan por él.
+ */
+@Slf4j
+@Service
+public class CatalogoEventos {
+
+    public static final String CREADO = "creado";
+    public static final String PRECIO = "precio";
+    public static final String STOCK = "stock";
+    public static final String ACTUALIZADO = "actualizado";
+
+    /** Un cambio de un producto; {@code producto} es su estado completo tras el cambio. */
+    public record Cambio(String tipo, Producto producto) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().multicast().directBestEffort();
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicInteger suscriptores = new AtomicInteger();
+    private final int buffer;
+    private final Duration latido;
+    private final Counter descartados;
+
+    public CatalogoEventos(ObjectMapper objectMapper,
+                           MeterRegistry registry,
+                           @Value("${app.catalogo.eventos.buffer:256}") int buffer,
+                           @Value("${app.catalogo.eventos.latido:20s}") Duration latido) {
+        this.objectMapper = objectMapper;
+        this.buffer = Math.max(1, buffer);
+        this.latido = latido;
+        this.descartados = Counter.builder("catalogo.eventos.descartados")
+                .description("Eventos de catálogo descartados por clientes SSE que no leen a tiempo")
+                .register(registry);
+        Gauge.builder("catalogo.eventos.suscriptores", suscriptores, AtomicInteger::get)
+                .description("Conexiones abiertas a /productos/stream")
+                .register(registry);
+    }
+
+    /** Publica los cambios a los clientes conectados; sin clientes no cuesta más que la serialización. */
+    public synchronized void publicar(List<Cambio> cambios) {
+        // synchronized: el sink no admite emisiones concurrentes y los cambios llegan de varios hilos
+        if (cambios.isEmpty() || sink.currentSubscriberCount() == 0) return;
+        for (Cambio c : cambios) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(c.producto());
+            } catch (JsonProcessingException e) {
+                log.warn("No se pudo serializar el evento de {}: {}", c.producto().getId(), e.toString());
+                continue;
+            }
+            sink.tryEmitNext(ServerSentEvent.builder(json)
+                    .id(Long.toString(secuencia.incrementAndGet()))
+                    .event(c.tipo())
+                    .build());
+        }
+    }
+
+    /**
+     * Flujo para un cliente: los cambios desde que se conecta más un comentario periódico para que
+     * proxies y balanceadores no cierren la conexión por inactividad.
+     */
+    public Flux<ServerSentEvent<String>> suscribir() {
+        Flux<ServerSentEvent<String>> latidos = Flux.interval(latido)
+                .map(i -> ServerSentEvent.<String>builder().comment("latido").build());
+        // El buffer va detrás del merge: es lo único que retiene eventos para este cliente
+        return Flux.merge(sink.asFlux(), latidos)
+                .onBackpressureBuffer(buffer, descartado -> descartados.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(s -> suscriptores.incrementAndGet())
+                .doFinally(s -> suscriptores.decrementAndGet());
+    }
+}
@@ -0,0 +1,551 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Índice columnar del catálogo para las búsquedas combinadas. Las filas siguen el orden por id del
+ * snapshot; hay un BitSet por cada tipo y cada país, otro con los productos con stock, la columna de
+ * precios y dos permutaciones de filas (por precio y por nombre). Un filtro es un AND de bitsets más
+ * un rango sobre la permutación de precios: no hay que recorrer objetos ni ir a la BD.
+ *
+ * <p>Es inmutable. {@link #actualizar} devuelve un índice nuevo que copia las columnas y solo clona
+ * los bitsets (y recalcula las facetas) de los valores que cambian, en vez de reconstruirlo entero.
+ */
+public final class CatalogoIndice {
+
+    public enum Orden {
+        ID, PRECIO, PRECIO_DESC, NOMBRE;
+
+        /** "id", "precio", "-precio" o "nombre"; null si no se reconoce. */
+        public static Orden de(String valor) {
+            if (valor == null || valor.isBlank()) return ID;
+            return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+                case "id" -> ID;
+                case "precio" -> PRECIO;
+                case "-precio" -> PRECIO_DESC;
+                case "nombre" -> NOMBRE;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Una página de resultados, el total de productos que cumplen el filtro (null en las páginas pedidas
+     * por cursor, que no lo calculan) y el cursor de la página siguiente (null si es la última).
+     */
+    public record Resultado(List<Producto> productos, Integer total, Cursor siguiente) {
+    }
+
+    /**
+     * Posición para paginar por clave (keyset): el orden y la clave del último producto de una página.
+     * La página siguiente empieza justo después de esa clave, así que no se salta ni repite productos
+     * aunque entre página y página se creen otros, y no hay que recorrer lo anterior como con offset.
+     */
+    public record Cursor(Orden orden, long id, int precio, String nombre) {
+
+        static Cursor de(Orden orden, Producto p) {
+            return new Cursor(orden, p.getId() == null ? Long.MAX_VALUE : p.getId(), CatalogoIndice.precio(p),
+                    orden == Orden.NOMBRE ? CatalogoIndice.nombre(p) : null);
+        }
+
+        /** Texto opaco para el cliente (base64url); su contenido no forma parte de la API. */
+        public String codificar() {
+            String texto = orden.name() + ":" + id + ":" + precio + (nombre != null ? ":" + nombre : "");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** Lanza IllegalArgumentException si el texto no es un cursor. */
+        public static Cursor leer(String texto) {
+            String[] partes = new String(Base64.getUrlDecoder().decode(texto), StandardCharsets.UTF_8).split(":", 4);
+            if (partes.length < 3) throw new IllegalArgumentException("cursor incompleto");
+            Orden orden = Orden.valueOf(partes[0]);
+            String nombre = partes.length == 4 ? partes[3] : null;
+            if ((orden == Orden.NOMBRE) != (nombre != null)) throw new IllegalArgumentException("cursor incompleto");
+            return new Cursor(orden, Long.parseLong(partes[1]), Integer.parseInt(partes[2]), nombre);
+        }
+    }
+
+    // Por encima de este número de filas movidas sale más a cuenta reordenar entero
+    private static final int MAX_REINSERCIONES = 64;
+
+    private final Producto[] filas;
+    private final long[] ids;
+    private final int[] precios;
+    private final Map<String, BitSet> porTipo;
+    private final Map<String, BitSet> porPais;
+    private final BitSet conStock;
+    private final int[] ordenPrecio;
+    private final int[] ordenNombre;
+    // Facetas sin filtro, mantenidas con cada cambio: solo se recalculan los valores tocados
+    private final Map<String, Facetas.Faceta> facetasTipo;
+    private final Map<String, Facetas.Faceta> facetasPais;
+
+    private CatalogoIndice(Producto[] filas, long[] ids, int[] precios, Map<String, BitSet> porTipo,
+                           Map<String, BitSet> porPais, BitSet conStock, int[] ordenPrecio, int[] ordenNombre,
+                           Map<String, Facetas.Faceta> facetasTipo, Map<String, Facetas.Faceta> facetasPais) {
+        this.filas = filas;
+        this.ids = ids;
+        this.precios = precios;
+        this.porTipo = porTipo;
+        this.porPais = porPais;
+        this.conStock = conStock;
+        this.ordenPrecio = ordenPrecio;
+        this.ordenNombre = ordenNombre;
+        this.facetasTipo = facetasTipo;
+        this.facetasPais = facetasPais;
+    }
+
+    /** Índice completo sobre productos ya ordenados por id. */
+    public static CatalogoIndice de(List<Producto> productosPorId) {
+        int n = productosPorId.size();
+        Producto[] filas = productosPorId.toArray(Producto[]::new);
+        long[] ids = new long[n];
+        int[] precios = new int[n];
+        Map<String, BitSet> porTipo = new HashMap<>();
+        Map<String, BitSet> porPais = new HashMap<>();
+        BitSet conStock = new BitSet(n);
+        for (int fila = 0; fila < n; fila++) {
+            Producto p = filas[fila];
+            ids[fila] = p.getId() == null ? Long.MAX_VALUE : p.getId();
+            precios[fila] = precio(p);
+            if (p.getTipo() != null) porTipo.computeIfAbsent(p.getTipo(), k -> new BitSet(n)).set(fila);
+            if (p.getPaisOrigen() != null) porPais.computeIfAbsent(p.getPaisOrigen(), k -> new BitSet(n)).set(fila);
+            if (stock(p) > 0) conStock.set(fila);
+        }
+        return new CatalogoIndice(filas, ids, precios, porTipo, porPais, conStock,
+                ordenar(n, porPrecio(precios)), ordenar(n, porNombre(filas)),
+                contar(porTipo, null, conStock, precios, porTipo.keySet()),
+                contar(porPais, null, conStock, precios, porPais.keySet()));
+    }
+
+    public int tamano() {
+        return filas.length;
+    }
+
+    /** Aplica altas y cambios (mismo id = reemplazo). Las altas con id mayor que el último se añaden al final. */
+    public CatalogoIndice actualizar(Collection<Producto> cambios) {
+        Map<Long, Producto> unicos = new LinkedHashMap<>();
+        for (Producto p : cambios) unicos.put(p.getId(), p);
+
+        int n = filas.length;
+        List<Producto> altas = new ArrayList<>();
+        List<Producto> modificados = new ArrayList<>();
+        for (Producto p : unicos.values()) {
+            if (p.getId() != null && fila(p.getId()) >= 0) modificados.add(p);
+            else altas.add(p);
+        }
+        altas.sort(Comparator.comparing(Producto::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        if (!altas.isEmpty() && (altas.get(0).getId() == null || (n > 0 && altas.get(0).getId() <= ids[n - 1]))) {
+            // Un alta en medio desplazaría filas: se reconstruye
+            List<Producto> todos = new ArrayList<>(Arrays.asList(filas));
+            todos.replaceAll(p -> unicos.getOrDefault(p.getId(), p));
+            todos.addAll(altas);
+            todos.sort(Comparator.comparing(Producto::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+            return de(todos);
+        }
+
+        int total = n + altas.size();
+        Producto[] nFilas = Arrays.copyOf(filas, total);
+        long[] nIds = Arrays.copyOf(ids, total);
+        int[] nPrecios = Arrays.copyOf(precios, total);
+        Map<String, BitSet> nTipo = new HashMap<>(porTipo);
+        Map<String, BitSet> nPais = new HashMap<>(porPais);
+        Set<String> tiposClonados = new HashSet<>();
+        Set<String> paisesClonados = new HashSet<>();
+        BitSet nStock = (BitSet) conStock.clone();
+        Set<Integer> movidasPrecio = new HashSet<>();
+        Set<Integer> movidasNombre = new HashSet<>();
+
+        for (Producto p : modificados) {
+            int fila = fila(p.getId());
+            Producto viejo = filas[fila];
+            if (!Objects.equals(viejo.getTipo(), p.getTipo())) {
+                quitar(nTipo, tiposClonados, viejo.getTipo(), fila);
+                poner(nTipo, tiposClonados, p.getTipo(), fila, total);
+            }
+            if (!Objects.equals(viejo.getPaisOrigen(), p.getPaisOrigen())) {
+                quitar(nPais, paisesClonados, viejo.getPaisOrigen(), fila);
+                poner(nPais, paisesClonados, p.getPaisOrigen(), fila, total);
+            }
+            nStock.set(fila, stock(p) > 0);
+            if (precio(p) != precios[fila]) movidasPrecio.add(fila);
+            if (!Objects.equals(viejo.getNombre(), p.getNombre())) movidasNombre.add(fila);
+            nFilas[fila] = p;
+            nPrecios[fila] = precio(p);
+        }
+        for (int i = 0; i < altas.size(); i++) {
+            int fila = n + i;
+            Producto p = altas.get(i);
+            nFilas[fila] = p;
+            nIds[fila] = p.getId();
+            nPrecios[fila] = precio(p);
+            poner(nTipo, tiposClonados, p.getTipo(), fila, total);
+            poner(nPais, paisesClonados, p.getPaisOrigen(), fila, total);
+            nStock.set(fila, stock(p) > 0);
+            movidasPrecio.add(fila);
+            movidasNombre.add(fila);
+        }
+
+        // Facetas: cambian los valores con filas tocadas (altas, cambios de tipo/país, stock o precio)
+        Set<String> tiposTocados = new HashSet<>(tiposClonados);
+        Set<String> paisesTocados = new HashSet<>(paisesClonados);
+        for (Producto p : unicos.values()) {
+            if (p.getTipo() != null) tiposTocados.add(p.getTipo());
+            if (p.getPaisOrigen() != null) paisesTocados.add(p.getPaisOrigen());
+        }
+        return new CatalogoIndice(nFilas, nIds, nPrecios, nTipo, nPais, nStock,
+                reordenar(ordenPrecio, movidasPrecio, total, porPrecio(nPrecios)),
+                reordenar(ordenNombre, movidasNombre, total, porNombre(nFilas)),
+                recontar(facetasTipo, nTipo, nStock, nPrecios, tiposTocados),
+                recontar(facetasPais, nPais, nStock, nPrecios, paisesTocados));
+    }
+
+    /** Filtra, ordena y pagina. */
+    public Resultado buscar(FiltroProductos filtro, Orden orden, int offset, int limite) {
+        BitSet candidatos = candidatos(filtro);
+        int min = filtro.precioMin() == null ? Integer.MIN_VALUE : filtro.precioMin();
+        int max = filtro.precioMax() == null ? Integer.MAX_VALUE : filtro.precioMax();
+        int n = filas.length;
+
+        Recolector r = new Recolector(offset, limite);
+        switch (orden) {
+            case ID -> {
+                if (candidatos == null) {
+                    for (int fila = 0; fila < n; fila++) {
+                        if (precios[fila] >= min && precios[fila] <= max) r.add(filas[fila]);
+                    }
+                } else {
+                    for (int fila = candidatos.nextSetBit(0); fila >= 0; fila = candidatos.nextSetBit(fila + 1)) {
+                        if (precios[fila] >= min && precios[fila] <= max) r.add(filas[fila]);
+                    }
+                }
+            }
+            case PRECIO, PRECIO_DESC -> {
+                // Rango [desde, hasta) de la permutación por precio: solo se miran las filas que caen dentro
+                int desde = primeroConPrecio(min);
+                int hasta = primeroConPrecioMayor(max);
+                if (orden == Orden.PRECIO) {
+                    for (int i = desde; i < hasta; i++) {
+                        int fila = ordenPrecio[i];
+                        if (candidatos == null || candidatos.get(fila)) r.add(filas[fila]);
+                    }
+                } else {
+                    for (int i = hasta - 1; i >= desde; i--) {
+                        int fila = ordenPrecio[i];
+                        if (candidatos == null || candidatos.get(fila)) r.add(filas[fila]);
+                    }
+                }
+            }
+            case NOMBRE -> {
+                for (int fila : ordenNombre) {
+                    if ((candidatos == null || candidatos.get(fila)) && precios[fila] >= min && precios[fila] <= max) {
+                        r.add(filas[fila]);
+                    }
+                }
+            }
+        }
+        Cursor siguiente = r.total > offset + r.pagina.size() && !r.pagina.isEmpty()
+                ? Cursor.de(orden, r.pagina.get(r.pagina.size() - 1)) : null;
+        return new Resultado(List.copyOf(r.pagina), r.total, siguiente);
+    }
+
+    /**
+     * Página que sigue a {@code desde}, en su mismo orden. Se coloca con búsqueda binaria sobre la
+     * permutación del orden y recorre solo hasta llenar la página: el coste no crece con lo ya paginado.
+     */
+    public Resultado buscarDesde(FiltroProductos filtro, Cursor desde, int limite) {
+        BitSet candidatos = candidatos(filtro);
+        int min = filtro.precioMin() == null ? Integer.MIN_VALUE : filtro.precioMin();
+        int max = filtro.precioMax() == null ? Integer.MAX_VALUE : filtro.precioMax();
+        int[] permutacion = switch (desde.orden()) {
+            case ID -> null; // las filas ya van por id
+            case PRECIO, PRECIO_DESC -> ordenPrecio;
+            case NOMBRE -> ordenNombre;
+        };
+        int lo = 0, hi = filas.length;
+        if (permutacion == ordenPrecio) {
+            lo = primeroConPrecio(min);
+            hi = primeroConPrecioMayor(max);
+        }
+
+        List<Producto> pagina = new ArrayList<>();
+        boolean hayMas = false;
+        if (desde.orden() == Orden.PRECIO_DESC) {
+            for (int i = posicion(permutacion, desde, lo, hi, false) - 1; i >= lo && !hayMas; i--) {
+                hayMas = recoger(pagina, permutacion[i], candidatos, min, max, limite);
+            }
+        } else {
+            for (int i = posicion(permutacion, desde, lo, hi, true); i < hi && !hayMas; i++) {
+                hayMas = recoger(pagina, permutacion == null ? i : permutacion[i], candidatos, min, max, limite);
+            }
+        }
+        Cursor siguiente = hayMas ? Cursor.de(desde.orden(), pagina.get(pagina.size() - 1)) : null;
+        return new Resultado(List.copyOf(pagina), null, siguiente);
+    }
+
+    // Añade la fila si cumple el filtro; true si ya no cabía (hay al menos una más tras la página)
+    private boolean recoger(List<Producto> pagina, int fila, BitSet candidatos, int min, int max, int limite) {
+        if ((candidatos != null && !candidatos.get(fila)) || precios[fila] < min || precios[fila] > max) return false;
+        if (pagina.size() == limite) return true;
+        pagina.add(filas[fila]);
+        return false;
+    }
+
+    // Primera posición de [lo, hi) cuya clave es mayor (o mayor o igual) que la del cursor
+    private int posicion(int[] permutacion, Cursor cursor, int lo, int hi, boolean estricto) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparar(permutacion == null ? mid : permutacion[mid], cursor);
+            if (cmp < 0 || (estricto && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Mismo criterio que las permutaciones: la clave del orden y, a igualdad, el id
+    private int comparar(int fila, Cursor cursor) {
+        int c = switch (cursor.orden()) {
+            case ID -> 0;
+            case PRECIO, PRECIO_DESC -> Integer.compare(precios[fila], cursor.precio());
+            case NOMBRE -> String.CASE_INSENSITIVE_ORDER.compare(nombre(filas[fila]), cursor.nombre());
+        };
+        return c != 0 ? c : Long.compare(ids[fila], cursor.id());
+    }
+
+    /**
+     * Conteos por tipo y país dentro del filtro. Sin filtro salen ya calculados; con filtro son ANDs de
+     * bitsets (más el rango de precio como bitset) y un recorrido de las filas de cada valor.
+     */
+    public Facetas facetas(FiltroProductos filtro) {
+        int n = filas.length;
+        if (filtro.equals(FiltroProductos.TODOS)) {
+            return new Facetas(n, conStock.cardinality(),
+                    n == 0 ? null : precios[ordenPrecio[0]], n == 0 ? null : precios[ordenPrecio[n - 1]],
+                    facetasTipo, facetasPais);
+        }
+        BitSet rango = rangoPrecio(filtro);
+        BitSet stock = filtro.soloConStock() ? conStock : null;
+        BitSet sinTipo = candidatos(new FiltroProductos(null, filtro.pais(), null, null, false));
+        BitSet sinPais = candidatos(new FiltroProductos(filtro.tipo(), null, null, null, false));
+        BitSet todo = candidatos(filtro);
+
+        Facetas.Faceta totales = faceta(interseccion(todo, rango, stock, n), conStock, precios);
+        return new Facetas(totales.total(), totales.conStock(), totales.precioMin(), totales.precioMax(),
+                contar(porTipo, interseccion(sinTipo, rango, stock, n), conStock, precios, porTipo.keySet()),
+                contar(porPais, interseccion(sinPais, rango, stock, n), conStock, precios, porPais.keySet()));
+    }
+
+    // Filas dentro del rango de precio del filtro (null = sin rango)
+    private BitSet rangoPrecio(FiltroProductos filtro) {
+        if (filtro.precioMin() == null && filtro.precioMax() == null) return null;
+        int desde = primeroConPrecio(filtro.precioMin() == null ? Integer.MIN_VALUE : filtro.precioMin());
+        int hasta = primeroConPrecioMayor(filtro.precioMax() == null ? Integer.MAX_VALUE : filtro.precioMax());
+        BitSet bits = new BitSet(filas.length);
+        for (int i = desde; i < hasta; i++) bits.set(ordenPrecio[i]);
+        return bits;
+    }
+
+    private static BitSet interseccion(BitSet a, BitSet rango, BitSet stock, int n) {
+        BitSet r = a != null ? a : new BitSet(n);
+        if (a == null) r.set(0, n);
+        if (rango != null) r.and(rango);
+        if (stock != null) r.and(stock);
+        return r;
+    }
+
+    // Una faceta por clave; ambito = null cuenta todas las filas del valor
+    private static Map<String, Facetas.Faceta> contar(Map<String, BitSet> porValor, BitSet ambito, BitSet conStock,
+                                                     int[] precios, Set<String> claves) {
+        Map<String, Facetas.Faceta> resultado = new TreeMap<>();
+        for (String clave : claves) {
+            BitSet bits = porValor.get(clave);
+            if (bits == null) continue;
+            if (ambito != null) {
+                bits = (BitSet) bits.clone();
+                bits.and(ambito);
+            }
+            resultado.put(clave, faceta(bits, conStock, precios));
+        }
+        return Collections.unmodifiableMap(resultado);
+    }
+
+    private static Map<String, Facetas.Faceta> recontar(Map<String, Facetas.Faceta> anteriores, Map<String, BitSet> porValor,
+                                                       BitSet conStock, int[] precios, Set<String> tocados) {
+        if (tocados.isEmpty()) return anteriores;
+        Map<String, Facetas.Faceta> resultado = new TreeMap<>(anteriores);
+        resultado.keySet().removeAll(tocados);
+        resultado.putAll(contar(porValor, null, conStock, precios, tocados));
+        return Collections.unmodifiableMap(resultado);
+    }
+
+    private static Facetas.Faceta faceta(BitSet bits, BitSet conStock, int[] precios) {
+        int total = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int fila = bits.nextSetBit(0); fila >= 0; fila = bits.nextSetBit(fila + 1)) {
+            total++;
+            min = Math.min(min, precios[fila]);
+            max = Math.max(max, precios[fila]);
+        }
+        BitSet stock = (BitSet) bits.clone();
+        stock.and(conStock);
+        return new Facetas.Faceta(total, stock.cardinality(), total == 0 ? null : min, total == 0 ? null : max);
+    }
+
+    // Filas que cumplen tipo, país y stock (null = todas). El precio se comprueba aparte.
+    private BitSet candidatos(FiltroProductos filtro) {
+        BitSet resultado = null;
+        if (filtro.tipo() != null) resultado = and(resultado, porTipo.get(filtro.tipo()));
+        if (filtro.pais() != null) resultado = and(resultado, porPais.get(filtro.pais()));
+        if (filtro.soloConStock()) resultado = and(resultado, conStock);
+        return resultado;
+    }
+
+    private static BitSet and(BitSet acumulado, BitSet otro) {
+        if (otro == null) return new BitSet();
+        if (acumulado == null) return (BitSet) otro.clone();
+        acumulado.and(otro);
+        return acumulado;
+    }
+
+    private static final class Recolector {
+        final int offset;
+        final int limite;
+        final List<Producto> pagina = new ArrayList<>();
+        int total;
+
+        Recolector(int offset, int limite) {
+            this.offset = offset;
+            this.limite = limite;
+        }
+
+        void add(Producto p) {
+            if (total >= offset && pagina.size() < limite) pagina.add(p);
+            total++;
+        }
+    }
+
+    // --- auxiliares ---
+
+    private int fila(long id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    private int primeroConPrecio(int min) {
+        int lo = 0, hi = ordenPrecio.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (precios[ordenPrecio[mid]] < min) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int primeroConPrecioMayor(int max) {
+        int lo = 0, hi = ordenPrecio.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (precios[ordenPrecio[mid]] <= max) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static void quitar(Map<String, BitSet> mapa, Set<String> clonados, String clave, int fila) {
+        if (clave == null) return;
+        BitSet bits = editable(mapa, clonados, clave, 0);
+        bits.clear(fila);
+        if (bits.isEmpty()) mapa.remove(clave);
+    }
+
+    private static void poner(Map<String, BitSet> mapa, Set<String> clonados, String clave, int fila, int total) {
+        if (clave == null) return;
+        editable(mapa, clonados, clave, total).set(fila);
+    }
+
+    // Los bitsets del índice anterior se comparten: se clonan la primera vez que se tocan
+    private static BitSet editable(Map<String, BitSet> mapa, Set<String> clonados, String clave, int total) {
+        BitSet bits = mapa.get(clave);
+        if (clonados.add(clave)) {
+            bits = bits == null ? new BitSet(total) : (BitSet) bits.clone();
+            mapa.put(clave, bits);
+        } else if (bits == null) { // se vació y se quitó en este mismo cambio
+            bits = new BitSet(total);
+            mapa.put(clave, bits);
+        }
+        return bits;
+    }
+
+    private interface ComparadorFilas {
+        int comparar(int a, int b);
+    }
+
+    private static ComparadorFilas porPrecio(int[] precios) {
+        // A igual precio, por fila (= por id): orden total y estable entre índices
+        return (a, b) -> precios[a] != precios[b] ? Integer.compare(precios[a], precios[b]) : Integer.compare(a, b);
+    }
+
+    private static ComparadorFilas porNombre(Producto[] filas) {
+        return (a, b) -> {
+            int c = String.CASE_INSENSITIVE_ORDER.compare(nombre(filas[a]), nombre(filas[b]));
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+    }
+
+    private static int[] ordenar(int n, ComparadorFilas cmp) {
+        return IntStream.range(0, n).boxed().sorted(cmp::comparar).mapToInt(Integer::intValue).toArray();
+    }
+
+    // Saca las filas movidas de la permutación y las vuelve a meter con búsqueda binaria
+    private static int[] reordenar(int[] orden, Set<Integer> movidas, int total, ComparadorFilas cmp) {
+        if (movidas.isEmpty()) return orden;
+        if (movidas.size() > MAX_REINSERCIONES) return ordenar(total, cmp);
+
+        int[] resultado = new int[total];
+        int n = 0;
+        for (int fila : orden) {
+            if (!movidas.contains(fila)) resultado[n++] = fila;
+        }
+        for (int fila : movidas) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cmp.comparar(resultado[mid], fila) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            System.arraycopy(resultado, lo, resultado, lo + 1, n - lo);
+            resultado[lo] = fila;
+            n++;
+        }
+        return resultado;
+    }
+
+    private static int precio(Producto p) {
+        return p.getPrecio() == null ? 0 : p.getPrecio();
+    }
+
+    private static int stock(Producto p) {
+        return p.getStock() == null ? 0 : p.getStock();
+    }
+
+    private static String nombre(Producto p) {
+        return p.getNombre() == null ? "" : p.getNombre();
+    }
+}
@@ -0,0 +1,33 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+
+import java.util.List;
+
+/**
+ * Foto inmutable del catálogo: lista ordenada por id, el JSON ya serializado, su ETag, el índice
+ * para las búsquedas y el de autocompletado. Los {@link Producto} se comparten entre peticiones,
+ * así que NO deben mutarse.
+ */
+public record CatalogoSnapshot(long version, List<Producto> productos, byte[] json, String etag,
+                               CatalogoIndice indice, Autocompletado autocompletado) {
+
+    public CatalogoSnapshot(long version, List<Producto> productos, byte[] json, String etag) {
+        this(version, productos, json, etag, CatalogoIndice.de(productos), Autocompletado.de(productos));
+    }
+
+    /** Producto con ese id o null (búsqueda binaria: la lista está ordenada por id). */
+    public Producto buscar(Long id) {
+        if (id == null) return null;
+        int lo = 0, hi = productos.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Long actual = productos.get(mid).getId();
+            int cmp = actual == null ? 1 : actual.compareTo(id);
+            if (cmp == 0) return productos.get(mid);
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.goat.marketplacedulces.service;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de tokens ya verificados: firma del JWT -> claims.
+ * Acotada por tamaño y por el "exp" de cada token; lecturas y escrituras sin locks (ConcurrentHashMap).
+ */
+class ClaimsCache {
+
+    private record Entrada(String token, Claims claims, long expiraEn) {
+    }
+
+    private static final long PURGA_CADA_MS = 1_000;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final int maxEntradas;
+    private volatile long ultimaPurga;
+
+    ClaimsCache(int maxEntradas) {
+        this.maxEntradas = maxEntradas;
+    }
+
+    /** Claims del token si ya se verificó y no ha expirado; null si hay que parsearlo. */
+    Claims get(String token, long ahora) {
+        String firma = firma(token);
+        Entrada e = firma != null ? entradas.get(firma) : null;
+        // Misma firma con otro header/payload = token manipulado: que lo rechace el parser
+        if (e == null || !e.token().equals(token)) {
+            fallos.increment();
+            return null;
+        }
+        if (e.expiraEn() <= ahora) {
+            entradas.remove(firma, e);
+            fallos.increment();
+            return null;
+        }
+        aciertos.increment();
+        return e.claims();
+    }
+
+    void put(String token, Claims claims, long ahora) {
+        String firma = firma(token);
+        Date exp = claims.getExpiration();
+        if (firma == null || exp == null || maxEntradas <= 0) return;
+        if (entradas.size() >= maxEntradas && !purgar(ahora)) return; // llena de tokens vigentes: no cacheamos
+        entradas.put(firma, new Entrada(token, claims, exp.getTime()));
+    }
+
+    long aciertos() {
+        return aciertos.sum();
+    }
+
+    long fallos() {
+        return fallos.sum();
+    }
+
+    int tamano() {
+        return entradas.size();
+    }
+
+    // Quita los expirados como mucho una vez por segundo; true si quedó sitio.
+    private boolean purgar(long ahora) {
+        if (ahora - ultimaPurga >= PURGA_CADA_MS) {
+            ultimaPurga = ahora;
+            entradas.values().removeIf(e -> e.expiraEn() <= ahora);
+        }
+        return entradas.size() < maxEntradas;
+    }
+
+    private static String firma(String token) {
+        if (token == null) return null;
+        int punto = token.lastIndexOf('.');
+        return punto >= 0 && punto < token.length() - 1 ? token.substring(punto + 1) : null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.goat.marketplacedulces.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-min sketch sobre claves long, partido en tramos que se vacían por separado (para ventanas
+ * deslizantes). {@link #estimar} nunca se queda corto; se pasa como mucho en ~e/ancho del total sumado en
+ * ese tramo, con probabilidad 1 - e^-filas. Memoria fija: tramos × filas × ancho enteros.
+ *
+ * <p>Sumar son {@code filas} incrementos atómicos sin bloqueos ni reservar memoria. Vaciar un tramo
+ * mientras otro hilo suma en él puede dejar alguno de esos incrementos: quien rota los tramos vacía el
+ * siguiente antes de pasar a escribir en él.
+ */
+final class ConteoMinimo {
+
+    static final int FILAS = 4;
+
+    private final AtomicIntegerArray contadores;
+    private final int tramos;
+    private final int mascara;
+
+    /** {@code ancho} se redondea a la potencia de 2 siguiente. */
+    ConteoMinimo(int tramos, int ancho) {
+        if (tramos < 1 || ancho < 1) throw new IllegalArgumentException("tramos y ancho deben ser >= 1");
+        int columnas = Integer.highestOneBit(Math.max(1, ancho - 1)) << 1;
+        this.tramos = tramos;
+        this.mascara = columnas - 1;
+        this.contadores = new AtomicIntegerArray(Math.multiplyExact(tramos, FILAS * columnas));
+    }
+
+    void sumar(int tramo, long clave) {
+        for (int fila = 0; fila < FILAS; fila++) {
+            contadores.getAndIncrement(indice(tramo, fila, clave));
+        }
+    }
+
+    int estimar(int tramo, long clave) {
+        int minimo = Integer.MAX_VALUE;
+        for (int fila = 0; fila < FILAS; fila++) {
+            minimo = Math.min(minimo, contadores.get(indice(tramo, fila, clave)));
+        }
+        return minimo;
+    }
+
+    // Un hash independiente por fila. Con doble hash (h1 + fila * h2) y un ancho potencia de 2, dos claves que
+    // coinciden en los bits bajos de h1 y h2 chocan en todas las filas a la vez, y con anchos pequeños pasa a menudo.
+    private int indice(int tramo, int fila, long clave) {
+        int columnas = mascara + 1;
+        return (tramo * FILAS + fila) * columnas + (int) (mezclar(clave + fila * 0x9E3779B97F4A7C15L) & mascara);
+    }
+
+    void vaciar(int tramo) {
+        int desde = tramo * FILAS * (mascara + 1), hasta = desde + FILAS * (mascara + 1);
+        for (int i = desde; i < hasta; i++) contadores.set(i, 0);
+    }
+
+    int tramos() {
+        return tramos;
+    }
+
+    long bytes() {
+        return 4L * contadores.length();
+    }
+
+    // Mezcla final de MurmurHash3: ids consecutivos acaban en columnas sin relación
+    private static long mezclar(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
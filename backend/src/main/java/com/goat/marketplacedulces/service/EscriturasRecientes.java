@@ -0,0 +1,68 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.repository.ConsultasCompartidas;
+import com.goat.marketplacedulces.repository.Replica;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lee-lo-que-escribiste con réplica: tras escribir su carrito o hacer un pedido, las lecturas de ese
+ * usuario van a la primaria durante {@code app.r2dbc.replica.lectura-propia} (más que el retraso
+ * habitual de la réplica). El resto de usuarios sigue leyendo de la réplica.
+ * Es por nodo: pensado, como el write-behind, para sesiones pegadas.
+ *
+ * <p>Las lecturas que van a la réplica se comparten además con las idénticas en curso (ConsultasCompartidas);
+ * las de la primaria no, porque tienen que ver la escritura que acaba de hacer el usuario.
+ */
+@Service
+public class EscriturasRecientes {
+
+    private final Map<String, Long> hasta = new ConcurrentHashMap<>(); // username -> fin de la ventana (nanoTime)
+    private final long ventanaNanos;
+    private final int maxEntradas;
+    private final ConsultasCompartidas compartidas;
+
+    public EscriturasRecientes(@Value("${app.r2dbc.replica.lectura-propia:5s}") Duration ventana,
+                               @Value("${app.r2dbc.replica.lectura-propia-max-usuarios:100000}") int maxEntradas,
+                               ConsultasCompartidas compartidas) {
+        this.ventanaNanos = ventana.toNanos();
+        this.maxEntradas = maxEntradas;
+        this.compartidas = compartidas;
+    }
+
+    public void marcar(String username) {
+        if (hasta.size() >= maxEntradas) purgar();
+        hasta.put(username, System.nanoTime() + ventanaNanos);
+    }
+
+    public boolean reciente(String username) {
+        Long fin = hasta.get(username);
+        if (fin == null) return false;
+        if (System.nanoTime() - fin < 0) return true;
+        hasta.remove(username, fin);
+        return false;
+    }
+
+    /**
+     * La lectura va a la réplica salvo que el usuario haya escrito hace poco. Se decide al suscribirse.
+     * {@code consulta} nombra la lectura (p.ej. "carrito") para compartirla con las iguales del mismo usuario.
+     */
+    public <T> Flux<T> leer(String username, String consulta, Supplier<Flux<T>> lectura) {
+        return Flux.defer(() -> reciente(username)
+                ? lectura.get()
+                : compartidas.flux(consulta, username, () -> Replica.leer(lectura.get())));
+    }
+
+    private void purgar() {
+        long ahora = System.nanoTime();
+        hasta.values().removeIf(fin -> ahora - fin >= 0);
+        // Todas vigentes: las más viejas vencen enseguida, perderlas solo adelanta la vuelta a la réplica
+        if (hasta.size() >= maxEntradas) hasta.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package com.goat.marketplacedulces.service;
+
+import java.util.Map;
+
+/**
+ * Respuesta de /productos/facetas: totales del filtro y, por cada tipo y país, cuántos productos hay,
+ * cuántos con stock y su rango de precios. Los conteos de tipos ignoran el filtro por tipo (y los de
+ * países el de país), como en cualquier barra lateral de filtros.
+ */
+public record Facetas(int total, int conStock, Integer precioMin, Integer precioMax,
+                      Map<String, Faceta> tipos, Map<String, Faceta> paises) {
+
+    public record Faceta(int total, int conStock, Integer precioMin, Integer precioMax) {
+    }
+}
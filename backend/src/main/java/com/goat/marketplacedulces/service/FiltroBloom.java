@@ -0,0 +1,97 @@
+package com.goat.marketplacedulces.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de tamaño fijo sobre cadenas. {@link #contiene} puede dar falsos positivos (con la
+ * probabilidad configurada mientras no se pase de la capacidad) pero nunca falsos negativos. No admite
+ * borrados. Seguro entre hilos sin bloqueos: añadir es poner bits con CAS y los bits nunca se quitan.
+ */
+final class FiltroBloom {
+
+    private final AtomicLongArray palabras;
+    private final long bits;
+    private final int funciones;
+    private final AtomicLong elementos = new AtomicLong();
+
+    /** Dimensiona el filtro para {@code capacidad} elementos con esa tasa de falsos positivos. */
+    FiltroBloom(long capacidad, double falsosPositivos) {
+        if (capacidad < 1) throw new IllegalArgumentException("capacidad debe ser >= 1");
+        if (falsosPositivos <= 0 || falsosPositivos >= 1) {
+            throw new IllegalArgumentException("falsos positivos debe estar entre 0 y 1");
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacidad * Math.log(falsosPositivos) / (ln2 * ln2));
+        int palabras = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+        this.palabras = new AtomicLongArray(palabras);
+        this.bits = palabras * 64L;
+        this.funciones = Math.max(1, (int) Math.round((double) bits / capacidad * ln2));
+    }
+
+    void anadir(String valor) {
+        long h = hash(valor);
+        long h1 = h, h2 = Long.rotateLeft(h, 32) * 0x9E3779B97F4A7C15L | 1;
+        boolean nuevo = false;
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long actual = palabras.get(palabra);
+            while ((actual & mascara) == 0) {
+                long visto = palabras.compareAndExchange(palabra, actual, actual | mascara);
+                if (visto == actual) {
+                    nuevo = true;
+                    break;
+                }
+                actual = visto;
+            }
+        }
+        if (nuevo) elementos.incrementAndGet();
+    }
+
+    /** false = seguro que no se añadió; true = probablemente sí. */
+    boolean contiene(String valor) {
+        long h = hash(valor);
+        long h1 = h, h2 = Long.rotateLeft(h, 32) * 0x9E3779B97F4A7C15L | 1;
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((palabras.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    int funciones() {
+        return funciones;
+    }
+
+    /** Valores distintos añadidos (aproximado: uno cuyos bits ya estaban todos puestos no cuenta). */
+    long elementos() {
+        return elementos.get();
+    }
+
+    /** Tasa de falsos positivos esperada con los elementos añadidos hasta ahora: (1 - e^(-kn/m))^k. */
+    double falsosPositivosEstimados() {
+        return Math.pow(1 - Math.exp(-(double) funciones * elementos.get() / bits), funciones);
+    }
+
+    // FNV-1a de 64 bits sobre UTF-8 más la mezcla final de MurmurHash3: dispersa bien cadenas parecidas
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
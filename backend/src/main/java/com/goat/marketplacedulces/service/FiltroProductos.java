@@ -0,0 +1,9 @@
+package com.goat.marketplacedulces.service;
+
+/**
+ * Filtro de /productos/buscar. Los campos null no filtran; el rango de precio es inclusivo.
+ */
+public record FiltroProductos(String tipo, String pais, Integer precioMin, Integer precioMax, boolean soloConStock) {
+
+    public static final FiltroProductos TODOS = new FiltroProductos(null, null, null, null, false);
+}
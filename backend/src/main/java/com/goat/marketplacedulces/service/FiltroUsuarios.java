@@ -0,0 +1,136 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.repository.NotificacionesPg;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filtro de Bloom con todos los usernames, para no ir a la BD (ni gastar BCrypt) en logins de usuarios
+ * que no existen, que es casi todo el tráfico de un ataque de credential stuffing, y para detectar un
+ * username repetido en el registro sin consultar cuando seguro que es nuevo.
+ *
+ * <p>Se llena al arrancar leyendo la tabla en streaming; hasta entonces (o deshabilitado) responde "quizá"
+ * a todo y se consulta la BD como antes. Los usuarios nuevos llegan por LISTEN/NOTIFY (canal "usuarios"):
+ * los avisa un trigger de la tabla al confirmarse el INSERT, venga de este backend o de fuera, y también
+ * el nodo que los registra. Si esa conexión se corta se vuelve a leer la tabla, y mientras tanto se
+ * responde "quizá": lo registrado durante el corte aún no está. Como los usuarios no se borran (solo se
+ * deshabilitan) basta un Bloom, que no admite borrados.
+ *
+ * <p>Métricas: {@code auth.usuarios.filtro.*} con el tamaño en bytes, los elementos, la tasa de falsos
+ * positivos estimada y los logins cortados sin consultar.
+ */
+@Slf4j
+@Service
+public class FiltroUsuarios implements DisposableBean {
+
+    static final String CANAL = "usuarios";
+
+    private final UsuarioRepository usuarioRepository;
+    private final NotificacionesPg notificaciones;
+    private final boolean habilitado;
+    private final FiltroBloom filtro;
+    private final Counter descartados;
+    // El filtro tiene toda la tabla cuando la última lectura empezada (tras arrancar o tras un corte de
+    // LISTEN) es la última terminada: una anterior pudo empezar antes de los avisos perdidos
+    private final AtomicLong lecturas = new AtomicLong();
+    private final AtomicLong completadas = new AtomicLong();
+    private volatile Disposable escucha;
+
+    public FiltroUsuarios(UsuarioRepository usuarioRepository,
+                          NotificacionesPg notificaciones,
+                          MeterRegistry registry,
+                          @Value("${app.auth.filtro-usuarios.habilitado:true}") boolean habilitado,
+                          @Value("${app.auth.filtro-usuarios.capacidad:1000000}") long capacidad,
+                          @Value("${app.auth.filtro-usuarios.falsos-positivos:0.01}") double falsosPositivos) {
+        this.usuarioRepository = usuarioRepository;
+        this.notificaciones = notificaciones;
+        this.habilitado = habilitado;
+        this.filtro = new FiltroBloom(habilitado ? capacidad : 1, falsosPositivos);
+        this.descartados = Counter.builder("auth.usuarios.filtro.descartados")
+                .description("Logins y comprobaciones de registro resueltos por el filtro sin consultar la BD")
+                .register(registry);
+        Gauge.builder("auth.usuarios.filtro.bytes", filtro, f -> f.bits() / 8.0)
+                .description("Memoria del filtro de usernames")
+                .register(registry);
+        Gauge.builder("auth.usuarios.filtro.elementos", filtro, FiltroBloom::elementos).register(registry);
+        Gauge.builder("auth.usuarios.filtro.falsos-positivos", filtro, FiltroBloom::falsosPositivosEstimados)
+                .description("Tasa de falsos positivos esperada con los usernames cargados")
+                .register(registry);
+    }
+
+    /** false solo si es seguro que el username no existe; cuenta como consulta ahorrada. */
+    public boolean puedeExistir(String username) {
+        if (!habilitado || username == null || !listo()) return true;
+        if (filtro.contiene(username)) return true;
+        descartados.increment();
+        return false;
+    }
+
+    /** Usuario recién registrado en este nodo: se añade aquí y se avisa al resto. */
+    public void registrado(String username) {
+        if (!habilitado) return;
+        filtro.anadir(username);
+        // Repite el aviso del trigger: cubre las BD creadas antes de que existiera
+        notificaciones.notificar(CANAL, username)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(200)))
+                .subscribe(null, e -> log.warn("No se pudo avisar del usuario nuevo {}: {}", username, e.toString()));
+    }
+
+    // Se escucha antes de leer la tabla: lo registrado mientras se lee llega por NOTIFY
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        if (!habilitado) return;
+        escucha = notificaciones.escuchar(CANAL).subscribe(this::recibir);
+        leerTabla().subscribe();
+    }
+
+    void recibir(NotificacionesPg.Aviso aviso) {
+        if (aviso.esHueco()) leerTabla().subscribe();
+        else filtro.anadir(aviso.payload());
+    }
+
+    private boolean listo() {
+        long ultima = completadas.get();
+        return ultima > 0 && ultima == lecturas.get();
+    }
+
+    private Mono<Void> leerTabla() {
+        long lectura = lecturas.incrementAndGet();
+        long inicio = System.nanoTime();
+        return usuarioRepository.todosLosUsernames()
+                .doOnNext(filtro::anadir)
+                .count()
+                .doOnNext(n -> {
+                    completadas.accumulateAndGet(lectura, Math::max);
+                    log.info("Filtro de usuarios: {} usernames en {} ms, {} KB, {} funciones, falsos positivos ~{}",
+                            n, (System.nanoTime() - inicio) / 1_000_000, filtro.bits() / 8 / 1024,
+                            filtro.funciones(), String.format("%.4f", filtro.falsosPositivosEstimados()));
+                })
+                .onErrorResume(e -> {
+                    // Sin filtro se consulta la BD en cada login, como sin esta clase
+                    log.warn("No se pudo cargar el filtro de usuarios: {}", e.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable d = escucha;
+        if (d != null) d.dispose();
+    }
+}
@@ -0,0 +1,131 @@
+package com.goat.marketplacedulces.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt fuera del event loop de Netty: cada hash/verificación corre en un pool propio
+ * con cola acotada. Si la cola está llena se rechaza al momento con 503 + Retry-After,
+ * en vez de dejar que una ráfaga de logins frene al resto de peticiones.
+ *
+ * <p>Métricas: {@code auth.bcrypt} (tiempo de CPU por operación), {@code auth.bcrypt.espera}
+ * (tiempo en cola), {@code auth.bcrypt.rechazos} y la ocupación del pool.
+ */
+@Slf4j
+@Service
+public class HashingService implements DisposableBean, MeterBinder {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final int costo;
+    private final long retryAfterSegundos;
+
+    // Sin registro (tests, benchmarks) se mide contra uno vacío, que no guarda nada
+    private volatile Timer tiempoMatches, tiempoEncode, espera;
+    private volatile Counter rechazos;
+
+    public HashingService(PasswordEncoder passwordEncoder,
+                          @Value("${app.auth.bcrypt.costo:10}") int costo,
+                          @Value("${app.auth.bcrypt.hilos:0}") int hilos,
+                          @Value("${app.auth.bcrypt.cola:64}") int cola,
+                          @Value("${app.auth.bcrypt.retry-after-segundos:1}") long retryAfterSegundos) {
+        this.passwordEncoder = passwordEncoder;
+        this.costo = costo;
+        this.retryAfterSegundos = retryAfterSegundos;
+
+        int n = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger secuencia = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola),
+                r -> {
+                    Thread t = new Thread(r, "bcrypt-" + secuencia.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Schedulers.fromExecutorService(executor, "bcrypt");
+        bindTo(new CompositeMeterRegistry());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        tiempoMatches = Timer.builder("auth.bcrypt").tag("operacion", "matches")
+                .description("Tiempo de BCrypt en el pool, sin contar la espera en cola")
+                .register(registry);
+        tiempoEncode = Timer.builder("auth.bcrypt").tag("operacion", "encode").register(registry);
+        espera = Timer.builder("auth.bcrypt.espera")
+                .description("Tiempo que una operación de BCrypt pasa en cola hasta tener hilo")
+                .register(registry);
+        rechazos = Counter.builder("auth.bcrypt.rechazos")
+                .description("Operaciones rechazadas con 503 por tener la cola llena")
+                .register(registry);
+        Gauge.builder("auth.bcrypt.cola", executor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder("auth.bcrypt.activos", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+    }
+
+    public Mono<Boolean> matches(String rawPassword, String hash) {
+        return enPool(() -> passwordEncoder.matches(rawPassword, hash), tiempoMatches);
+    }
+
+    public Mono<String> encode(String rawPassword) {
+        return enPool(() -> passwordEncoder.encode(rawPassword), tiempoEncode);
+    }
+
+    /** true si el hash guardado no es BCrypt con el costo configurado (p.ej. los de pgcrypto, costo 6). */
+    public boolean necesitaRehash(String hash) {
+        // Formato: $2a$10$<salt+hash>
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$') return false;
+        try {
+            return Integer.parseInt(hash.substring(4, 6)) != costo;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private <T> Mono<T> enPool(Callable<T> trabajo, Timer tiempo) {
+        return Mono.defer(() -> Mono.fromCallable(medido(trabajo, tiempo, System.nanoTime())).subscribeOn(scheduler))
+                .onErrorMap(RejectedExecutionException.class, e -> {
+                    rechazos.increment();
+                    log.debug("Pool de BCrypt saturado ({} en cola)", executor.getQueue().size());
+                    return new ServicioSaturadoException("Servidor ocupado, reintenta en unos segundos", retryAfterSegundos);
+                });
+    }
+
+    // Separa la espera en cola (desde que se encola hasta que un hilo la toma) del hash en sí
+    private <T> Callable<T> medido(Callable<T> trabajo, Timer tiempo, long encolado) {
+        return () -> {
+            long inicio = System.nanoTime();
+            espera.record(inicio - encolado, TimeUnit.NANOSECONDS);
+            try {
+                return trabajo.call();
+            } finally {
+                tiempo.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+}
@@ -0,0 +1,211 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.dto.ImportacionResultado;
+import com.goat.marketplacedulces.dto.ProductoImportado;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Importación masiva de productos (POST /productos/importar) desde NDJSON o CSV.
+ *
+ * <p>El cuerpo se lee por líneas a medida que llega, sin cargarlo entero: cada línea se valida y las
+ * válidas se escriben en lotes de {@code app.productos.importar.tamano-lote} con un único INSERT ... ON
+ * CONFLICT sobre unnest() por lote. Mientras se escribe un lote no se leen más que las líneas del siguiente,
+ * así que la memoria no depende del tamaño del fichero (salvo la lista de productos para el catálogo en
+ * memoria, que de todas formas va a contenerlos).
+ *
+ * <p>No es atómica: cada lote se confirma por separado y el informe dice qué se escribió. Si un lote falla
+ * en la BD se reintenta fila a fila para señalar la línea culpable y escribir las demás.
+ */
+@Slf4j
+@Service
+public class ImportacionService {
+
+    private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogo;
+    private final CatalogoDifusion difusion;
+    private final ObjectMapper objectMapper;
+    private final int tamanoLote;
+    private final int maxErrores;
+    private final int maxLinea;
+
+    public ImportacionService(ProductoRepository productoRepository,
+                              CatalogoCache catalogo,
+                              CatalogoDifusion difusion,
+                              ObjectMapper objectMapper,
+                              @Value("${app.productos.importar.tamano-lote:1000}") int tamanoLote,
+                              @Value("${app.productos.importar.max-errores:1000}") int maxErrores,
+                              @Value("${app.productos.importar.max-linea:65536}") int maxLinea) {
+        this.productoRepository = productoRepository;
+        this.catalogo = catalogo;
+        this.difusion = difusion;
+        this.objectMapper = objectMapper;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.maxErrores = maxErrores;
+        this.maxLinea = maxLinea;
+    }
+
+    private record Fila(long linea, Producto producto) {
+    }
+
+    // Lo actualizan el lector de líneas y la escritura de lotes, que pueden ir en hilos distintos
+    private static final class Progreso {
+        final long inicio = System.nanoTime();
+        final List<ImportacionResultado.ErrorFila> errores = new ArrayList<>();
+        final List<Producto> escritos = new ArrayList<>();
+        long filas, insertados, actualizados, erroneas;
+        boolean idsExplicitos;
+
+        synchronized void fila(Producto p) {
+            filas++;
+            if (p != null && p.getId() != null) idsExplicitos = true;
+        }
+
+        synchronized void error(long linea, String motivo, int max) {
+            erroneas++;
+            if (errores.size() < max) errores.add(new ImportacionResultado.ErrorFila(linea, motivo));
+        }
+
+        synchronized void escritos(List<ProductoImportado> filas) {
+            for (ProductoImportado f : filas) {
+                if (Boolean.TRUE.equals(f.getInsertado())) insertados++;
+                else actualizados++;
+                escritos.add(producto(f));
+            }
+        }
+    }
+
+    public Mono<ImportacionResultado> importar(Flux<DataBuffer> cuerpo, MediaType tipo) {
+        return Mono.defer(() -> {
+            boolean csv = tipo != null && "csv".equalsIgnoreCase(tipo.getSubtype());
+            LectorProductos lector = csv ? LectorProductos.csv() : LectorProductos.ndjson(objectMapper);
+            Progreso progreso = new Progreso();
+
+            StringDecoder lineas = StringDecoder.allMimeTypes(List.of("\r\n", "\n"), true);
+            lineas.setMaxInMemorySize(maxLinea); // una línea enorme no puede llenar la memoria
+            return lineas.decode(cuerpo, ResolvableType.forClass(String.class), tipo, null)
+                    .index()
+                    .<Fila>handle((t, sink) -> {
+                        long linea = t.getT1() + 1;
+                        try {
+                            Producto p = lector.leer(t.getT2());
+                            if (p == null) return;
+                            progreso.fila(p);
+                            sink.next(new Fila(linea, p));
+                        } catch (LectorProductos.CabeceraNoValida e) {
+                            sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cabecera CSV no válida: " + e.getMessage()));
+                        } catch (IllegalArgumentException e) {
+                            progreso.fila(null);
+                            progreso.error(linea, e.getMessage(), maxErrores);
+                        }
+                    })
+                    .buffer(tamanoLote)
+                    .concatMap(lote -> escribir(lote, progreso), 1)
+                    .then(Mono.defer(() -> terminar(progreso)))
+                    .onErrorMap(DataBufferLimitException.class, e -> new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST, "Línea de más de " + maxLinea + " bytes"));
+        });
+    }
+
+    // ON CONFLICT no admite tocar la misma fila dos veces en un statement: un id repetido abre otro lote,
+    // así la última línea gana como si se hubieran escrito de una en una.
+    private Mono<Void> escribir(List<Fila> lote, Progreso progreso) {
+        List<List<Fila>> tramos = new ArrayList<>();
+        List<Fila> tramo = new ArrayList<>(lote.size());
+        Set<Long> ids = new HashSet<>();
+        for (Fila f : lote) {
+            Long id = f.producto().getId();
+            if (id != null && !ids.add(id)) {
+                tramos.add(tramo);
+                tramo = new ArrayList<>();
+                ids.clear();
+                ids.add(id);
+            }
+            tramo.add(f);
+        }
+        tramos.add(tramo);
+        return Flux.fromIterable(tramos)
+                .concatMap(t -> upsert(t)
+                        .doOnNext(progreso::escritos)
+                        .onErrorResume(DataAccessException.class, e -> t.size() == 1
+                                ? Mono.fromRunnable(() -> progreso.error(t.get(0).linea(), motivo(e), maxErrores))
+                                : Flux.fromIterable(t)
+                                        .concatMap(f -> upsert(List.of(f))
+                                                .doOnNext(progreso::escritos)
+                                                .onErrorResume(DataAccessException.class, e2 -> Mono.fromRunnable(
+                                                        () -> progreso.error(f.linea(), motivo(e2), maxErrores))))
+                                        .then(Mono.empty())))
+                .then();
+    }
+
+    private Mono<List<ProductoImportado>> upsert(List<Fila> filas) {
+        int n = filas.size();
+        Long[] ids = new Long[n];
+        String[] nombres = new String[n], tipos = new String[n], paises = new String[n];
+        Integer[] precios = new Integer[n], stocks = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Producto p = filas.get(i).producto();
+            ids[i] = p.getId();
+            nombres[i] = p.getNombre();
+            tipos[i] = p.getTipo();
+            paises[i] = p.getPaisOrigen();
+            precios[i] = p.getPrecio();
+            stocks[i] = p.getStock();
+        }
+        return productoRepository.importar(ids, nombres, tipos, paises, precios, stocks).collectList();
+    }
+
+    private Mono<ImportacionResultado> terminar(Progreso progreso) {
+        Mono<Long> secuencia = progreso.idsExplicitos ? productoRepository.ajustarSecuencia() : Mono.empty();
+        return secuencia.then(Mono.fromSupplier(() -> {
+            if (!progreso.escritos.isEmpty()) {
+                catalogo.aplicarVarios(progreso.escritos);
+                difusion.recargar();
+            }
+            long nanos = System.nanoTime() - progreso.inicio;
+            List<ImportacionResultado.ErrorFila> errores = new ArrayList<>(progreso.errores);
+            errores.sort(Comparator.comparingLong(ImportacionResultado.ErrorFila::getLinea));
+            ImportacionResultado r = new ImportacionResultado(progreso.filas, progreso.insertados, progreso.actualizados,
+                    progreso.erroneas, errores, nanos / 1_000_000, progreso.filas / Math.max(nanos / 1e9, 1e-9));
+            log.info("Importación de productos: {} filas ({} nuevas, {} actualizadas, {} con error) en {} ms",
+                    r.getFilas(), r.getInsertados(), r.getActualizados(), r.getErroneas(), r.getDuracionMs());
+            return r;
+        }));
+    }
+
+    private static String motivo(DataAccessException e) {
+        Throwable causa = e.getMostSpecificCause();
+        return causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+    }
+
+    private static Producto producto(ProductoImportado f) {
+        Producto p = new Producto();
+        p.setId(f.getId());
+        p.setNombre(f.getNombre());
+        p.setTipo(f.getTipo());
+        p.setPaisOrigen(f.getPaisOrigen());
+        p.setPrecio(f.getPrecio());
+        p.setStock(f.getStock());
+        return p;
+    }
+}
@@ -1,9 +1,15 @@
 package com.goat.marketplacedulces.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
@@ -13,7 +19,7 @@ import java.time.Duration;
 import java.util.Date;
 
 @Service
-public class JwtService {
+public class JwtService implements MeterBinder {
 
     // Puedes sobreescribirla vía variable de entorno JWT_SECRET si quieres
     private static final String DEFAULT_SECRET = "dulcemarket-super-secret-key-32bytes!!";
@@ -24,12 +30,26 @@ public class JwtService {
                     .getBytes(StandardCharsets.UTF_8)
     );
 
-    /** Token con claims básicos (subject=username y claim "role"). */
+    // El parser es inmutable y thread-safe: se construye una sola vez.
+    // Si usas clocks skew, puedes añadir: .setAllowedClockSkewSeconds(60)
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build();
+
+    // Un mismo bearer llega en cada petición: evitamos base64 + JSON + HMAC si ya lo verificamos.
+    private final ClaimsCache cache;
+
+    public JwtService(@Value("${app.jwt.cache.max-entradas:10000}") int maxEntradasCache) {
+        this.cache = new ClaimsCache(maxEntradasCache);
+    }
+
+    /** Token con claims básicos (subject=username, claim "role" y claim "enabled"). */
     public String generateToken(String username, String role) {
         Instant now = Instant.now();
         return Jwts.builder()
                 .setSubject(username)
                 .claim("role", role)
+                .claim("enabled", true) // solo se emiten tokens a usuarios habilitados
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(now.plus(EXPIRATION)))
                 .signWith(key, SignatureAlgorithm.HS256)
@@ -41,6 +61,16 @@ public class JwtService {
         return generateToken(username, "USUARIO");
     }
 
+    /** Verifica firma y expiración y devuelve todos los claims. */
+    public Claims extractClaims(String token) {
+        return getAllClaims(token);
+    }
+
+    /** Vida de los tokens emitidos. */
+    public Duration getExpiration() {
+        return EXPIRATION;
+    }
+
     /** Extrae el username (subject). */
     public String extractUsername(String token) {
         return getAllClaims(token).getSubject();
@@ -64,12 +94,28 @@ public class JwtService {
         }
     }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", cache, ClaimsCache::aciertos)
+                .tag("cache", "jwt").tag("result", "hit")
+                .description("Tokens servidos desde la cache de claims verificados")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, ClaimsCache::fallos)
+                .tag("cache", "jwt").tag("result", "miss")
+                .description("Tokens que hubo que parsear y verificar")
+                .register(registry);
+        Gauge.builder("cache.size", cache, ClaimsCache::tamano)
+                .tag("cache", "jwt")
+                .register(registry);
+    }
+
     private Claims getAllClaims(String token) {
-        // Si usas clocks skew, puedes añadir: .setAllowedClockSkewSeconds(60)
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        long ahora = System.currentTimeMillis();
+        Claims claims = cache.get(token, ahora);
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            cache.put(token, claims, ahora);
+        }
+        return claims;
     }
 }
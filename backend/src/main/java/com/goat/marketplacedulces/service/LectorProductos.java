@@ -0,0 +1,183 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Convierte cada línea de una importación (NDJSON o CSV) en un Producto validado.
+ * Una línea no válida lanza IllegalArgumentException con el motivo, que acaba en el informe de errores.
+ *
+ * <p>CSV: la primera línea es la cabecera (columnas en cualquier orden: id, nombre, tipo, paisOrigen o
+ * pais_origen, precio, stock), separador coma y comillas dobles con "" para escaparlas. Un campo entre
+ * comillas no puede contener saltos de línea.
+ */
+abstract class LectorProductos {
+
+    private static final int MAX_NOMBRE = 120;
+    private static final int MAX_TIPO = 60;
+    private static final int MAX_PAIS = 60;
+
+    /** La cabecera CSV no sirve: no tiene sentido seguir leyendo el resto del cuerpo. */
+    static final class CabeceraNoValida extends IllegalArgumentException {
+        CabeceraNoValida(String mensaje) {
+            super(mensaje);
+        }
+    }
+
+    /** Producto de la línea, o null si no lleva datos (línea vacía, cabecera CSV). */
+    abstract Producto leer(String linea);
+
+    static LectorProductos ndjson(ObjectMapper objectMapper) {
+        return new Ndjson(objectMapper);
+    }
+
+    static LectorProductos csv() {
+        return new Csv();
+    }
+
+    private static final class Ndjson extends LectorProductos {
+        private final ObjectMapper objectMapper;
+
+        Ndjson(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Producto leer(String linea) {
+            if (linea.isBlank()) return null;
+            JsonNode n;
+            try {
+                n = objectMapper.readTree(linea);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("JSON no válido");
+            }
+            if (!n.isObject()) throw new IllegalArgumentException("Se esperaba un objeto JSON por línea");
+            String pais = texto(n, "paisOrigen");
+            return validar(texto(n, "id"), texto(n, "nombre"), texto(n, "tipo"),
+                    pais != null ? pais : texto(n, "pais_origen"), texto(n, "precio"), texto(n, "stock"));
+        }
+
+        private static String texto(JsonNode n, String campo) {
+            JsonNode v = n.get(campo);
+            return v == null || v.isNull() ? null : v.asText();
+        }
+    }
+
+    private static final class Csv extends LectorProductos {
+        private Map<String, Integer> columnas; // null hasta leer la cabecera
+
+        @Override
+        Producto leer(String linea) {
+            if (linea.isBlank()) return null;
+            if (columnas == null) {
+                try {
+                    columnas = cabecera(campos(linea));
+                } catch (CabeceraNoValida e) {
+                    throw e;
+                } catch (IllegalArgumentException e) {
+                    throw new CabeceraNoValida(e.getMessage());
+                }
+                return null;
+            }
+            List<String> campos = campos(linea);
+            return validar(campo(campos, "id"), campo(campos, "nombre"), campo(campos, "tipo"),
+                    campo(campos, "paisorigen"), campo(campos, "precio"), campo(campos, "stock"));
+        }
+
+        private static Map<String, Integer> cabecera(List<String> campos) {
+            Map<String, Integer> columnas = new HashMap<>();
+            for (int i = 0; i < campos.size(); i++) {
+                String nombre = campos.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+                if (nombre.equals("pais")) nombre = "paisorigen";
+                if (columnas.put(nombre, i) != null) throw new CabeceraNoValida("Columna repetida: " + campos.get(i));
+            }
+            for (String obligatoria : List.of("nombre", "tipo", "precio")) {
+                if (!columnas.containsKey(obligatoria)) {
+                    throw new CabeceraNoValida("Cabecera sin la columna " + obligatoria);
+                }
+            }
+            return columnas;
+        }
+
+        private String campo(List<String> campos, String nombre) {
+            Integer i = columnas.get(nombre);
+            if (i == null || i >= campos.size()) return null;
+            String v = campos.get(i);
+            return v.isEmpty() ? null : v;
+        }
+
+        private static List<String> campos(String linea) {
+            List<String> campos = new ArrayList<>();
+            StringBuilder actual = new StringBuilder();
+            boolean comillas = false;
+            for (int i = 0; i < linea.length(); i++) {
+                char c = linea.charAt(i);
+                if (comillas) {
+                    if (c != '"') {
+                        actual.append(c);
+                    } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        comillas = false;
+                    }
+                } else if (c == '"') {
+                    comillas = true;
+                } else if (c == ',') {
+                    campos.add(actual.toString());
+                    actual.setLength(0);
+                } else {
+                    actual.append(c);
+                }
+            }
+            if (comillas) throw new IllegalArgumentException("Comillas sin cerrar");
+            campos.add(actual.toString());
+            return campos;
+        }
+    }
+
+    // Las mismas reglas que las restricciones de la tabla, para que el lote no falle en la BD
+    static Producto validar(String id, String nombre, String tipo, String pais, String precio, String stock) {
+        Producto p = new Producto();
+        if (id != null && !id.isBlank()) {
+            p.setId(entero(id, "id"));
+            if (p.getId() <= 0) throw new IllegalArgumentException("id debe ser positivo");
+        }
+        p.setNombre(obligatorio(nombre, "nombre", MAX_NOMBRE));
+        p.setTipo(obligatorio(tipo, "tipo", MAX_TIPO));
+        p.setPaisOrigen(pais == null || pais.isBlank() ? null : limitado(pais.trim(), "paisOrigen", MAX_PAIS));
+        if (precio == null || precio.isBlank()) throw new IllegalArgumentException("precio es obligatorio");
+        long valorPrecio = entero(precio, "precio");
+        long valorStock = stock == null || stock.isBlank() ? 0 : entero(stock, "stock");
+        if (valorPrecio < 0 || valorPrecio > Integer.MAX_VALUE) throw new IllegalArgumentException("precio fuera de rango");
+        if (valorStock < 0 || valorStock > Integer.MAX_VALUE) throw new IllegalArgumentException("stock fuera de rango");
+        p.setPrecio((int) valorPrecio);
+        p.setStock((int) valorStock);
+        return p;
+    }
+
+    private static String obligatorio(String valor, String campo, int max) {
+        if (valor == null || valor.isBlank()) throw new IllegalArgumentException(campo + " es obligatorio");
+        return limitado(valor.trim(), campo, max);
+    }
+
+    private static String limitado(String valor, String campo, int max) {
+        if (valor.length() > max) throw new IllegalArgumentException(campo + " supera " + max + " caracteres");
+        return valor;
+    }
+
+    private static long entero(String valor, String campo) {
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(campo + " no es un entero: " + valor);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.dto.CarritoLinea;
+import com.goat.marketplacedulces.model.Pedido;
+import com.goat.marketplacedulces.repository.CarritoRepository;
+import com.goat.marketplacedulces.repository.PedidoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checkout: convierte las líneas del carrito en un pedido.
+ * 1) reserva el stock de todas las líneas (todo o nada); si tarda más de {@code app.checkout.timeout}
+ *    se responde 503 y lo reservado se libera en cuanto terminan las reservas en curso,
+ * 2) en una transacción borra esas líneas del carrito y crea el pedido con sus items; si alguna ya no
+ *    estaba (el mismo carrito enviado dos veces a la vez) responde 409,
+ * 3) si 2) falla, libera lo reservado.
+ *
+ * <p>La transacción no lleva timeout: cortarla desde fuera no dice si llegó a confirmarse, y liberar
+ * el stock de un pedido confirmado lo vendería dos veces. Un error que sale de 2) ya viene tras el rollback.
+ */
+@Slf4j
+@Service
+public class PedidoService {
+
+    // Estado de las reservas de un checkout
+    private static final int EN_CURSO = 0, LISTAS = 1, ABANDONADAS = 2;
+
+    private final CarritoRepository carritoRepository;
+    private final PedidoRepository pedidoRepository;
+    private final CarritoBuffer carritoBuffer;
+    private final EscriturasRecientes escrituras;
+    private final ReservaStockService reservas;
+    private final TransactionalOperator tx;
+    private final Duration timeout;
+
+    public PedidoService(CarritoRepository carritoRepository,
+                         PedidoRepository pedidoRepository,
+                         CarritoBuffer carritoBuffer,
+                         EscriturasRecientes escrituras,
+                         ReservaStockService reservas,
+                         TransactionalOperator tx,
+                         @Value("${app.checkout.timeout:5s}") Duration timeout) {
+        this.carritoRepository = carritoRepository;
+        this.pedidoRepository = pedidoRepository;
+        this.carritoBuffer = carritoBuffer;
+        this.escrituras = escrituras;
+        this.reservas = reservas;
+        this.tx = tx;
+        this.timeout = timeout;
+    }
+
+    public Mono<Pedido> checkout(String username) {
+        // Con write-behind, el carrito pendiente se escribe antes y la copia en memoria se recarga después
+        return carritoBuffer.enDirecto(username, Mono.defer(() -> comprar(username)))
+                .doFinally(s -> escrituras.marcar(username));
+    }
+
+    private Mono<Pedido> comprar(String username) {
+        return carritoRepository.findDetalleByUsername(username)
+                .collectList()
+                .flatMap(lineas -> {
+                    if (lineas.isEmpty()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El carrito está vacío"));
+                    }
+                    return reservarTodo(lineas)
+                            .then(Mono.defer(() -> persistir(username, lineas)
+                                    .onErrorResume(e -> liberarTodo(lineas).then(Mono.error(e)))));
+                });
+    }
+
+    public Flux<Pedido> listar(String username) {
+        return escrituras.leer(username, "pedidos", () -> pedidoRepository.findByUsernameOrderByIdDesc(username));
+    }
+
+    // Reserva línea a línea; si alguna no alcanza, devuelve las ya reservadas y responde 409.
+    // El timeout no corta las reservas: una cancelada a medio UPDATE podría descontar stock sin que nadie
+    // lo apuntara. Las que están en curso terminan, no se empiezan más y se libera todo lo reservado.
+    private Mono<Void> reservarTodo(List<CarritoLinea> lineas) {
+        return Mono.defer(() -> {
+            List<CarritoLinea> reservadas = new ArrayList<>();
+            // Quien llega antes decide: las reservas al terminar (LISTAS) o el timeout (ABANDONADAS)
+            AtomicInteger estado = new AtomicInteger(EN_CURSO);
+            Mono<Void> proceso = Flux.fromIterable(lineas)
+                    .concatMap(l -> {
+                        if (estado.get() == ABANDONADAS) return Mono.error(new IllegalStateException("checkout abandonado"));
+                        return reservas.reservar(l.getProductoId(), l.getCantidad())
+                                .flatMap(ok -> {
+                                    if (!ok) {
+                                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                                "Stock insuficiente para " + l.getNombre()));
+                                    }
+                                    reservadas.add(l);
+                                    return Mono.just(l);
+                                });
+                    })
+                    .then(Mono.defer(() -> estado.compareAndSet(EN_CURSO, LISTAS)
+                            ? Mono.<Void>empty()
+                            : liberarTodo(reservadas)))
+                    .onErrorResume(e -> liberarTodo(reservadas).then(Mono.error(e)));
+            return Mono.fromFuture(proceso.toFuture(), true) // cancelar aquí no cancela las reservas
+                    .timeout(timeout, Mono.defer(() -> estado.compareAndSet(EN_CURSO, ABANDONADAS)
+                            ? Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                                    "No se pudo reservar el stock a tiempo, inténtalo de nuevo"))
+                            : Mono.empty())); // terminaron justo a tiempo
+        });
+    }
+
+    private Mono<Void> liberarTodo(List<CarritoLinea> lineas) {
+        return Flux.fromIterable(lineas)
+                .concatMap(l -> reservas.liberar(l.getProductoId(), l.getCantidad())
+                        .onErrorResume(e -> {
+                            log.error("No se pudo liberar stock de producto {} x{}", l.getProductoId(), l.getCantidad(), e);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Pedido> persistir(String username, List<CarritoLinea> lineas) {
+        Pedido pedido = new Pedido();
+        pedido.setUsername(username);
+        pedido.setEstado("CONFIRMADO");
+        pedido.setTotal(lineas.get(0).getTotalCarrito());
+
+        Long[] productos = lineas.stream().map(CarritoLinea::getProductoId).toArray(Long[]::new);
+        Integer[] cantidades = lineas.stream().map(CarritoLinea::getCantidad).toArray(Integer[]::new);
+        Integer[] precios = lineas.stream().map(CarritoLinea::getPrecio).toArray(Integer[]::new);
+        Long[] lineasCarrito = lineas.stream().map(CarritoLinea::getId).toArray(Long[]::new);
+
+        // Primero se borran las líneas (solo las que se compran: lo que se añada mientras tanto se queda).
+        // El DELETE bloquea las filas: un segundo checkout del mismo carrito espera a este y ya no las encuentra.
+        return carritoRepository.eliminarLineas(username, lineasCarrito)
+                .flatMap(borradas -> {
+                    if (borradas != lineas.size()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                "El carrito cambió mientras se confirmaba el pedido"));
+                    }
+                    return pedidoRepository.save(pedido);
+                })
+                .flatMap(p -> pedidoRepository.insertarItems(p.getId(), productos, cantidades, precios)
+                        .collectList()
+                        .map(items -> {
+                            p.setItems(items);
+                            return p;
+                        }))
+                .as(tx::transactional);
+    }
+}
@@ -3,30 +3,118 @@ package com.goat.marketplacedulces.service;
 import com.goat.marketplacedulces.model.Producto;
 import com.goat.marketplacedulces.repository.ProductoRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class ProductoService {
 
+    static final int MAX_LIMITE = 1000;
+    static final int MAX_SUGERENCIAS = 50;
+    static final int MAX_TENDENCIAS = 100;
+
     private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
+    private final CatalogoDifusion difusion;
+    private final CatalogoEventos eventos;
+    private final Tendencias tendencias;
+
+    /** Snapshot del catálogo en memoria (lista + JSON pre-serializado + ETag). */
+    public Mono<CatalogoSnapshot> catalogo() {
+        return catalogoCache.snapshot();
+    }
 
+    /** El catálogo producto a producto (por id), para escribirlo en streaming. */
     public Flux<Producto> listar() {
-        return productoRepository.findAll();
+        return catalogo().flatMapIterable(CatalogoSnapshot::productos);
+    }
+
+    /**
+     * Búsqueda combinada sobre el índice del snapshot: devuelve el snapshot usado (para el ETag) y la página.
+     * Con {@code cursor} (el {@code siguiente} de una página anterior) pagina por clave en vez de por offset:
+     * el orden lo fija el cursor y no se calcula el total.
+     */
+    public Mono<Busqueda> buscar(FiltroProductos filtro, String orden, String cursor, int offset, int limite) {
+        CatalogoIndice.Orden criterio = CatalogoIndice.Orden.de(orden);
+        if (criterio == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "orden debe ser id, precio, -precio o nombre"));
+        }
+        if (offset < 0 || limite < 1 || limite > MAX_LIMITE) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "offset >= 0 y limite entre 1 y " + MAX_LIMITE));
+        }
+        if (cursor == null) {
+            return catalogo().map(s -> new Busqueda(s, s.indice().buscar(filtro, criterio, offset, limite)));
+        }
+        CatalogoIndice.Cursor desde;
+        try {
+            desde = CatalogoIndice.Cursor.leer(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "cursor no válido"));
+        }
+        if (offset > 0 || (orden != null && !orden.isBlank() && desde.orden() != criterio)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "cursor no se combina con offset ni con otro orden"));
+        }
+        return catalogo().map(s -> new Busqueda(s, s.indice().buscarDesde(filtro, desde, limite)));
+    }
+
+    /** Conteos por tipo y país (total, con stock, rango de precios), opcionalmente dentro de un filtro. */
+    public Mono<ConFacetas> facetas(FiltroProductos filtro) {
+        return catalogo().map(s -> new ConFacetas(s, s.indice().facetas(filtro)));
     }
 
-    public Flux<Producto> buscarPorPais(String pais) {
-        return productoRepository.findByPaisOrigen(pais);
+    /**
+     * Los productos más añadidos al carrito ahora mismo, del ranking en memoria de {@link Tendencias} (se
+     * recalcula cada segundo). Los que ya no están en el catálogo se saltan.
+     */
+    public Mono<List<ProductoTendencia>> tendencias(int limite) {
+        if (limite < 1 || limite > MAX_TENDENCIAS) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limite entre 1 y " + MAX_TENDENCIAS));
+        }
+        return catalogo().map(s -> {
+            List<ProductoTendencia> lista = new ArrayList<>(limite);
+            for (Tendencias.Entrada e : tendencias.top(limite)) {
+                Producto p = s.buscar(e.productoId());
+                if (p != null) lista.add(new ProductoTendencia(p, e.puntuacion()));
+            }
+            return lista;
+        });
     }
 
-    public Flux<Producto> buscarPorTipo(String tipo) {
-        return productoRepository.findByTipo(tipo);
+    /** Hasta {@code limite} productos cuyo nombre tiene una palabra que empieza por {@code q}, más stock primero. */
+    public Mono<List<Producto>> autocompletar(String q, int limite) {
+        if (limite < 1 || limite > MAX_SUGERENCIAS) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limite entre 1 y " + MAX_SUGERENCIAS));
+        }
+        return catalogo().map(s -> s.autocompletado().sugerir(q, limite, s.productos()));
+    }
+
+    public record ConFacetas(CatalogoSnapshot snapshot, Facetas facetas) {
+    }
+
+    public record Busqueda(CatalogoSnapshot snapshot, CatalogoIndice.Resultado resultado) {
     }
 
     public Mono<Producto> crear(Producto producto) {
-        return productoRepository.save(producto);
+        return productoRepository.save(producto)
+                .doOnNext(catalogoCache::aplicar)
+                .doOnNext(difusion::producto);
     }
-}
 
+    /** Cambios del catálogo a partir de ahora, como eventos SSE (ver CatalogoEventos). */
+    public Flux<ServerSentEvent<String>> cambios() {
+        return eventos.suscribir();
+    }
+}
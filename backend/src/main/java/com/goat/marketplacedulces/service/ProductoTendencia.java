@@ -0,0 +1,10 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+
+/**
+ * Elemento de /productos/tendencias: el producto del snapshot y su puntuación en {@link Tendencias}
+ * (añadidos al carrito en la última ventana, los recientes pesan más).
+ */
+public record ProductoTendencia(Producto producto, double puntuacion) {
+}
@@ -0,0 +1,233 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.dto.StockProducto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reserva de stock para el checkout.
+ *
+ * <p>Con {@code app.checkout.reservas.habilitado=true} cada nodo se lleva el stock de la BD por lotes
+ * (descuento condicional, nunca por debajo de 0) y lo reparte desde un contador en memoria por producto
+ * con CAS. En una venta flash cientos de compradores del mismo producto compiten por un AtomicInteger
+ * y no por el lock de la fila: la BD se toca una vez cada {@code tamano-lote} unidades. Lo que un nodo
+ * no vende en {@code inactividad} se devuelve a la tabla (también al apagar), así que entre varios nodos
+ * nunca se vende más de lo que hay.
+ *
+ * <p>Al catálogo se publica el stock vendible: lo que queda en la BD más lo que este nodo tiene reservado
+ * sin vender. El de la BD solo no vale, porque cada lote lo baja de golpe {@code tamano-lote} unidades.
+ * Con varios nodos, lo reservado por los demás no cuenta hasta que lo venden o lo devuelven.
+ *
+ * <p>Deshabilitado, cada reserva es un {@code UPDATE ... WHERE stock >= cantidad} directo.
+ */
+@Slf4j
+@Service
+public class ReservaStockService implements DisposableBean {
+
+    private static final class Lote {
+        final AtomicInteger disponible = new AtomicInteger();
+        final AtomicReference<Mono<Integer>> recarga = new AtomicReference<>();
+        volatile long ultimoUso = System.nanoTime();
+        volatile long agotadoHasta = ultimoUso;
+        volatile int stockBd = -1;      // último stock leído de la BD; -1 = aún no se ha leído
+    }
+
+    private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogo;
+    private final CatalogoDifusion difusion;
+    private final boolean habilitado;
+    private final int tamanoLote;
+    private final Duration inactividad;
+    private final long agotadoTtlNanos;
+    private final Map<Long, Lote> lotes = new ConcurrentHashMap<>();
+    private final Disposable devolucionPeriodica;
+
+    public ReservaStockService(ProductoRepository productoRepository,
+                               CatalogoCache catalogo,
+                               CatalogoDifusion difusion,
+                               @Value("${app.checkout.reservas.habilitado:true}") boolean habilitado,
+                               @Value("${app.checkout.reservas.tamano-lote:20}") int tamanoLote,
+                               @Value("${app.checkout.reservas.inactividad:30s}") Duration inactividad,
+                               @Value("${app.checkout.reservas.agotado-ttl:1s}") Duration agotadoTtl) {
+        this.productoRepository = productoRepository;
+        this.catalogo = catalogo;
+        this.difusion = difusion;
+        this.habilitado = habilitado;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.inactividad = inactividad;
+        this.agotadoTtlNanos = agotadoTtl.toNanos();
+        this.devolucionPeriodica = habilitado
+                ? Flux.interval(inactividad.dividedBy(2))
+                    .onBackpressureDrop()
+                    .concatMap(t -> devolverInactivos().onErrorResume(e -> {
+                        log.warn("No se pudo devolver stock reservado: {}", e.toString());
+                        return Mono.empty();
+                    }))
+                    .subscribe()
+                : null;
+    }
+
+    /** true si se reservaron las unidades; false si no hay stock suficiente. */
+    public Mono<Boolean> reservar(Long productoId, int cantidad) {
+        if (!habilitado) {
+            return productoRepository.descontarStock(productoId, cantidad)
+                    .doOnNext(this::publicarStock)
+                    .hasElement();
+        }
+        Lote lote = lotes.computeIfAbsent(productoId, id -> new Lote());
+        long ahora = System.nanoTime();
+        lote.ultimoUso = ahora;
+        if (tomar(lote, cantidad)) {
+            publicarStock(productoId, lote);
+            return Mono.just(true);
+        }
+        // Recién agotado en la BD: los que llegan después no vuelven a preguntarle
+        if (ahora - lote.agotadoHasta < 0) return Mono.just(false);
+
+        return recargar(productoId, lote, cantidad)
+                .flatMap(concedido -> {
+                    if (tomar(lote, cantidad)) {
+                        publicarStock(productoId, lote);
+                        return Mono.just(true);
+                    }
+                    if (concedido == 0) {                        // la BD ya no tiene más
+                        lote.agotadoHasta = System.nanoTime() + agotadoTtlNanos;
+                        return Mono.just(false);
+                    }
+                    return reservar(productoId, cantidad);        // otro comprador se llevó la recarga
+                });
+    }
+
+    /** Compensación: devuelve unidades reservadas de un pedido que no llegó a confirmarse. */
+    public Mono<Void> liberar(Long productoId, int cantidad) {
+        if (!habilitado) {
+            return productoRepository.devolverStock(new Long[]{productoId}, new Integer[]{cantidad})
+                    .doOnNext(this::publicarStock)
+                    .then();
+        }
+        Lote lote = lotes.computeIfAbsent(productoId, id -> new Lote());
+        lote.disponible.addAndGet(cantidad);
+        publicarStock(productoId, lote);
+        return Mono.empty();
+    }
+
+    /** Unidades reservadas por este nodo y aún sin vender (0 en modo directo). */
+    public int disponibleLocal(Long productoId) {
+        Lote lote = lotes.get(productoId);
+        return lote == null ? 0 : lote.disponible.get();
+    }
+
+    /** Devuelve a la BD lo reservado por productos sin ventas en el último periodo de inactividad. */
+    public Mono<Void> devolverInactivos() {
+        return devolver(false);
+    }
+
+    @Override
+    public void destroy() {
+        if (devolucionPeriodica != null) devolucionPeriodica.dispose();
+        if (!habilitado) return;
+        try {
+            devolver(true).block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            log.warn("No se pudo devolver el stock reservado al apagar: {}", e.toString());
+        }
+    }
+
+    // Reparte desde memoria sin locks: solo descuenta si alcanza.
+    private static boolean tomar(Lote lote, int cantidad) {
+        while (true) {
+            int actual = lote.disponible.get();
+            if (actual < cantidad) return false;
+            if (lote.disponible.compareAndSet(actual, actual - cantidad)) return true;
+        }
+    }
+
+    // Una sola recarga en vuelo por producto: el resto de compradores espera a esa misma.
+    private Mono<Integer> recargar(Long productoId, Lote lote, int cantidad) {
+        while (true) {
+            Mono<Integer> enCurso = lote.recarga.get();
+            if (enCurso != null) return enCurso;
+
+            AtomicReference<Mono<Integer>> propia = new AtomicReference<>();
+            Mono<Integer> nueva = productoRepository.reservarLote(productoId, Math.max(tamanoLote, cantidad))
+                    .map(s -> {
+                        int concedido = s.getConcedido() == null ? 0 : s.getConcedido();
+                        lote.stockBd = s.getStock();
+                        lote.disponible.addAndGet(concedido);
+                        // Lo que sale de la tabla entra en el lote: el vendible no cambia, pero ahora se conoce
+                        publicarStock(productoId, lote);
+                        return concedido;
+                    })
+                    .defaultIfEmpty(0) // el producto no existe
+                    // Se suelta antes de emitir: quien reintente desde el flatMap ya lanza la siguiente recarga
+                    .doOnNext(n -> lote.recarga.compareAndSet(propia.get(), null))
+                    .doOnError(e -> lote.recarga.compareAndSet(propia.get(), null))
+                    .cache();
+            propia.set(nueva);
+            if (lote.recarga.compareAndSet(null, nueva)) return nueva;
+        }
+    }
+
+    private Mono<Void> devolver(boolean todos) {
+        long ahora = System.nanoTime();
+        List<Long> ids = new ArrayList<>();
+        List<Integer> cantidades = new ArrayList<>();
+        lotes.forEach((id, lote) -> {
+            boolean inactivo = ahora - lote.ultimoUso >= inactividad.toNanos();
+            if (!todos && (!inactivo || lote.recarga.get() != null)) return;
+            int n = lote.disponible.getAndSet(0);
+            if (n > 0) {
+                ids.add(id);
+                cantidades.add(n);
+            }
+        });
+        if (ids.isEmpty()) return Mono.empty();
+
+        return productoRepository.devolverStock(ids.toArray(Long[]::new), cantidades.toArray(Integer[]::new))
+                .doOnNext(s -> {
+                    Lote lote = lotes.get(s.getId());
+                    if (lote == null) {
+                        publicarStock(s);
+                        return;
+                    }
+                    lote.stockBd = s.getStock();
+                    publicarStock(s.getId(), lote);
+                })
+                .then()
+                .doOnError(e -> {
+                    // No perdemos las unidades: vuelven al contador y se reintenta en el siguiente ciclo
+                    for (int i = 0; i < ids.size(); i++) {
+                        lotes.computeIfAbsent(ids.get(i), id -> new Lote()).disponible.addAndGet(cantidades.get(i));
+                    }
+                });
+    }
+
+    // Modo lotes: lo de la BD más lo que este nodo aún puede vender. Las publicaciones se agrupan
+    // (CatalogoCache y CatalogoDifusion esperan unos ms), así que una por venta no cuesta un aviso por venta.
+    private void publicarStock(Long productoId, Lote lote) {
+        int stockBd = lote.stockBd;
+        if (stockBd < 0) return;
+        int vendible = stockBd + lote.disponible.get();
+        catalogo.actualizarStock(productoId, vendible);
+        difusion.stock(productoId, vendible);
+    }
+
+    private void publicarStock(StockProducto s) {
+        catalogo.actualizarStock(s.getId(), s.getStock());
+        difusion.stock(s.getId(), s.getStock());
+    }
+}
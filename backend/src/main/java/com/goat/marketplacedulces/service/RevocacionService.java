@@ -0,0 +1,206 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.repository.NotificacionesPg;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista de revocación en memoria para el modo stateless: username -> instante de revocación.
+ * Un token emitido antes (o en el mismo segundo) de la revocación deja de valer; habilitar de nuevo al
+ * usuario quita la entrada. Las entradas más viejas que la vida de un token ya no sirven y se purgan.
+ *
+ * <p>Cada revocación y rehabilitación se avisa al resto de nodos por LISTEN/NOTIFY (canal "revocaciones").
+ * Los usuarios deshabilitados se leen de la BD al arrancar, si esa conexión se corta y cada
+ * {@code resincronizar}: un aviso que no llegó a enviarse tarda como mucho eso en verse en los demás.
+ *
+ * <p>Si el mapa se llena de revocaciones vigentes no se descarta ninguna: la nueva queda solo en la BD y,
+ * mientras pueda haber tokens suyos sin caducar, los usuarios que no están en el mapa se consultan allí.
+ */
+@Slf4j
+@Service
+public class RevocacionService implements DisposableBean {
+
+    static final String CANAL = "revocaciones";
+
+    /** Lo que viaja en el payload; {@code revocadoEn} null = usuario habilitado de nuevo. */
+    record Mensaje(String nodo, String username, Long revocadoEn) {
+    }
+
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+    private final UsuarioRepository usuarioRepository;
+    private final NotificacionesPg notificaciones;
+    private final ObjectMapper objectMapper;
+    private final long vidaTokenMs;
+    private final int maxEntradas;
+    private final Duration resincronizar;
+    // Hasta cuándo puede faltar en el mapa alguna revocación con tokens vigentes
+    private volatile long incompletaHasta;
+    private volatile Disposable escucha;
+    private volatile Disposable resincronizacion;
+
+    public RevocacionService(JwtService jwtService,
+                             UsuarioRepository usuarioRepository,
+                             NotificacionesPg notificaciones,
+                             ObjectMapper objectMapper,
+                             @Value("${app.auth.revocacion.max-entradas:10000}") int maxEntradas,
+                             @Value("${app.auth.revocacion.resincronizar:1m}") Duration resincronizar) {
+        this.usuarioRepository = usuarioRepository;
+        this.notificaciones = notificaciones;
+        this.objectMapper = objectMapper;
+        this.vidaTokenMs = jwtService.getExpiration().toMillis();
+        this.maxEntradas = maxEntradas;
+        this.resincronizar = resincronizar;
+    }
+
+    /** Usuario deshabilitado en este nodo: sus tokens dejan de valer aquí y en el resto. */
+    public void revocar(String username) {
+        long ahora = System.currentTimeMillis();
+        anotar(username, ahora);
+        avisar(new Mensaje(notificaciones.nodo(), username, ahora));
+    }
+
+    /** Usuario habilitado de nuevo: los tokens que emita a partir de ahora valen, aunque sea en el mismo segundo. */
+    public void habilitar(String username) {
+        revocados.remove(username);
+        avisar(new Mensaje(notificaciones.nodo(), username, null));
+    }
+
+    /** true si el token (por su fecha de emisión) fue emitido antes de revocar al usuario. */
+    public boolean estaRevocado(String username, Date emitidoEn) {
+        Long revocadoEn = revocados.get(username);
+        if (revocadoEn == null) return false;
+        // iat viene en segundos: comparamos con la misma precisión
+        return emitidoEn == null || emitidoEn.getTime() / 1000 <= revocadoEn / 1000;
+    }
+
+    /** true si alguna revocación vigente no cabe en el mapa: un usuario que no está en él hay que mirarlo en la BD. */
+    public boolean incompleta() {
+        return System.currentTimeMillis() < incompletaHasta;
+    }
+
+    /** El usuario está deshabilitado (o ya no existe) según la BD. */
+    public Mono<Boolean> deshabilitadoEnBd(String username) {
+        return usuarioRepository.deshabilitado(username)
+                .defaultIfEmpty(true)
+                // Sin BD no se puede saber si el token está revocado: se rechaza
+                .onErrorReturn(true);
+    }
+
+    public int tamano() {
+        return revocados.size();
+    }
+
+    // Se escucha antes de leer la tabla: lo deshabilitado mientras se lee llega por NOTIFY
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        escucha = notificaciones.escuchar(CANAL).subscribe(this::recibir);
+        resincronizacion = Flux.interval(Duration.ZERO, resincronizar)
+                .onBackpressureDrop()
+                .concatMap(t -> leerTabla())
+                .subscribe();
+    }
+
+    void recibir(NotificacionesPg.Aviso aviso) {
+        if (aviso.esHueco()) {
+            leerTabla().subscribe();
+            return;
+        }
+        Mensaje m;
+        try {
+            m = objectMapper.readValue(aviso.payload(), Mensaje.class);
+        } catch (Exception e) {
+            log.warn("Aviso de revocación no válido: {}", e.toString());
+            return;
+        }
+        if (notificaciones.nodo().equals(m.nodo())) return; // el propio: ya aplicado al hacerlo
+        if (m.revocadoEn() != null) anotar(m.username(), m.revocadoEn());
+        else revocados.remove(m.username());
+    }
+
+    // Los deshabilitados de la BD cuentan como revocados al leerlos: no pueden tener tokens posteriores.
+    // Las entradas anteriores a la lectura que ya no están deshabilitadas se habilitaron mientras tanto.
+    Mono<Void> leerTabla() {
+        long inicio = System.currentTimeMillis();
+        return usuarioRepository.deshabilitados()
+                .take(maxEntradas + 1L)
+                .collect(HashSet<String>::new, HashSet::add)
+                .doOnNext(deshabilitados -> {
+                    boolean completa = deshabilitados.size() <= maxEntradas;
+                    if (completa) {
+                        revocados.entrySet().removeIf(e -> e.getValue() < inicio && !deshabilitados.contains(e.getKey()));
+                    }
+                    // Las que ya están conservan su hora: así caducan y la siguiente lectura las renueva
+                    deshabilitados.forEach(u -> {
+                        if (!revocados.containsKey(u)) anotar(u, inicio);
+                    });
+                    if (!completa) marcarIncompleta();
+                    log.debug("Lista de revocación: {} usuarios deshabilitados", revocados.size());
+                })
+                .onErrorResume(e -> {
+                    log.warn("No se pudieron leer los usuarios deshabilitados: {}", e.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void anotar(String username, long revocadoEn) {
+        if (!revocados.containsKey(username) && revocados.size() >= maxEntradas) {
+            purgar();
+            if (revocados.size() >= maxEntradas) {
+                marcarIncompleta();
+                return;
+            }
+        }
+        revocados.merge(username, revocadoEn, Math::max);
+    }
+
+    private void purgar() {
+        long limite = System.currentTimeMillis() - vidaTokenMs;
+        revocados.values().removeIf(t -> t < limite);
+    }
+
+    private void marcarIncompleta() {
+        if (!incompleta()) {
+            log.warn("Lista de revocación llena ({}): los usuarios que no están en ella se consultan en la BD", maxEntradas);
+        }
+        incompletaHasta = System.currentTimeMillis() + vidaTokenMs;
+    }
+
+    private void avisar(Mensaje mensaje) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(mensaje);
+        } catch (Exception e) {
+            log.warn("No se pudo serializar el aviso de revocación: {}", e.toString());
+            return;
+        }
+        // Si no se consigue, los otros nodos lo verán en su siguiente lectura de la tabla
+        notificaciones.notificar(CANAL, payload)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(200)))
+                .subscribe(null, e -> log.warn("No se pudo avisar de la revocación de {}: {}", mensaje.username(), e.toString()));
+    }
+
+    @Override
+    public void destroy() {
+        Disposable d = escucha;
+        if (d != null) d.dispose();
+        Disposable r = resincronizacion;
+        if (r != null) r.dispose();
+    }
+}
@@ -0,0 +1,23 @@
+package com.goat.marketplacedulces.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** 503 con cabecera Retry-After: se lanza cuando rechazamos trabajo por saturación. */
+public class ServicioSaturadoException extends ResponseStatusException {
+
+    private final long reintentarEnSegundos;
+
+    public ServicioSaturadoException(String reason, long reintentarEnSegundos) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(reintentarEnSegundos));
+        return headers;
+    }
+}
@@ -0,0 +1,171 @@
+package com.goat.marketplacedulces.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ranking de los productos que más se están añadiendo al carrito, para la estantería de "tendencias",
+ * sin agrupar la tabla carrito en cada petición.
+ *
+ * <p>Cada añadido suma en un {@link ConteoMinimo} partido en {@code subventanas} tramos que cubren la
+ * {@code ventana}; al pasar un tramo se vacía el más antiguo y se sigue en él. La puntuación de un producto
+ * es la suma de sus conteos por tramo, cada uno con un peso que se reduce a la mitad cada {@code vida-media}:
+ * lo de hace un momento cuenta más que lo de hace 50 minutos. El id se apunta también en un anillo de
+ * recientes. Sumar son unos pocos incrementos atómicos, sin bloqueos ni reservar memoria.
+ *
+ * <p>Cada {@code refresco} un solo hilo rota los tramos, puntúa los candidatos (el ranking anterior más los
+ * ids del anillo), se queda con los {@code candidatos} mejores en un montículo y publica la lista ordenada:
+ * leer el top-N es un subList de esa lista. Un producto que entra en tendencia se añade muchas veces, así
+ * que aparece en el anillo aunque este se sobrescriba entre refrescos.
+ *
+ * <p>Cuenta lo que pasa por este nodo: detrás de un balanceador, cada uno ve una muestra del total.
+ */
+@Slf4j
+@Service
+public class Tendencias implements DisposableBean {
+
+    /** Producto del ranking y su puntuación: añadidos al carrito ponderados por antigüedad. */
+    public record Entrada(long productoId, double puntuacion) {
+    }
+
+    // Por debajo, lo que queda de un único añadido de hace más de dos vidas medias: no es tendencia
+    private static final double MINIMO = 0.25;
+    private static final Comparator<Entrada> MEJOR_PRIMERO =
+            Comparator.comparingDouble(Entrada::puntuacion).reversed().thenComparingLong(Entrada::productoId);
+
+    private final boolean habilitado;
+    private final ConteoMinimo conteo;
+    private final long nanosTramo;
+    private final double[] pesos;      // por antigüedad del tramo: 0 es el actual
+    private final int candidatos;
+    private final AtomicLongArray recientes;
+    private final AtomicLong escritos = new AtomicLong();
+    private final long inicio = System.nanoTime();
+    private final Disposable refrescoPeriodico;
+
+    private volatile int tramo;
+    private volatile List<Entrada> ranking = List.of();
+    // Solo los toca el refresco
+    private long tramosPasados;
+    private long leidos;
+
+    public Tendencias(MeterRegistry registry,
+                      @Value("${app.tendencias.habilitado:true}") boolean habilitado,
+                      @Value("${app.tendencias.ventana:1h}") Duration ventana,
+                      @Value("${app.tendencias.subventanas:12}") int subventanas,
+                      @Value("${app.tendencias.vida-media:15m}") Duration vidaMedia,
+                      @Value("${app.tendencias.ancho:2048}") int ancho,
+                      @Value("${app.tendencias.candidatos:100}") int candidatos,
+                      @Value("${app.tendencias.recientes:4096}") int recientes,
+                      @Value("${app.tendencias.refresco:1s}") Duration refresco) {
+        this.habilitado = habilitado;
+        int tramos = Math.max(1, subventanas);
+        this.conteo = new ConteoMinimo(habilitado ? tramos : 1, habilitado ? ancho : 1);
+        this.nanosTramo = Math.max(1, ventana.toNanos() / tramos);
+        this.pesos = new double[tramos];
+        for (int edad = 0; edad < tramos; edad++) {
+            pesos[edad] = Math.pow(0.5, (double) edad * nanosTramo / vidaMedia.toNanos());
+        }
+        this.candidatos = Math.max(1, candidatos);
+        this.recientes = new AtomicLongArray(Integer.highestOneBit(Math.max(2, habilitado ? recientes : 1) - 1) << 1);
+        Gauge.builder("productos.tendencias.bytes", this, t -> t.conteo.bytes() + 8.0 * t.recientes.length())
+                .description("Memoria del sketch de tendencias")
+                .register(registry);
+        this.refrescoPeriodico = habilitado
+                ? Flux.interval(refresco)
+                    .onBackpressureDrop()
+                    .subscribe(t -> {
+                        try {
+                            refrescar(System.nanoTime());
+                        } catch (RuntimeException e) {
+                            log.warn("No se pudo recalcular el ranking de tendencias: {}", e.toString());
+                        }
+                    })
+                : null;
+    }
+
+    /** Un añadido al carrito de ese producto. */
+    public void registrar(long productoId) {
+        if (!habilitado) return;
+        conteo.sumar(tramo, productoId);
+        long n = escritos.getAndIncrement();
+        recientes.set((int) (n & (recientes.length() - 1)), productoId);
+    }
+
+    /** Los {@code n} primeros del último ranking, de más a menos puntuación. */
+    public List<Entrada> top(int n) {
+        List<Entrada> actual = ranking;
+        return actual.subList(0, Math.min(n, actual.size()));
+    }
+
+    synchronized void refrescar(long ahora) {
+        rotar(ahora);
+
+        Set<Long> ids = new HashSet<>();
+        for (Entrada e : ranking) ids.add(e.productoId());
+        long hasta = escritos.get();
+        for (long i = Math.max(leidos, hasta - recientes.length()); i < hasta; i++) {
+            ids.add(recientes.get((int) (i & (recientes.length() - 1))));
+        }
+        leidos = hasta;
+
+        // Montículo de mínimos con los mejores: el peor de ellos en la cima, listo para salir
+        PriorityQueue<Entrada> mejores = new PriorityQueue<>(candidatos + 1, MEJOR_PRIMERO.reversed());
+        for (long id : ids) {
+            double puntuacion = puntuacion(id);
+            if (puntuacion < MINIMO) continue;
+            if (mejores.size() < candidatos) {
+                mejores.add(new Entrada(id, puntuacion));
+            } else if (MEJOR_PRIMERO.compare(new Entrada(id, puntuacion), mejores.peek()) < 0) {
+                mejores.poll();
+                mejores.add(new Entrada(id, puntuacion));
+            }
+        }
+        List<Entrada> nuevo = new ArrayList<>(mejores);
+        nuevo.sort(MEJOR_PRIMERO);
+        ranking = List.copyOf(nuevo);
+    }
+
+    // Vacía el tramo siguiente antes de pasar a sumar en él: lo que se sume a partir de ahí ya es nuevo
+    private void rotar(long ahora) {
+        int tramos = conteo.tramos();
+        long objetivo = Math.max(0, ahora - inicio) / nanosTramo;
+        tramosPasados = Math.max(tramosPasados, objetivo - tramos); // tras un parón largo todo está caducado
+        while (tramosPasados < objetivo) {
+            int siguiente = (int) ((tramosPasados + 1) % tramos);
+            conteo.vaciar(siguiente);
+            tramo = siguiente;
+            tramosPasados++;
+        }
+    }
+
+    private double puntuacion(long productoId) {
+        int tramos = conteo.tramos(), actual = tramo;
+        double total = 0;
+        for (int edad = 0; edad < tramos; edad++) {
+            total += pesos[edad] * conteo.estimar(Math.floorMod(actual - edad, tramos), productoId);
+        }
+        return total;
+    }
+
+    @Override
+    public void destroy() {
+        if (refrescoPeriodico != null) refrescoPeriodico.dispose();
+    }
+}
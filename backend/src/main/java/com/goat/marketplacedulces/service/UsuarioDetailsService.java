@@ -0,0 +1,37 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.repository.ConsultasCompartidas;
+import com.goat.marketplacedulces.repository.Replica;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Carga el usuario desde la tabla usuarios. Lo usa JwtAuthFilter en modo "lookup"
+ * (app.auth.modo=lookup); en modo "stateless" el filtro no consulta la BD. Las peticiones simultáneas de
+ * un mismo usuario comparten la lectura de la réplica (ConsultasCompartidas).
+ */
+@Service
+@RequiredArgsConstructor
+public class UsuarioDetailsService implements ReactiveUserDetailsService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final ConsultasCompartidas compartidas;
+
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        // Réplica primero; un usuario recién registrado puede no estar aún y se busca en la primaria.
+        // Deshabilitar a alguien tarda en verse lo que tarde la réplica (unos segundos).
+        return compartidas.mono("usuario", username, () -> Replica.leer(usuarioRepository.findByUsername(username)))
+                .switchIfEmpty(Mono.defer(() -> usuarioRepository.findByUsername(username)))
+                .map(u -> User.withUsername(u.getUsername())
+                        .password(u.getPassword())
+                        .roles(u.getRol())
+                        .disabled(!Boolean.TRUE.equals(u.getEnabled()))
+                        .build());
+    }
+}
@@ -0,0 +1,60 @@
+package com.goat.marketplacedulces.config;
+
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import com.goat.marketplacedulces.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ActuatorSeguridadTest {
+
+    @Autowired
+    private WebTestClient web;
+
+    @Autowired
+    private JwtService jwtService;
+
+    // Sin BD: la carga del filtro de usuarios y de la lista de revocación devuelve vacío
+    @TestConfiguration
+    static class SinBd {
+        @Bean
+        @Primary
+        UsuarioRepository usuarioRepositoryFalso() {
+            return mock(UsuarioRepository.class, inv -> {
+                Class<?> tipo = inv.getMethod().getReturnType();
+                if (tipo == Flux.class) return Flux.empty();
+                if (tipo == Mono.class) return Mono.empty();
+                return Answers.RETURNS_DEFAULTS.answer(inv);
+            });
+        }
+    }
+
+    @Test
+    void laSaludEsPublicaYLasMetricasSoloParaAdmin() {
+        // Sin BD la salud general sale DOWN (503): lo que importa es que no pide token
+        web.get().uri("/actuator/health").exchange().expectStatus().isEqualTo(503);
+        web.get().uri("/actuator/health/liveness").exchange().expectStatus().isOk();
+
+        web.get().uri("/actuator/prometheus").exchange().expectStatus().isUnauthorized();
+        web.get().uri("/actuator/metrics")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtService.generateToken("ana", "USUARIO"))
+                .exchange()
+                .expectStatus().isForbidden();
+        // En los tests no se exporta a Prometheus (no hay /actuator/prometheus): basta con metrics
+        web.get().uri("/actuator/metrics")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtService.generateToken("admin", "ADMIN"))
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
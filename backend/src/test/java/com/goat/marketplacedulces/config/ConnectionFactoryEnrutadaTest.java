@@ -0,0 +1,64 @@
+package com.goat.marketplacedulces.config;
+
+import com.goat.marketplacedulces.repository.Replica;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ConnectionFactoryEnrutadaTest {
+
+    private final Connection deLaPrimaria = mock(Connection.class);
+    private final Connection deLaReplica = mock(Connection.class);
+    private final ConnectionFactory primaria = mock(ConnectionFactory.class);
+    private final ConnectionFactory replica = mock(ConnectionFactory.class);
+
+    @Test
+    void soloLasLecturasMarcadasVanALaReplica() {
+        doReturn(Mono.just(deLaPrimaria)).when(primaria).create();
+        doReturn(Mono.just(deLaReplica)).when(replica).create();
+        var enrutada = new ConnectionFactoryEnrutada(primaria, replica, Duration.ofSeconds(10));
+
+        assertThat(conexion(enrutada, false)).isSameAs(deLaPrimaria);
+        assertThat(conexion(enrutada, true)).isSameAs(deLaReplica);
+        assertThat(enrutada.unwrap()).isSameAs(primaria);
+    }
+
+    @Test
+    void conLaReplicaCaidaSeLeeDeLaPrimariaSinReintentarHastaQuePasaElTiempo() {
+        doReturn(Mono.just(deLaPrimaria)).when(primaria).create();
+        doReturn(Mono.error(new IllegalStateException("connection refused"))).when(replica).create();
+        var enrutada = new ConnectionFactoryEnrutada(primaria, replica, Duration.ofHours(1));
+
+        assertThat(conexion(enrutada, true)).isSameAs(deLaPrimaria);
+        assertThat(conexion(enrutada, true)).isSameAs(deLaPrimaria);
+        assertThat(enrutada.replicaCaida()).isTrue();
+        verify(replica, times(1)).create();
+    }
+
+    @Test
+    void pasadoElReintentoSeVuelveAProbarLaReplica() {
+        doReturn(Mono.just(deLaPrimaria)).when(primaria).create();
+        doReturn(Mono.error(new IllegalStateException("connection refused")))
+                .doReturn(Mono.just(deLaReplica))
+                .when(replica).create();
+        var enrutada = new ConnectionFactoryEnrutada(primaria, replica, Duration.ZERO);
+
+        assertThat(conexion(enrutada, true)).isSameAs(deLaPrimaria);
+        assertThat(conexion(enrutada, true)).isSameAs(deLaReplica);
+        assertThat(enrutada.replicaCaida()).isFalse();
+    }
+
+    private static Connection conexion(ConnectionFactory cf, boolean lectura) {
+        Mono<Connection> c = Mono.from(cf.create());
+        return (lectura ? Replica.leer(c) : c).block();
+    }
+}
@@ -0,0 +1,49 @@
+package com.goat.marketplacedulces.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.PathContainer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LimitadorTasaTest {
+
+    private static final long SEGUNDO = 1_000_000_000L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // auth: 2/s con ráfaga de 3; carrito: 10/s con ráfaga de 5; máximo 4 clientes por grupo
+    private final LimitadorTasa limitador = new LimitadorTasa(registry, true, 4, 2, 3, 10, 5, 50, 100);
+
+    @Test
+    void admiteLaRafagaYLuegoUnaPeticionPorIntervalo() {
+        LimitadorTasa.Grupo auth = limitador.grupo(PathContainer.parsePath("/auth/login"));
+        long t = 1000 * SEGUNDO;
+
+        for (int i = 0; i < 3; i++) assertThat(limitador.intentar(auth, "ip:1.2.3.4", t)).isZero();
+        long espera = limitador.intentar(auth, "ip:1.2.3.4", t);
+        assertThat(espera).isEqualTo(SEGUNDO / 2);
+        assertThat(limitador.intentar(auth, "ip:5.6.7.8", t)).isZero(); // otro cliente, otra cubeta
+
+        assertThat(limitador.intentar(auth, "ip:1.2.3.4", t + espera)).isZero();
+        assertThat(limitador.intentar(auth, "ip:1.2.3.4", t + espera)).isPositive();
+        assertThat(registry.counter("http.server.limite.rechazos", "grupo", "auth").count()).isEqualTo(2);
+    }
+
+    @Test
+    void resuelveGruposYDescartaPrimeroLasCubetasLlenas() {
+        assertThat(limitador.grupo(PathContainer.parsePath("/carrito/agregar")).nombre()).isEqualTo("carrito");
+        assertThat(limitador.grupo(PathContainer.parsePath("/pedidos")).nombre()).isEqualTo("carrito");
+        assertThat(limitador.grupo(PathContainer.parsePath("/productos/buscar")).nombre()).isEqualTo("general");
+        assertThat(limitador.grupo(PathContainer.parsePath("/actuator/health"))).isNull();
+
+        LimitadorTasa.Grupo carrito = limitador.grupo(PathContainer.parsePath("/carrito"));
+        long t = 1000 * SEGUNDO;
+        for (int i = 0; i < 5; i++) limitador.intentar(carrito, "u:activo", t); // cubeta vacía
+        for (int i = 0; i < 3; i++) limitador.intentar(carrito, "u:inactivo" + i, t - 10 * SEGUNDO);
+
+        // Lleno: entra uno nuevo y solo salen las cubetas que ya se habían rellenado
+        assertThat(limitador.intentar(carrito, "u:nuevo", t)).isZero();
+        assertThat(limitador.intentar(carrito, "u:activo", t)).isPositive();
+        assertThat(registry.get("http.server.limite.clientes").tag("grupo", "carrito").gauge().value()).isEqualTo(2);
+    }
+}
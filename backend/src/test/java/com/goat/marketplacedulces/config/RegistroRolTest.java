@@ -0,0 +1,79 @@
+package com.goat.marketplacedulces.config;
+
+import com.goat.marketplacedulces.model.Usuario;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RegistroRolTest {
+
+    @Autowired
+    private WebTestClient web;
+
+    @Autowired
+    private UsuarioRepository usuarios;
+
+    // Sin BD: lo que no se prepara en el test devuelve vacío (la carga del filtro y de la lista de revocación)
+    @TestConfiguration
+    static class SinBd {
+        @Bean
+        @Primary
+        UsuarioRepository usuarioRepositoryFalso() {
+            return mock(UsuarioRepository.class, inv -> {
+                Class<?> tipo = inv.getMethod().getReturnType();
+                if (tipo == Flux.class) return Flux.empty();
+                if (tipo == Mono.class) return Mono.empty();
+                return Answers.RETURNS_DEFAULTS.answer(inv);
+            });
+        }
+    }
+
+    @Test
+    void registrarseConRolAdminNoDaUnTokenDeAdmin() {
+        AtomicReference<Usuario> guardado = new AtomicReference<>();
+        when(usuarios.existsByUsername(anyString())).thenReturn(Mono.just(false));
+        when(usuarios.save(any(Usuario.class))).thenAnswer(inv -> {
+            Usuario u = inv.getArgument(0);
+            u.setId(1L);
+            guardado.set(u);
+            return Mono.just(u);
+        });
+        when(usuarios.findByUsername("intruso")).thenAnswer(inv -> Mono.justOrEmpty(guardado.get()));
+
+        web.post().uri("/auth/register")
+                .bodyValue(Map.of("username", "intruso", "password", "secreta", "rol", "ADMIN"))
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(guardado.get().getRol()).isEqualTo("USUARIO");
+
+        String token = (String) web.post().uri("/auth/login")
+                .bodyValue(Map.of("username", "intruso", "password", "secreta"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class).returnResult().getResponseBody().get("token");
+
+        web.post().uri("/usuarios/admin/deshabilitar")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+}
@@ -0,0 +1,64 @@
+package com.goat.marketplacedulces.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ConsultasCompartidasTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConsultasCompartidas compartidas = new ConsultasCompartidas(registry, true);
+
+    @Test
+    void lasLecturasIgualesEnCursoCompartenUnaConsultaYNoSeGuardaElResultado() {
+        AtomicInteger consultas = new AtomicInteger();
+        Sinks.Many<String> filas = Sinks.many().replay().all();
+        List<String> primera = new ArrayList<>(), segunda = new ArrayList<>(), otroUsuario = new ArrayList<>();
+
+        compartidas.flux("carrito", "ana", () -> lectura(consultas, filas)).subscribe(primera::add);
+        filas.tryEmitNext("pocky");
+        // Se une tarde: recibe también la fila ya emitida
+        compartidas.flux("carrito", "ana", () -> lectura(consultas, filas)).subscribe(segunda::add);
+        compartidas.flux("carrito", "luis", () -> lectura(consultas, Sinks.many().replay().all()))
+                .subscribe(otroUsuario::add);
+        filas.tryEmitNext("ramune");
+        filas.tryEmitComplete();
+
+        assertThat(primera).containsExactly("pocky", "ramune");
+        assertThat(segunda).containsExactly("pocky", "ramune");
+        assertThat(consultas).hasValue(2); // ana una vez, luis otra
+        assertThat(registry.counter("db.consultas.compartidas", "consulta", "carrito").count()).isEqualTo(1);
+
+        // Terminada la consulta, la siguiente lectura vuelve a la BD
+        compartidas.flux("carrito", "ana", () -> lectura(consultas, Sinks.many().replay().all())).subscribe();
+        assertThat(consultas).hasValue(3);
+    }
+
+    @Test
+    void dentroDeUnaTransaccionNoSeComparte() {
+        AtomicInteger consultas = new AtomicInteger();
+        Sinks.Many<String> filas = Sinks.many().replay().all();
+        compartidas.flux("pedidos", "ana", () -> lectura(consultas, filas)).subscribe();
+        compartidas.flux("pedidos", "ana", () -> lectura(consultas, filas))
+                .contextWrite(ctx -> ctx.put(TransactionContext.class, mock(TransactionContext.class)))
+                .subscribe();
+
+        assertThat(consultas).hasValue(2);
+    }
+
+    private static Flux<String> lectura(AtomicInteger consultas, Sinks.Many<String> filas) {
+        return Flux.defer(() -> {
+            consultas.incrementAndGet();
+            return filas.asFlux();
+        });
+    }
+}
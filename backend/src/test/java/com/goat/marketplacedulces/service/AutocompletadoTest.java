@@ -0,0 +1,80 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AutocompletadoTest {
+
+    private final List<Producto> productos = List.of(
+            producto(1L, "Ramune Original", 35),
+            producto(2L, "Ramune Melón", 80),
+            producto(3L, "Pocky Fresa", 12),
+            producto(4L, "Fresas con crema (KitKat)", 40),
+            producto(5L, "Mochi  Matcha", 0));
+
+    private final Autocompletado autocompletado = Autocompletado.de(productos);
+
+    @Test
+    void ignoraTildesYMayusculasYOrdenaPorStock() {
+        assertThat(nombres("RAMUNE mel")).containsExactly("Ramune Melón");
+        assertThat(nombres("ramune")).containsExactly("Ramune Melón", "Ramune Original");
+        assertThat(nombres("melon")).containsExactly("Ramune Melón");
+    }
+
+    @Test
+    void buscaPorInicioDeCualquierPalabraSinRepetirProductos() {
+        assertThat(nombres("fres")).containsExactly("Fresas con crema (KitKat)", "Pocky Fresa");
+        assertThat(nombres("kitkat")).containsExactly("Fresas con crema (KitKat)");
+        assertThat(nombres("mochi matcha")).containsExactly("Mochi  Matcha");
+        assertThat(nombres("atcha")).isEmpty();
+        assertThat(nombres("  ")).isEmpty();
+    }
+
+    @Test
+    void respetaElLimite() {
+        assertThat(autocompletado.sugerir("r", 1, productos)).extracting(Producto::getId).containsExactly(2L);
+    }
+
+    @Test
+    void enRangosGrandesDaLoMismoQueOrdenarTodo() {
+        Random rnd = new Random(3);
+        String[] palabras = {"pocky", "pepero", "panda", "ramune", "matcha", "mango", "melón"};
+        List<Producto> muchos = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            muchos.add(producto(id, palabras[rnd.nextInt(palabras.length)] + " " + palabras[rnd.nextInt(palabras.length)],
+                    rnd.nextInt(50)));
+        }
+        Autocompletado grande = Autocompletado.de(muchos);
+
+        for (String q : new String[]{"p", "m", "pa", "me", "mel"}) {
+            String normal = Autocompletado.normalizar(q);
+            List<Long> esperado = muchos.stream()
+                    .filter(p -> Arrays.stream(Autocompletado.normalizar(p.getNombre()).split(" ")).anyMatch(w -> w.startsWith(normal)))
+                    .sorted(Comparator.comparing(Producto::getStock).reversed().thenComparing(Producto::getId))
+                    .limit(10)
+                    .map(Producto::getId)
+                    .toList();
+            assertThat(grande.sugerir(q, 10, muchos)).extracting(Producto::getId).as(q).isEqualTo(esperado);
+        }
+    }
+
+    private List<String> nombres(String q) {
+        return autocompletado.sugerir(q, 10, productos).stream().map(Producto::getNombre).toList();
+    }
+
+    private static Producto producto(Long id, String nombre, int stock) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setStock(stock);
+        return p;
+    }
+}
@@ -0,0 +1,166 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Carrito;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.CarritoRepository;
+import com.goat.marketplacedulces.repository.ConsultasCompartidas;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CarritoBufferTest {
+
+    private final CarritoRepository repo = mock(CarritoRepository.class);
+    private final CatalogoCache catalogo = mock(CatalogoCache.class);
+    private final AtomicLong secuencia = new AtomicLong(100);
+    private final List<String> escrituras = new ArrayList<>();
+    private CarritoBuffer buffer;
+
+    @AfterEach
+    void apagar() {
+        if (buffer != null) buffer.destroy();
+    }
+
+    @Test
+    void agrupaLosClicsEnUnaSolaEscrituraConLaCantidadFinal() {
+        simularBd();
+        buffer = nuevo();
+
+        for (int i = 0; i < 50; i++) {
+            buffer.agregar("ana", 1L, 1).block();
+        }
+        Carrito otra = buffer.agregar("ana", 2L, 3).block();
+
+        assertThat(buffer.ver("ana").block())
+                .extracting(Carrito::getProductoId, Carrito::getCantidad)
+                .containsExactly(tuple(1L, 50), tuple(2L, 3));
+        assertThat(otra.getId()).isNotNull();
+        verify(repo, never()).escribirLineas(any(), any(), any(), any());
+
+        buffer.escribirTodo().block();
+        assertThat(escrituras).containsExactly("upsert ana/1=50 ana/2=3");
+        verify(repo, times(1)).findByUsername("ana");
+        verify(repo, times(1)).reservarIds(anyInt());
+
+        buffer.escribirTodo().block();
+        assertThat(escrituras).hasSize(1); // nada pendiente
+    }
+
+    @Test
+    void quitarYVolverAAgregarReutilizaElIdDeLaLinea() {
+        simularBd();
+        when(repo.findByUsername("ana")).thenReturn(Flux.just(new Carrito(7L, "ana", 1L, 2)));
+        buffer = nuevo();
+
+        assertThat(buffer.eliminar("ana", 7L).block()).isTrue();
+        Carrito linea = buffer.agregar("ana", 1L, 1).block();
+
+        assertThat(linea.getId()).isEqualTo(7L);
+        assertThat(linea.getCantidad()).isEqualTo(1);
+        buffer.escribirTodo().block();
+        assertThat(escrituras).containsExactly("upsert ana/1=1");
+    }
+
+    @Test
+    void siFallaLaEscrituraLosCambiosSiguenPendientes() {
+        simularBd();
+        doReturn(Mono.error(new TransientDataAccessResourceException("bd caída")))
+                .doAnswer(inv -> registrarUpsert(inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)))
+                .when(repo).escribirLineas(any(), any(), any(), any());
+        buffer = nuevo();
+
+        buffer.agregar("ana", 1L, 2).block();
+        assertThatThrownBy(() -> buffer.escribirTodo().block()).isInstanceOf(TransientDataAccessResourceException.class);
+        buffer.agregar("ana", 1L, 1).block();
+
+        buffer.destroy(); // al apagar se escribe lo pendiente
+        buffer = null;
+        assertThat(escrituras).containsExactly("upsert ana/1=3");
+    }
+
+    @Test
+    void productoInexistenteEs404SinTocarLaBd() {
+        simularBd();
+        buffer = nuevo();
+
+        assertThatThrownBy(() -> buffer.agregar("ana", 99L, 1).block())
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Producto no existe");
+        verify(repo, never()).findByUsername(anyString());
+    }
+
+    @Test
+    void enDirectoEscribeLoPendienteYRecargaDespues() {
+        simularBd();
+        buffer = nuevo();
+        buffer.agregar("ana", 1L, 4).block();
+
+        // Durante la operación directa el usuario no se atiende de memoria
+        Boolean enMemoria = buffer.enDirecto("ana", buffer.agregar("ana", 1L, 1).hasElement()).block();
+
+        assertThat(enMemoria).isFalse();
+        assertThat(escrituras).containsExactly("upsert ana/1=4");
+        buffer.ver("ana").block();
+        verify(repo, times(2)).findByUsername("ana");
+    }
+
+    private CarritoBuffer nuevo() {
+        return new CarritoBuffer(repo, catalogo, new EscriturasRecientes(Duration.ofSeconds(5), 1000, new ConsultasCompartidas(new SimpleMeterRegistry(), true)), true, Duration.ofHours(1), Duration.ofHours(1), Duration.ofHours(1), 1000);
+    }
+
+    private void simularBd() {
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        when(catalogo.snapshot()).thenReturn(Mono.just(new CatalogoSnapshot(1, List.of(p1, p2), new byte[0], "\"x\"")));
+        when(repo.findByUsername(anyString())).thenReturn(Flux.empty());
+        when(repo.reservarIds(anyInt())).thenAnswer(inv -> Flux.range(0, inv.getArgument(0))
+                .map(i -> secuencia.incrementAndGet()));
+        when(repo.escribirLineas(any(), any(), any(), any()))
+                .thenAnswer(inv -> registrarUpsert(inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)));
+        when(repo.borrarLineas(any(), any())).thenAnswer(inv -> {
+            String[] usernames = inv.getArgument(0);
+            Long[] productos = inv.getArgument(1);
+            StringBuilder sb = new StringBuilder("delete");
+            for (int i = 0; i < usernames.length; i++) sb.append(' ').append(usernames[i]).append('/').append(productos[i]);
+            return Mono.fromCallable(() -> {
+                escrituras.add(sb.toString());
+                return usernames.length;
+            });
+        });
+    }
+
+    private Mono<Integer> registrarUpsert(String[] usernames, Long[] productos, Integer[] cantidades) {
+        StringBuilder sb = new StringBuilder("upsert");
+        for (int i = 0; i < usernames.length; i++) {
+            sb.append(' ').append(usernames[i]).append('/').append(productos[i]).append('=').append(cantidades[i]);
+        }
+        return Mono.fromCallable(() -> {
+            escrituras.add(sb.toString());
+            return usernames.length;
+        });
+    }
+}
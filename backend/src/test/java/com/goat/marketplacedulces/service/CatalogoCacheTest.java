@@ -0,0 +1,88 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogoCacheTest {
+
+    private final ProductoRepository repo = mock(ProductoRepository.class);
+    private final CatalogoEventos eventos = mock(CatalogoEventos.class);
+    private final CatalogoCache cache = new CatalogoCache(repo, new ObjectMapper(), eventos);
+
+    @Test
+    void cargaUnaSolaVezYSirveDesdeMemoria() {
+        AtomicInteger consultas = new AtomicInteger();
+        when(repo.findAll()).thenReturn(Flux.defer(() -> {
+            consultas.incrementAndGet();
+            return Flux.just(producto(2L, "Pocky Fresa"), producto(1L, "Ramune Melón"));
+        }));
+
+        CatalogoSnapshot a = cache.snapshot().block();
+        CatalogoSnapshot b = cache.snapshot().block();
+
+        assertThat(consultas).hasValue(1);
+        assertThat(b).isSameAs(a);
+        assertThat(a.productos()).extracting(Producto::getId).containsExactly(1L, 2L);
+        assertThat(a.etag()).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    void aplicarPublicaSnapshotNuevoConOtroEtag() {
+        when(repo.findAll()).thenReturn(Flux.just(producto(1L, "Ramune Melón")));
+        CatalogoSnapshot antes = cache.snapshot().block();
+
+        cache.aplicar(producto(3L, "Mochi Matcha"));
+        CatalogoSnapshot despues = cache.snapshot().block();
+
+        assertThat(despues.version()).isGreaterThan(antes.version());
+        assertThat(despues.etag()).isNotEqualTo(antes.etag());
+        assertThat(despues.productos()).extracting(Producto::getNombre).containsExactly("Ramune Melón", "Mochi Matcha");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publicaSoloLoQueCambia() {
+        when(repo.findAll()).thenReturn(Flux.just(producto(1L, "Ramune Melón"), producto(2L, "Pocky Fresa")));
+        cache.snapshot().block();
+
+        Producto masCaro = producto(1L, "Ramune Melón");
+        masCaro.setPrecio(6000);
+        cache.aplicar(masCaro);
+        cache.aplicar(producto(3L, "Mochi Matcha"));
+        cache.actualizarStock(2L, 4);
+        cache.actualizarStock(1L, 10); // el que ya tenía: ni evento ni snapshot nuevo
+        cache.aplicarStockPendiente();
+
+        ArgumentCaptor<List<CatalogoEventos.Cambio>> cambios = ArgumentCaptor.forClass(List.class);
+        verify(eventos, times(3)).publicar(cambios.capture());
+        assertThat(cambios.getAllValues()).flatExtracting(l -> l)
+                .extracting(CatalogoEventos.Cambio::tipo, c -> c.producto().getId())
+                .containsExactly(tuple("precio", 1L), tuple("creado", 3L), tuple("stock", 2L));
+        assertThat(cache.snapshot().block().productos())
+                .extracting(Producto::getStock).containsExactly(10, 4, 10);
+    }
+
+    private static Producto producto(Long id, String nombre) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setTipo("Dulces");
+        p.setPrecio(5500);
+        p.setStock(10);
+        return p;
+    }
+}
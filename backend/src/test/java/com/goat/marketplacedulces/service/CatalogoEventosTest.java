@@ -0,0 +1,58 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogoEventosTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CatalogoEventos eventos = new CatalogoEventos(new ObjectMapper(), registry, 2, Duration.ofHours(1));
+
+    @Test
+    void clienteLentoPierdeLoMasAntiguoSinFrenarALosDemas() {
+        List<ServerSentEvent<String>> rapido = new CopyOnWriteArrayList<>();
+        eventos.suscribir().subscribe(rapido::add);
+
+        // El lento no pide nada hasta que se han publicado 5 cambios: su buffer de 2 se queda con los últimos
+        StepVerifier.create(eventos.suscribir(), 0)
+                .then(() -> {
+                    for (int stock = 1; stock <= 5; stock++) {
+                        eventos.publicar(List.of(new CatalogoEventos.Cambio(CatalogoEventos.STOCK, producto(stock))));
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(e -> assertThat(e.data()).contains("\"stock\":4"))
+                .assertNext(e -> {
+                    assertThat(e.event()).isEqualTo("stock");
+                    assertThat(e.id()).isEqualTo("5");
+                    assertThat(e.data()).contains("\"stock\":5");
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(rapido).hasSize(5);
+        // El mismo evento (serializado una vez) para todos los clientes
+        assertThat(rapido.get(4).data()).contains("\"stock\":5");
+        assertThat(registry.get("catalogo.eventos.descartados").counter().count()).isEqualTo(3);
+        assertThat(registry.get("catalogo.eventos.suscriptores").gauge().value()).isEqualTo(1);
+    }
+
+    private static Producto producto(int stock) {
+        Producto p = new Producto();
+        p.setId(7L);
+        p.setNombre("Pocky Fresa");
+        p.setPrecio(5500);
+        p.setStock(stock);
+        return p;
+    }
+}
@@ -0,0 +1,154 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.model.Producto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogoIndiceTest {
+
+    private static final String[] TIPOS = {"Galletas", "Bebidas", "Chocolates", "Gomitas"};
+    private static final String[] PAISES = {"Japón", "México", "Corea", null};
+
+    @Test
+    void combinaFiltrosOrdenaYPagina() {
+        CatalogoIndice indice = CatalogoIndice.de(List.of(
+                producto(1L, "Pocky Fresa", "Galletas", "Japón", 4500, 10),
+                producto(2L, "Ramune Melón", "Bebidas", "Japón", 9800, 0),
+                producto(3L, "Pocky Matcha", "Galletas", "Japón", 5200, 3),
+                producto(4L, "Pepero", "Galletas", "Corea", 3900, 7),
+                producto(5L, "Hello Panda", "Galletas", "Japón", 6100, 1)));
+
+        FiltroProductos filtro = new FiltroProductos("Galletas", "Japón", 5000, 7000, true);
+        CatalogoIndice.Resultado r = indice.buscar(filtro, CatalogoIndice.Orden.PRECIO_DESC, 0, 10);
+        assertThat(r.productos()).extracting(Producto::getId).containsExactly(5L, 3L);
+        assertThat(r.total()).isEqualTo(2);
+
+        CatalogoIndice.Resultado pagina = indice.buscar(FiltroProductos.TODOS, CatalogoIndice.Orden.NOMBRE, 1, 2);
+        assertThat(pagina.productos()).extracting(Producto::getNombre).containsExactly("Pepero", "Pocky Fresa");
+        assertThat(pagina.total()).isEqualTo(5);
+
+        assertThat(indice.buscar(new FiltroProductos("Galletas", null, null, null, false),
+                CatalogoIndice.Orden.ID, 0, 10).productos()).extracting(Producto::getId).containsExactly(1L, 3L, 4L, 5L);
+        assertThat(indice.buscar(new FiltroProductos("Turrones", null, null, null, false),
+                CatalogoIndice.Orden.ID, 0, 10).total()).isZero();
+    }
+
+    @Test
+    void facetasCuentanPorValorIgnorandoSuPropioFiltro() {
+        CatalogoIndice indice = CatalogoIndice.de(List.of(
+                producto(1L, "Pocky Fresa", "Galletas", "Japón", 4500, 10),
+                producto(2L, "Ramune Melón", "Bebidas", "Japón", 9800, 0),
+                producto(3L, "Pepero", "Galletas", "Corea", 3900, 7)));
+
+        Facetas todas = indice.facetas(FiltroProductos.TODOS);
+        assertThat(todas.total()).isEqualTo(3);
+        assertThat(todas.conStock()).isEqualTo(2);
+        assertThat(todas.tipos().get("Galletas")).isEqualTo(new Facetas.Faceta(2, 2, 3900, 4500));
+        assertThat(todas.paises().get("Japón")).isEqualTo(new Facetas.Faceta(2, 1, 4500, 9800));
+
+        // Filtrando por Japón, los tipos se cuentan dentro de Japón y los países siguen mostrando todos
+        Facetas japon = indice.facetas(new FiltroProductos(null, "Japón", null, null, false));
+        assertThat(japon.total()).isEqualTo(2);
+        assertThat(japon.tipos()).containsOnlyKeys("Galletas", "Bebidas");
+        assertThat(japon.tipos().get("Galletas").total()).isEqualTo(1);
+        assertThat(japon.paises().get("Corea").total()).isEqualTo(1);
+
+        // Un cambio de stock actualiza los contadores sin reconstruir
+        Facetas tras = indice.actualizar(List.of(producto(2L, "Ramune Melón", "Bebidas", "Japón", 9800, 5)))
+                .facetas(FiltroProductos.TODOS);
+        assertThat(tras.paises().get("Japón").conStock()).isEqualTo(2);
+        assertThat(tras.tipos().get("Galletas")).isSameAs(todas.tipos().get("Galletas"));
+    }
+
+    @Test
+    void actualizarIncrementalDaLoMismoQueReconstruir() {
+        Random rnd = new Random(42);
+        List<Producto> productos = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) productos.add(aleatorio(rnd, id));
+        CatalogoIndice indice = CatalogoIndice.de(productos);
+
+        for (int paso = 0; paso < 200; paso++) {
+            List<Producto> cambios = new ArrayList<>();
+            int n = 1 + rnd.nextInt(paso % 20 == 0 ? 100 : 3);
+            for (int i = 0; i < n; i++) {
+                // Sobre todo cambios de stock/precio/tipo de productos existentes; a veces altas al final
+                long id = rnd.nextInt(10) == 0 ? productos.size() + 1 : 1 + rnd.nextInt(productos.size());
+                Producto p = aleatorio(rnd, id);
+                cambios.add(p);
+                if (id > productos.size()) productos.add(p);
+                else productos.set((int) id - 1, p);
+            }
+            indice = indice.actualizar(cambios);
+            CatalogoIndice completo = CatalogoIndice.de(productos);
+
+            FiltroProductos filtro = new FiltroProductos(
+                    rnd.nextBoolean() ? TIPOS[rnd.nextInt(TIPOS.length)] : null,
+                    rnd.nextBoolean() ? PAISES[rnd.nextInt(PAISES.length - 1)] : null,
+                    rnd.nextBoolean() ? rnd.nextInt(5000) : null,
+                    rnd.nextBoolean() ? 5000 + rnd.nextInt(5000) : null,
+                    rnd.nextBoolean());
+            assertThat(indice.facetas(FiltroProductos.TODOS)).isEqualTo(completo.facetas(FiltroProductos.TODOS));
+            assertThat(indice.facetas(filtro)).isEqualTo(completo.facetas(filtro));
+            for (CatalogoIndice.Orden orden : CatalogoIndice.Orden.values()) {
+                assertThat(indice.buscar(filtro, orden, 0, 1000))
+                        .as("paso %d, orden %s", paso, orden)
+                        .isEqualTo(completo.buscar(filtro, orden, 0, 1000));
+            }
+        }
+        // Y el orden por precio es realmente por precio
+        List<Producto> porPrecio = indice.buscar(FiltroProductos.TODOS, CatalogoIndice.Orden.PRECIO, 0, 1000).productos();
+        assertThat(porPrecio).isSortedAccordingTo(Comparator.comparing(Producto::getPrecio));
+    }
+
+    @Test
+    void paginarPorCursorRecorreLoMismoQueSinPaginarYNoSeDesplaza() {
+        Random rnd = new Random(11);
+        List<Producto> productos = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) productos.add(aleatorio(rnd, id));
+        CatalogoIndice indice = CatalogoIndice.de(productos);
+
+        for (CatalogoIndice.Orden orden : CatalogoIndice.Orden.values()) {
+            FiltroProductos filtro = new FiltroProductos(null, "Japón", 1000, 9000, false);
+            CatalogoIndice.Resultado completo = indice.buscar(filtro, orden, 0, 1000);
+
+            List<Producto> recorrido = new ArrayList<>();
+            CatalogoIndice.Resultado pagina = indice.buscar(filtro, orden, 0, 7);
+            recorrido.addAll(pagina.productos());
+            while (pagina.siguiente() != null) {
+                CatalogoIndice.Cursor cursor = CatalogoIndice.Cursor.leer(pagina.siguiente().codificar());
+                pagina = indice.buscarDesde(filtro, cursor, 7);
+                assertThat(pagina.total()).isNull();
+                recorrido.addAll(pagina.productos());
+            }
+            assertThat(recorrido).as("orden %s", orden).isEqualTo(completo.productos());
+        }
+
+        // Un alta por delante del cursor no mueve la página siguiente (con offset se repetiría un producto)
+        CatalogoIndice.Resultado primera = indice.buscar(FiltroProductos.TODOS, CatalogoIndice.Orden.PRECIO, 0, 10);
+        CatalogoIndice.Resultado esperada = indice.buscarDesde(FiltroProductos.TODOS, primera.siguiente(), 10);
+        CatalogoIndice conAlta = indice.actualizar(List.of(producto(301L, "Barato", "Gomitas", "Corea", 0, 1)));
+        assertThat(conAlta.buscarDesde(FiltroProductos.TODOS, primera.siguiente(), 10)).isEqualTo(esperada);
+    }
+
+    private static Producto aleatorio(Random rnd, long id) {
+        return producto(id, "Producto " + rnd.nextInt(1000), TIPOS[rnd.nextInt(TIPOS.length)],
+                PAISES[rnd.nextInt(PAISES.length)], rnd.nextInt(10_000), rnd.nextInt(3));
+    }
+
+    private static Producto producto(Long id, String nombre, String tipo, String pais, int precio, int stock) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setTipo(tipo);
+        p.setPaisOrigen(pais);
+        p.setPrecio(precio);
+        p.setStock(stock);
+        return p;
+    }
+}
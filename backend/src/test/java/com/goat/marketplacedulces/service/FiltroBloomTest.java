@@ -0,0 +1,34 @@
+package com.goat.marketplacedulces.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FiltroBloomTest {
+
+    @Test
+    void sinFalsosNegativosYConLosFalsosPositivosPrevistos() {
+        FiltroBloom filtro = new FiltroBloom(20_000, 0.01);
+        for (int i = 0; i < 20_000; i++) filtro.anadir("usuario" + i);
+
+        for (int i = 0; i < 20_000; i++) assertThat(filtro.contiene("usuario" + i)).isTrue();
+        int falsos = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filtro.contiene("otro" + i)) falsos++;
+        }
+        assertThat(falsos / 100_000.0).isLessThan(0.015);
+        assertThat(filtro.funciones()).isEqualTo(7);
+        assertThat(filtro.falsosPositivosEstimados()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    void repetirUnValorNoCuentaComoOtroElemento() {
+        FiltroBloom filtro = new FiltroBloom(1000, 0.01);
+        assertThat(filtro.contiene("juan456")).isFalse();
+        filtro.anadir("juan456");
+        filtro.anadir("juan456");
+        assertThat(filtro.contiene("juan456")).isTrue();
+        assertThat(filtro.contiene("Juan456")).isFalse();
+        assertThat(filtro.elementos()).isEqualTo(1);
+    }
+}
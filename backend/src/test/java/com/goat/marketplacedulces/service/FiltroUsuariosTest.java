@@ -0,0 +1,71 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.repository.NotificacionesPg;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FiltroUsuariosTest {
+
+    private final UsuarioRepository usuarios = mock(UsuarioRepository.class);
+    private final NotificacionesPg notificaciones = mock(NotificacionesPg.class);
+    private final Sinks.Many<NotificacionesPg.Aviso> avisos = Sinks.many().unicast().onBackpressureBuffer();
+    private final FiltroUsuarios filtro = new FiltroUsuarios(usuarios, notificaciones, new SimpleMeterRegistry(),
+            true, 10_000, 0.001);
+
+    @BeforeEach
+    void preparar() {
+        when(notificaciones.escuchar(FiltroUsuarios.CANAL)).thenReturn(avisos.asFlux());
+        when(usuarios.todosLosUsernames()).thenReturn(Flux.just("ana", "beto"));
+        filtro.cargar();
+    }
+
+    @AfterEach
+    void cerrar() {
+        filtro.destroy();
+    }
+
+    @Test
+    void anadeLosAvisosYReintentaElPropio() throws Exception {
+        assertThat(filtro.puedeExistir("ana")).isTrue();
+        assertThat(filtro.puedeExistir("zoe")).isFalse();
+
+        avisos.tryEmitNext(new NotificacionesPg.Aviso("zoe")); // INSERT de otro nodo o de fuera
+        assertThat(filtro.puedeExistir("zoe")).isTrue();
+
+        AtomicInteger intentos = new AtomicInteger();
+        when(notificaciones.notificar(FiltroUsuarios.CANAL, "eva")).thenReturn(Mono.defer(() ->
+                intentos.incrementAndGet() < 3 ? Mono.error(new IllegalStateException("sin conexión")) : Mono.empty()));
+        filtro.registrado("eva");
+        assertThat(filtro.puedeExistir("eva")).isTrue();
+        for (int i = 0; i < 50 && intentos.get() < 3; i++) Thread.sleep(50);
+        assertThat(intentos).hasValue(3);
+    }
+
+    @Test
+    void trasUnCorteConsultaLaBdHastaReleerLaTabla() {
+        Sinks.Many<String> tabla = Sinks.many().unicast().onBackpressureBuffer();
+        when(usuarios.todosLosUsernames()).thenReturn(tabla.asFlux());
+
+        avisos.tryEmitNext(new NotificacionesPg.Aviso(null)); // LISTEN reconectado: pudo perderse "zoe"
+        assertThat(filtro.puedeExistir("zoe")).isTrue();
+        assertThat(filtro.puedeExistir("nadie")).isTrue();
+
+        tabla.tryEmitNext("ana");
+        tabla.tryEmitNext("zoe");
+        tabla.tryEmitComplete();
+        assertThat(filtro.puedeExistir("zoe")).isTrue();
+        assertThat(filtro.puedeExistir("nadie")).isFalse();
+    }
+}
@@ -0,0 +1,81 @@
+package com.goat.marketplacedulces.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashingServiceTest {
+
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private HashingService hashing;
+
+    @AfterEach
+    void cerrar() {
+        liberar.countDown();
+        if (hashing != null) hashing.destroy();
+    }
+
+    @Test
+    void rechazaCon503CuandoElPoolEstaLleno() {
+        PasswordEncoder lento = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence raw, String encoded) {
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        hashing = new HashingService(lento, 4, 1, 1, 2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        hashing.bindTo(registry);
+
+        // 1 en ejecución + 1 en cola; el tercero no cabe
+        hashing.matches("a", "x").subscribe();
+        hashing.matches("b", "x").subscribe();
+        Throwable error = hashing.matches("c", "x")
+                .then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .block();
+
+        assertThat(error).isInstanceOf(ServicioSaturadoException.class);
+        assertThat(((ServicioSaturadoException) error).getHeaders().getFirst("Retry-After")).isEqualTo("2");
+        assertThat(registry.get("auth.bcrypt.rechazos").counter().count()).isEqualTo(1);
+        assertThat(registry.get("auth.bcrypt.cola").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void mideElHashSinLaEsperaEnCola() {
+        hashing = new HashingService(new BCryptPasswordEncoder(4), 4, 1, 8, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        hashing.bindTo(registry);
+
+        String hash = hashing.encode("dulce").block();
+        hashing.matches("dulce", hash).block();
+
+        assertThat(registry.get("auth.bcrypt").tag("operacion", "encode").timer().count()).isEqualTo(1);
+        assertThat(registry.get("auth.bcrypt").tag("operacion", "matches").timer().count()).isEqualTo(1);
+        assertThat(registry.get("auth.bcrypt.espera").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void detectaHashesConOtroCosto() {
+        hashing = new HashingService(new BCryptPasswordEncoder(4), 4, 1, 8, 1);
+        String hash = hashing.encode("dulce").block();
+
+        assertThat(hashing.matches("dulce", hash).block()).isTrue();
+        assertThat(hashing.necesitaRehash(hash)).isFalse();
+        assertThat(hashing.necesitaRehash("$2a$06$abcdefghijklmnopqrstuu")).isTrue();
+        assertThat(Flux.range(0, 3).flatMap(i -> hashing.encode("x" + i)).collectList().block()).hasSize(3);
+    }
+}
@@ -0,0 +1,39 @@
+package com.goat.marketplacedulces.service;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtServiceTest {
+
+    private final JwtService jwt = new JwtService(100);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void reutilizaLosClaimsVerificadosDelMismoToken() {
+        jwt.bindTo(registry);
+        String token = jwt.generateToken("juan456", "USUARIO");
+
+        assertThat(jwt.extractUsername(token)).isEqualTo("juan456");
+        assertThat(jwt.extractRole(token)).isEqualTo("USUARIO");
+        assertThat(jwt.isTokenValid(token, "juan456")).isTrue();
+
+        assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void noAceptaOtroPayloadConUnaFirmaYaCacheada() {
+        String token = jwt.generateToken("juan456", "USUARIO");
+        String otro = jwt.generateToken("admin", "ADMIN");
+        jwt.extractUsername(token);
+
+        String firma = token.substring(token.lastIndexOf('.'));
+        String falso = otro.substring(0, otro.lastIndexOf('.')) + firma;
+
+        assertThatThrownBy(() -> jwt.extractUsername(falso)).isInstanceOf(JwtException.class);
+    }
+}
@@ -0,0 +1,56 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.model.Producto;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LectorProductosTest {
+
+    @Test
+    void csvConCabeceraEnOtroOrdenYComillas() {
+        LectorProductos csv = LectorProductos.csv();
+
+        assertThat(csv.leer("precio,nombre,tipo,pais_origen,stock")).isNull();
+        Producto p = csv.leer("4500,\"Mochi \"\"Sakura\"\", edición limitada\",Dulces,Japón,");
+
+        assertThat(p.getId()).isNull();
+        assertThat(p.getNombre()).isEqualTo("Mochi \"Sakura\", edición limitada");
+        assertThat(p.getPaisOrigen()).isEqualTo("Japón");
+        assertThat(p.getPrecio()).isEqualTo(4500);
+        assertThat(p.getStock()).isZero(); // vacío = 0, como el DEFAULT de la tabla
+        assertThat(csv.leer("")).isNull();
+    }
+
+    @Test
+    void csvRechazaFilasNoValidasYCabecerasIncompletas() {
+        LectorProductos csv = LectorProductos.csv();
+        csv.leer("id,nombre,tipo,precio,stock");
+
+        assertThatThrownBy(() -> csv.leer("1,Pocky,Galletas,-5,3")).hasMessageContaining("precio");
+        assertThatThrownBy(() -> csv.leer("x,Pocky,Galletas,100,3")).hasMessageContaining("id no es un entero");
+        assertThatThrownBy(() -> csv.leer("2,,Galletas,100,3")).hasMessageContaining("nombre es obligatorio");
+        assertThatThrownBy(() -> csv.leer("3,\"Pocky,Galletas,100,3")).hasMessageContaining("Comillas");
+        assertThat(csv.leer("4,Pocky,Galletas,100,3").getId()).isEqualTo(4L);
+
+        assertThatThrownBy(() -> LectorProductos.csv().leer("nombre,precio"))
+                .isInstanceOf(LectorProductos.CabeceraNoValida.class)
+                .hasMessageContaining("tipo");
+    }
+
+    @Test
+    void ndjson() {
+        LectorProductos ndjson = LectorProductos.ndjson(new ObjectMapper());
+
+        Producto p = ndjson.leer("{\"id\":7,\"nombre\":\"Ramune\",\"tipo\":\"Bebidas\",\"paisOrigen\":\"Japón\",\"precio\":9800,\"stock\":40}");
+        assertThat(p.getId()).isEqualTo(7L);
+        assertThat(p.getStock()).isEqualTo(40);
+
+        assertThatThrownBy(() -> ndjson.leer("{\"nombre\":\"Ramune\"")).hasMessage("JSON no válido");
+        assertThatThrownBy(() -> ndjson.leer("[1,2]")).hasMessageContaining("objeto");
+        assertThatThrownBy(() -> ndjson.leer("{\"nombre\":\"" + "x".repeat(121) + "\",\"tipo\":\"a\",\"precio\":1}"))
+                .hasMessageContaining("120");
+    }
+}
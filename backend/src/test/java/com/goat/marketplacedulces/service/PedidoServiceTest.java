@@ -0,0 +1,103 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.dto.CarritoLinea;
+import com.goat.marketplacedulces.model.Pedido;
+import com.goat.marketplacedulces.repository.CarritoRepository;
+import com.goat.marketplacedulces.repository.PedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PedidoServiceTest {
+
+    private final CarritoRepository carrito = mock(CarritoRepository.class);
+    private final PedidoRepository pedidos = mock(PedidoRepository.class);
+    private final CarritoBuffer buffer = mock(CarritoBuffer.class);
+    private final ReservaStockService reservas = mock(ReservaStockService.class);
+    private final TransactionalOperator tx = mock(TransactionalOperator.class);
+    // Filas del carrito en la "BD": el DELETE solo cuenta las que aún estaban
+    private final Set<Long> filas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger stock = new AtomicInteger(10);
+
+    @BeforeEach
+    void preparar() {
+        filas.addAll(List.of(1L, 2L));
+        when(carrito.findDetalleByUsername("ana")).thenReturn(Flux.just(
+                new CarritoLinea(1L, 10L, "Pocky", 5500, 10, 1, 5500L, 16500L),
+                new CarritoLinea(2L, 11L, "Ramune", 5500, 10, 2, 11000L, 16500L)));
+        when(carrito.eliminarLineas(anyString(), any())).thenAnswer(inv -> Mono.fromCallable(() -> {
+            int n = 0;
+            for (Long id : (Long[]) inv.getArgument(1)) if (filas.remove(id)) n++;
+            return n;
+        }));
+        when(pedidos.save(any(Pedido.class))).thenAnswer(inv -> {
+            Pedido p = inv.getArgument(0);
+            p.setId(1L);
+            return Mono.just(p);
+        });
+        when(pedidos.insertarItems(anyLong(), any(), any(), any())).thenReturn(Flux.empty());
+        when(buffer.enDirecto(anyString(), any(Mono.class))).thenAnswer(inv -> inv.getArgument(1));
+        when(tx.transactional(any(Mono.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(reservas.reservar(anyLong(), anyInt())).thenAnswer(inv ->
+                Mono.fromCallable(() -> stock.addAndGet(-(int) inv.getArgument(1)) >= 0));
+        when(reservas.liberar(anyLong(), anyInt())).thenAnswer(inv ->
+                Mono.fromRunnable(() -> stock.addAndGet(inv.getArgument(1))));
+    }
+
+    @Test
+    void elMismoCarritoEnviadoDosVecesALaVezDaUnSoloPedido() {
+        PedidoService servicio = servicio(Duration.ofSeconds(5));
+
+        List<Boolean> resultados = Flux.range(0, 2)
+                .flatMap(i -> servicio.checkout("ana")
+                        .map(p -> true)
+                        .onErrorResume(ResponseStatusException.class, e -> Mono.just(false))
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        assertThat(resultados).containsExactlyInAnyOrder(true, false);
+        verify(pedidos, times(1)).save(any(Pedido.class));
+        assertThat(stock).hasValue(7); // lo del pedido que no se confirmó volvió
+    }
+
+    @Test
+    void trasElTimeoutSeLiberaTambienLaReservaQueEstabaEnCurso() throws Exception {
+        when(reservas.reservar(11L, 2)).thenReturn(Mono.delay(Duration.ofMillis(300))
+                .map(t -> stock.addAndGet(-2) >= 0));
+        PedidoService servicio = servicio(Duration.ofMillis(100));
+
+        assertThatThrownBy(() -> servicio.checkout("ana").block())
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("503");
+
+        for (int i = 0; i < 50 && stock.get() != 10; i++) Thread.sleep(20);
+        assertThat(stock).hasValue(10);
+        verify(pedidos, times(0)).save(any(Pedido.class));
+    }
+
+    private PedidoService servicio(Duration timeout) {
+        return new PedidoService(carrito, pedidos, buffer, mock(EscriturasRecientes.class), reservas, tx, timeout);
+    }
+}
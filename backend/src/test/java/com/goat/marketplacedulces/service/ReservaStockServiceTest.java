@@ -0,0 +1,100 @@
+package com.goat.marketplacedulces.service;
+
+import com.goat.marketplacedulces.dto.StockProducto;
+import com.goat.marketplacedulces.repository.ProductoRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReservaStockServiceTest {
+
+    private final AtomicInteger stockBd = new AtomicInteger(50);
+    private final AtomicInteger consultasBd = new AtomicInteger();
+    private final ProductoRepository repo = mock(ProductoRepository.class);
+
+    @Test
+    void noVendeMasDeLoQueHayConCompradoresConcurrentes() {
+        simularBd();
+        ReservaStockService reservas = new ReservaStockService(repo, mock(CatalogoCache.class), mock(CatalogoDifusion.class), true, 7, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        long vendidos = Flux.range(0, 200)
+                .flatMap(i -> reservas.reservar(1L, 1).subscribeOn(Schedulers.parallel()), 64)
+                .filter(ok -> ok)
+                .count()
+                .block();
+
+        assertThat(vendidos).isEqualTo(50);
+        assertThat(stockBd).hasValue(0);
+        // Una recarga cada 7 unidades (más la que confirma que no queda), no una por comprador
+        assertThat(consultasBd.get()).isLessThanOrEqualTo(12);
+        reservas.destroy();
+    }
+
+    @Test
+    void liberarYApagarDevuelvenLoNoVendidoALaBd() {
+        simularBd();
+        ReservaStockService reservas = new ReservaStockService(repo, mock(CatalogoCache.class), mock(CatalogoDifusion.class), true, 20, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        assertThat(reservas.reservar(1L, 5).block()).isTrue();
+        assertThat(stockBd).hasValue(30);
+        reservas.liberar(1L, 5).block();
+        assertThat(reservas.disponibleLocal(1L)).isEqualTo(20);
+
+        reservas.destroy();
+        assertThat(stockBd).hasValue(50);
+    }
+
+    @Test
+    void publicaElStockVendibleYNoElQueDejaElLote() {
+        stockBd.set(25);
+        simularBd();
+        CatalogoCache catalogo = mock(CatalogoCache.class);
+        CatalogoDifusion difusion = mock(CatalogoDifusion.class);
+        ReservaStockService reservas = new ReservaStockService(repo, catalogo, difusion, true, 20, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        assertThat(reservas.reservar(1L, 1).block()).isTrue();
+
+        // En la BD quedan 5 y en el lote 19: a la venta hay 24
+        assertThat(stockBd).hasValue(5);
+        verify(catalogo, timeout(1000)).actualizarStock(1L, 24);
+        verify(difusion, timeout(1000)).stock(1L, 24);
+        verify(catalogo, never()).actualizarStock(eq(1L), eq(5));
+        verify(difusion, never()).stock(eq(1L), eq(5));
+
+        reservas.destroy(); // devuelve los 19: el vendible sigue siendo 24
+        assertThat(stockBd).hasValue(24);
+        verify(catalogo, after(100).never()).actualizarStock(eq(1L), eq(5));
+    }
+
+    private void simularBd() {
+        when(repo.reservarLote(anyLong(), anyInt())).thenAnswer(inv -> Mono.fromCallable(() -> {
+            consultasBd.incrementAndGet();
+            int pedido = inv.getArgument(1);
+            int antes = stockBd.getAndUpdate(s -> s - Math.min(s, pedido));
+            int concedido = Math.min(antes, pedido);
+            return new StockProducto(inv.getArgument(0), antes - concedido, concedido);
+        }));
+        when(repo.devolverStock(any(), any())).thenAnswer(inv -> {
+            Long[] ids = inv.getArgument(0);
+            Integer[] cantidades = inv.getArgument(1);
+            return Flux.range(0, ids.length)
+                    .map(i -> new StockProducto(ids[i], stockBd.addAndGet(cantidades[i]), -cantidades[i]));
+        });
+    }
+}
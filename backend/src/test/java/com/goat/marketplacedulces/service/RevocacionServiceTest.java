@@ -0,0 +1,112 @@
+package com.goat.marketplacedulces.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.goat.marketplacedulces.repository.NotificacionesPg;
+import com.goat.marketplacedulces.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RevocacionServiceTest {
+
+    private final UsuarioRepository usuarios = mock(UsuarioRepository.class);
+    private final NotificacionesPg notificaciones = mock(NotificacionesPg.class);
+    private final Sinks.Many<NotificacionesPg.Aviso> avisos = Sinks.many().unicast().onBackpressureBuffer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RevocacionService revocacion;
+
+    @BeforeEach
+    void preparar() {
+        when(notificaciones.nodo()).thenReturn("este");
+        when(notificaciones.notificar(anyString(), anyString())).thenReturn(Mono.empty());
+        when(notificaciones.escuchar(RevocacionService.CANAL)).thenReturn(avisos.asFlux());
+        when(usuarios.deshabilitados()).thenReturn(Flux.empty());
+    }
+
+    @AfterEach
+    void cerrar() {
+        if (revocacion != null) revocacion.destroy();
+    }
+
+    @Test
+    void habilitarQuitaLaRevocacionAunqueElTokenSeaDelMismoSegundo() {
+        revocacion = crear(10);
+        revocacion.revocar("ana");
+        Date ahora = new Date();
+        assertThat(revocacion.estaRevocado("ana", ahora)).isTrue();
+
+        revocacion.habilitar("ana");
+
+        assertThat(revocacion.estaRevocado("ana", ahora)).isFalse();
+        assertThat(revocacion.tamano()).isZero();
+        verify(notificaciones, times(2)).notificar(eq(RevocacionService.CANAL), contains("\"ana\""));
+    }
+
+    @Test
+    void aplicaLoDeOtrosNodosYLosDeshabilitadosDeLaBd() throws Exception {
+        when(usuarios.deshabilitados()).thenReturn(Flux.just("viejo"));
+        revocacion = crear(10);
+        revocacion.cargar();
+        revocacion.leerTabla().block(); // la primera lectura periódica va en otro hilo
+        Date antes = new Date(System.currentTimeMillis() - 60_000);
+        assertThat(revocacion.estaRevocado("viejo", antes)).isTrue();
+
+        avisar(new RevocacionService.Mensaje("otro", "bea", System.currentTimeMillis()));
+        avisar(new RevocacionService.Mensaje("este", "eco", System.currentTimeMillis())); // el propio se ignora
+        assertThat(revocacion.estaRevocado("bea", antes)).isTrue();
+        assertThat(revocacion.estaRevocado("eco", antes)).isFalse();
+
+        avisar(new RevocacionService.Mensaje("otro", "bea", null));
+        assertThat(revocacion.estaRevocado("bea", antes)).isFalse();
+
+        // Tras un corte de LISTEN se relee la tabla: "viejo" se habilitó mientras tanto y "cid" se deshabilitó
+        Thread.sleep(5);
+        when(usuarios.deshabilitados()).thenReturn(Flux.just("cid"));
+        avisos.tryEmitNext(new NotificacionesPg.Aviso(null));
+        assertThat(revocacion.estaRevocado("viejo", antes)).isFalse();
+        assertThat(revocacion.estaRevocado("cid", antes)).isTrue();
+    }
+
+    @Test
+    void llenaNoDescartaRevocacionesVigentesYPasaALaBd() {
+        revocacion = crear(2);
+        revocacion.revocar("a");
+        revocacion.revocar("b");
+        assertThat(revocacion.incompleta()).isFalse();
+
+        revocacion.revocar("c");
+
+        Date ahora = new Date();
+        assertThat(revocacion.estaRevocado("a", ahora)).isTrue();
+        assertThat(revocacion.estaRevocado("b", ahora)).isTrue();
+        assertThat(revocacion.incompleta()).isTrue();
+        when(usuarios.deshabilitado("c")).thenReturn(Mono.just(true));
+        when(usuarios.deshabilitado("d")).thenReturn(Mono.just(false));
+        assertThat(revocacion.deshabilitadoEnBd("c").block()).isTrue();
+        assertThat(revocacion.deshabilitadoEnBd("d").block()).isFalse();
+    }
+
+    private RevocacionService crear(int maxEntradas) {
+        return new RevocacionService(new JwtService(10), usuarios, notificaciones, objectMapper,
+                maxEntradas, Duration.ofHours(1));
+    }
+
+    private void avisar(RevocacionService.Mensaje m) throws Exception {
+        avisos.tryEmitNext(new NotificacionesPg.Aviso(objectMapper.writeValueAsString(m)));
+    }
+}
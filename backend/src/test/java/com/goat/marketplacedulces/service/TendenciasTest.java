@@ -0,0 +1,64 @@
+package com.goat.marketplacedulces.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TendenciasTest {
+
+    private static final long MINUTO = Duration.ofMinutes(1).toNanos();
+
+    // 4 tramos de 1 min, vida media 1 min, los 3 mejores; el refresco periódico no llega a saltar
+    private final Tendencias tendencias = new Tendencias(new SimpleMeterRegistry(), true, Duration.ofMinutes(4), 4,
+            Duration.ofMinutes(1), 256, 3, 256, Duration.ofHours(1));
+    private final long t0 = System.nanoTime();
+
+    @AfterEach
+    void cerrar() {
+        tendencias.destroy();
+    }
+
+    @Test
+    void ordenaPorAnadidosYSeQuedaConLosMejores() {
+        registrar(1, 30);
+        registrar(2, 20);
+        registrar(3, 10);
+        registrar(4, 5);
+        for (long id = 100; id < 200; id++) registrar(id, 1);
+        assertThat(tendencias.top(10)).isEmpty(); // hasta el siguiente refresco
+
+        tendencias.refrescar(t0);
+
+        assertThat(tendencias.top(10)).extracting(Tendencias.Entrada::productoId).containsExactly(1L, 2L, 3L);
+        assertThat(tendencias.top(2)).hasSize(2);
+        assertThat(tendencias.top(1).get(0).puntuacion()).isGreaterThanOrEqualTo(30); // el sketch no se queda corto
+    }
+
+    @Test
+    void loAntiguoPesaMenosYCaducaConLaVentana() {
+        registrar(1, 10);
+        tendencias.refrescar(t0 + MINUTO);
+        registrar(2, 8);
+        tendencias.refrescar(t0 + MINUTO);
+
+        // 10 de hace un tramo valen 5 (una vida media) frente a 8 de ahora
+        assertThat(tendencias.top(10)).extracting(Tendencias.Entrada::productoId).containsExactly(2L, 1L);
+        assertThat(tendencias.top(10).get(1).puntuacion()).isEqualTo(5.0);
+
+        // Cuatro minutos después el tramo del producto 1 se ha reutilizado; el del 2 aún vale 8/8
+        tendencias.refrescar(t0 + 4 * MINUTO);
+        assertThat(tendencias.top(10)).extracting(Tendencias.Entrada::productoId).containsExactly(2L);
+        assertThat(tendencias.top(10).get(0).puntuacion()).isEqualTo(1.0);
+
+        tendencias.refrescar(t0 + 60 * MINUTO);
+        assertThat(tendencias.top(10)).isEmpty();
+    }
+
+    private void registrar(long productoId, int veces) {
+        for (int i = 0; i < veces; i++) tendencias.registrar(productoId);
+    }
+}
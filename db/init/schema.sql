@@ -7,6 +7,8 @@
 CREATE EXTENSION IF NOT EXISTS pgcrypto;     -- para BCrypt (crypt(..., gen_salt('bf')))
 
 -- Limpieza idempotente
+DROP TABLE IF EXISTS pedido_items CASCADE;
+DROP TABLE IF EXISTS pedidos      CASCADE;
 DROP TABLE IF EXISTS carrito   CASCADE;
 DROP TABLE IF EXISTS productos CASCADE;
 DROP TABLE IF EXISTS usuarios  CASCADE;
@@ -23,6 +25,19 @@ CREATE TABLE usuarios (
                           created_at TIMESTAMPTZ   NOT NULL DEFAULT NOW()
 );
 
+-- Cada usuario nuevo se avisa a los nodos del backend (filtro de usernames, canal "usuarios").
+-- El NOTIFY sale al confirmarse el INSERT, lo haga la API o cualquier otro cliente.
+CREATE OR REPLACE FUNCTION avisar_usuario_nuevo() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('usuarios', NEW.username);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS usuarios_avisar ON usuarios;
+CREATE TRIGGER usuarios_avisar AFTER INSERT ON usuarios
+    FOR EACH ROW EXECUTE FUNCTION avisar_usuario_nuevo();
+
 -- ===========================
 -- 🍫 Tabla: productos
 -- ===========================
@@ -57,6 +72,35 @@ CREATE TABLE carrito (
 
 CREATE INDEX idx_carrito_username ON carrito (username);
 
+-- ===========================
+-- 📦 Tabla: pedidos (checkout del carrito)
+-- ===========================
+CREATE TABLE pedidos (
+                         id          BIGSERIAL   PRIMARY KEY,
+                         username    VARCHAR(60) NOT NULL,
+                         total       BIGINT      NOT NULL CHECK (total >= 0),
+                         estado      VARCHAR(20) NOT NULL DEFAULT 'CONFIRMADO',
+                         created_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+                         CONSTRAINT fk_pedidos_user
+                             FOREIGN KEY (username) REFERENCES usuarios(username) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_pedidos_username ON pedidos (username);
+
+CREATE TABLE pedido_items (
+                              id              BIGSERIAL PRIMARY KEY,
+                              pedido_id       BIGINT    NOT NULL,
+                              producto_id     BIGINT    NOT NULL,
+                              cantidad        INTEGER   NOT NULL CHECK (cantidad >= 1),
+                              precio_unitario INTEGER   NOT NULL CHECK (precio_unitario >= 0),
+                              CONSTRAINT fk_pedido_items_pedido
+                                  FOREIGN KEY (pedido_id)   REFERENCES pedidos(id)   ON DELETE CASCADE,
+                              CONSTRAINT fk_pedido_items_producto
+                                  FOREIGN KEY (producto_id) REFERENCES productos(id)
+);
+
+CREATE INDEX idx_pedido_items_pedido ON pedido_items (pedido_id);
+
 -- ===========================
 -- 🌱 Seed: usuarios
 -- (Passwords con BCrypt usando pgcrypto)
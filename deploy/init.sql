@@ -7,6 +7,19 @@ CREATE TABLE IF NOT EXISTS usuarios (
     enabled BOOLEAN NOT NULL DEFAULT TRUE
     );
 
+-- Cada usuario nuevo se avisa a los nodos del backend (filtro de usernames, canal "usuarios").
+-- El NOTIFY sale al confirmarse el INSERT, lo haga la API o cualquier otro cliente.
+CREATE OR REPLACE FUNCTION avisar_usuario_nuevo() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('usuarios', NEW.username);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS usuarios_avisar ON usuarios;
+CREATE TRIGGER usuarios_avisar AFTER INSERT ON usuarios
+    FOR EACH ROW EXECUTE FUNCTION avisar_usuario_nuevo();
+
 -- Productos
 CREATE TABLE IF NOT EXISTS productos (
                                          id BIGSERIAL PRIMARY KEY,
@@ -26,10 +39,29 @@ CREATE TABLE IF NOT EXISTS carrito (
     UNIQUE (usuario_id, producto_id)
     );
 
+-- Pedidos (checkout)
+CREATE TABLE IF NOT EXISTS pedidos (
+                                       id BIGSERIAL PRIMARY KEY,
+                                       username VARCHAR(100) NOT NULL REFERENCES usuarios(username) ON DELETE CASCADE,
+    total BIGINT NOT NULL CHECK (total >= 0),
+    estado VARCHAR(20) NOT NULL DEFAULT 'CONFIRMADO',
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+    );
+
+CREATE TABLE IF NOT EXISTS pedido_items (
+                                            id BIGSERIAL PRIMARY KEY,
+                                            pedido_id BIGINT NOT NULL REFERENCES pedidos(id) ON DELETE CASCADE,
+    producto_id BIGINT NOT NULL REFERENCES productos(id),
+    cantidad INT NOT NULL CHECK (cantidad > 0),
+    precio_unitario INT NOT NULL CHECK (precio_unitario >= 0)
+    );
+
 -- Índices útiles
 CREATE INDEX IF NOT EXISTS idx_productos_tipo ON productos(tipo);
 CREATE INDEX IF NOT EXISTS idx_productos_pais ON productos(pais_origen);
 CREATE INDEX IF NOT EXISTS idx_carrito_usuario ON carrito(usuario_id);
+CREATE INDEX IF NOT EXISTS idx_pedidos_username ON pedidos(username);
+CREATE INDEX IF NOT EXISTS idx_pedido_items_pedido ON pedido_items(pedido_id);
 
 -- Semillas opcionales
 INSERT INTO productos (nombre, tipo, pais_origen, precio, stock) VALUES
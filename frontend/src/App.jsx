@@ -122,7 +122,7 @@ function AuthView({ onLogged }) {
         setError("");
         try {
             if (mode === "register") {
-                await apiFetch("/auth/register", { auth: false, method: "POST", body: { username, password, rol: "USUARIO" } });
+                await apiFetch("/auth/register", { auth: false, method: "POST", body: { username, password } });
             }
             const data = await apiFetch("/auth/login", { auth: false, method: "POST", body: { username, password } });
             localStorage.setItem("dm_token", data.token);